@@ -86,6 +86,7 @@ import uk.org.ngo.squeezer.itemlist.PlayerViewLogic;
 import uk.org.ngo.squeezer.model.CurrentPlaylistItem;
 import uk.org.ngo.squeezer.model.Input;
 import uk.org.ngo.squeezer.model.JiveItem;
+import uk.org.ngo.squeezer.model.PlaybackClock;
 import uk.org.ngo.squeezer.model.Player;
 import uk.org.ngo.squeezer.model.PlayerState;
 import uk.org.ngo.squeezer.model.PlayerState.RepeatStatus;
@@ -179,6 +180,13 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
     // Updating the seekbar
     private boolean updateSeekBar = true;
 
+    /** Position of the active player in the current song, see {@link #updateTimeDisplay()} */
+    @Nullable
+    private PlaybackClock playbackClock;
+
+    /** Moves the time display on while the song plays. */
+    private final Runnable timeDisplayUpdater = this::updateTimeDisplay;
+
     // For the large artwork layout
     private MaterialButton muteButton;
     private SeekBar volumeBar;
@@ -444,10 +452,7 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
             totalTime.setOnClickListener(view -> {
                 showRemainingTime = !showRemainingTime;
                 Squeezer.getPreferences().setShowRemainingTime(showRemainingTime);
-                PlayerState playerState = getPlayerState();
-                if (playerState != null) {
-                    updateTimeDisplayTo(playerState.getTrackElapsed(), playerState.getCurrentSongDuration());
-                }
+                updateTimeDisplay();
             });
 
             slider.addOnSliderTouchListener(new Slider.OnSliderTouchListener() {
@@ -666,6 +671,31 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
         }
     }
 
+    @UiThread
+    private void setPlaybackClock(@NonNull PlaybackClock playbackClock) {
+        this.playbackClock = playbackClock;
+        updateTimeDisplay();
+    }
+
+    /**
+     * Show the position of the playback clock, and while it runs show it again when it reaches
+     * the next second.
+     */
+    @UiThread
+    private void updateTimeDisplay() {
+        if (playbackClock == null) {
+            return;
+        }
+        updateTimeDisplayTo(playbackClock.getTrackElapsed(), playbackClock.getDuration());
+        View view = getView();
+        if (view != null) {
+            view.removeCallbacks(timeDisplayUpdater);
+            if (playbackClock.isRunning()) {
+                view.postDelayed(timeDisplayUpdater, playbackClock.getMillisToNextSecond());
+            }
+        }
+    }
+
     @UiThread
     private void updateTimeDisplayTo(int secondsIn, int secondsTotal) {
         if (mFullHeightLayout) {
@@ -712,7 +742,7 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
      */
     @UiThread
     private void updateSongInfo(@NonNull PlayerState playerState) {
-        updateTimeDisplayTo(playerState.getTrackElapsed(), playerState.getCurrentSongDuration());
+        setPlaybackClock(playerState.getPlaybackClock());
 
         CurrentPlaylistItem song = playerState.getCurrentSong();
         if (song == null) {
@@ -764,7 +794,7 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
         if (!song.useIcon()) {
             albumArt.setImageDrawable(song.getIconDrawable(mActivity, R.drawable.icon_album));
         } else {
-            ImageFetcher.getInstance(mActivity).loadImage(song.getIcon(), albumArt);
+            ImageFetcher.getInstance(mActivity).loadPriorityImage(song.getIconKey(), albumArt);
         }
     }
 
@@ -854,6 +884,11 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
             mRegisteredCallbacks = false;
         }
 
+        View view = getView();
+        if (view != null) {
+            view.removeCallbacks(timeDisplayUpdater);
+        }
+
         super.onPause();
     }
 
@@ -1147,7 +1182,7 @@ public class NowPlayingFragment extends Fragment  implements OnCrollerChangeList
     @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
     public void onEventMainThread(SongTimeChanged event) {
         if (event.player.equals(requireService().getActivePlayer())) {
-            updateTimeDisplayTo(event.currentPosition, event.duration);
+            setPlaybackClock(event.clock);
         }
     }
 
@@ -172,15 +172,15 @@ public abstract class BaseListActivity<VH extends ItemViewHolder<T>, T extends I
     protected class ScrollListener extends ItemListActivity.ScrollListener {
 
         /**
-         * Pauses cache disk fetches if the user is flinging the list, or if their finger is still
-         * on the screen.
+         * Pauses image loading while the user is flinging the list. While the user drags the
+         * list images keep loading, the most recently shown first, and the loads of images which
+         * were scrolled out of sight are dropped.
          */
         @Override
         public void onScrollStateChanged(@NonNull RecyclerView listView, int scrollState) {
             super.onScrollStateChanged(listView, scrollState);
 
-            ImageFetcher.getInstance(BaseListActivity.this).setPauseWork(scrollState == RecyclerView.SCROLL_STATE_SETTLING ||
-                    scrollState == RecyclerView.SCROLL_STATE_DRAGGING);
+            ImageFetcher.getInstance(BaseListActivity.this).setPauseWork(scrollState == RecyclerView.SCROLL_STATE_SETTLING);
         }
     }
 }
@@ -26,7 +26,11 @@ import androidx.annotation.NonNull;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.lang.reflect.Field;
+import java.util.BitSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntUnaryOperator;
 
 import uk.org.ngo.squeezer.R;
 import uk.org.ngo.squeezer.model.Item;
@@ -59,7 +63,14 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
      */
     private int count;
 
-    private final SparseArray<T[]> pages = new SparseArray<>();
+    private SparseArray<T[]> pages = new SparseArray<>();
+
+    /**
+     * Positions of items which may have changed on the server since they were received, see
+     * {@link #replaceItems(int, int, List, IntUnaryOperator)}. They are shown until they are
+     * received again, which is ordered when they are shown.
+     */
+    private final BitSet staleItems = new BitSet();
 
     /**
      * This is set if the list shall start with an empty item.
@@ -111,6 +122,7 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
     public void clear() {
         count = (mEmptyItem ? 1 : 0);
         pages.clear();
+        staleItems.clear();
         notifyDataSetChanged();
     }
 
@@ -174,7 +186,7 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
 
     public T getItem(int position) {
         T item = getPage(position)[position % pageSize];
-        if (item == null) {
+        if (item == null || staleItems.get(position)) {
             if (mEmptyItem) {
                 position--;
             }
@@ -183,6 +195,15 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
         return item;
     }
 
+    /**
+     * @return The item at the supplied position, or null if it's not received. Unlike
+     * {@link #getItem(int)} this doesn't order the item.
+     */
+    public T getLoadedItem(int position) {
+        T[] page = pages.get(pageNumber(position));
+        return (page != null) ? page[position % pageSize] : null;
+    }
+
     @Override
     public long getItemId(int position) {
         return position;
@@ -211,6 +232,7 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
         boolean countUpdated = (count == 0 || count != getItemCount());
 
         setItems(start, items);
+        staleItems.clear(start, start + items.size());
         if (countUpdated) {
             this.count = count;
             onCountUpdated();
@@ -220,6 +242,42 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
         }
     }
 
+    /**
+     * Replace the items of this list with a new version of the list, of which only a window was
+     * received.
+     * <p>
+     * The items outside the window are moved to where the supplied function puts them, and
+     * marked stale. The changes are not notified; the caller must notify them as the same
+     * function puts them.
+     *
+     * @param count Number of items in the new version of the list
+     * @param start The start position of the window
+     * @param items The items in the window
+     * @param oldPosition Gives the position before this update of the item at a position outside
+     *     the window, or -1 if the item is new
+     */
+    public void replaceItems(int count, int start, List<T> items, IntUnaryOperator oldPosition) {
+        int offset = (mEmptyItem ? 1 : 0);
+        SparseArray<T[]> oldPages = pages;
+        pages = new SparseArray<>();
+        staleItems.clear();
+        for (int position = 0; position < count; position++) {
+            if (position >= start && position < start + items.size()) {
+                continue;
+            }
+            int old = oldPosition.applyAsInt(position);
+            T[] page = (old >= 0) ? oldPages.get(pageNumber(old + offset)) : null;
+            T item = (page != null) ? page[(old + offset) % pageSize] : null;
+            if (item != null) {
+                getPage(position + offset)[(position + offset) % pageSize] = item;
+                staleItems.set(position + offset);
+            }
+        }
+        setItems(start + offset, items);
+        this.count = count + offset;
+        onCountUpdated();
+    }
+
     /**
      * Move the item at the specified position to the new position and notify the change.
      */
@@ -292,6 +350,9 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
     private Class<T> _itemClass;
 
     private Parcelable.Creator<T> _itemCreator;
+
+    /** Creators of {@link Item} implementations, shared by all adapters */
+    private static final Map<Class<?>, Parcelable.Creator<?>> itemCreators = new ConcurrentHashMap<>();
     /**
      * @return The generic argument of the implementation
      */
@@ -312,6 +373,9 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
      */
     @SuppressWarnings("unchecked")
     public Parcelable.Creator<T> getItemCreator() {
+        if (_itemCreator == null) {
+            _itemCreator = (Parcelable.Creator<T>) itemCreators.get(getItemClass());
+        }
         if (_itemCreator == null) {
             Field field;
             try {
@@ -324,6 +388,7 @@ public abstract class ItemAdapter<VH extends ItemViewHolder<T>, T extends Item>
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
+            itemCreators.put(getItemClass(), _itemCreator);
         }
         return _itemCreator;
     }
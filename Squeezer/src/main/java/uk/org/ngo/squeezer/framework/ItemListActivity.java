@@ -64,6 +64,27 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
      */
     private boolean mListScrolling;
 
+    /**
+     * The list is being scrolled with the fast scroll handle
+     */
+    private boolean mFastScrolling;
+
+    /**
+     * Direction of the latest scroll, 1 towards the end of the list, -1 towards the start
+     */
+    private int mScrollDirection = 1;
+
+    /**
+     * The number of pages to order ahead of the visible rows, in the scroll direction.
+     */
+    private static final int PREFETCH_PAGES = 1;
+
+    /**
+     * The maximum number of outstanding page orders while the list is scrolling, so we don't
+     * order every page the list is flung past.
+     */
+    private static final int MAX_SCROLLING_ORDERS = 2;
+
     /**
      * The number of items per page.
      */
@@ -249,7 +270,18 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
      * @param pagePosition position in the list to start the fetch.
      */
     public void maybeOrderPage(int pagePosition) {
-        if (!mListScrolling && !mReceivedPages.contains(pagePosition) && !mOrderedPages
+        if (!mListScrolling && !mFastScrolling) {
+            orderPageIfNeeded(pagePosition);
+        }
+    }
+
+    /**
+     * Orders a page worth of data, if it has not already been ordered, regardless of scrolling.
+     *
+     * @see #maybeOrderPage(int)
+     */
+    private void orderPageIfNeeded(int pagePosition) {
+        if (!mReceivedPages.contains(pagePosition) && !mOrderedPages
                 .contains(pagePosition) && !mOrderedPagesBeforeHandshake.contains(pagePosition)) {
             ISqueezeService service = getService();
 
@@ -329,6 +361,57 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
                 maybeOrderPage(pos);
                 pos += mPageSize;
             }
+            maybeOrderPagesAhead(listView);
+        }
+    }
+
+    /**
+     * Orders the pages of the visible rows, and {@link #PREFETCH_PAGES} pages ahead of them in
+     * the scroll direction, also while the list is scrolling. So pages are ready when the list
+     * settles, or before rows of them are shown.
+     * <p>
+     * While the list is scrolling at most {@link #MAX_SCROLLING_ORDERS} pages are ordered at a
+     * time.
+     *
+     * @param listView The listview with visible rows.
+     */
+    private void maybeOrderPagesAhead(RecyclerView listView) {
+        if (mFastScrolling) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) listView.getLayoutManager();
+        RecyclerView.Adapter<?> adapter = listView.getAdapter();
+        int firstVisibleItemPosition = layoutManager.findFirstVisibleItemPosition();
+        if (firstVisibleItemPosition == RecyclerView.NO_POSITION || adapter == null) {
+            return;
+        }
+        int itemCount = adapter.getItemCount();
+        int firstPage = (firstVisibleItemPosition / mPageSize) * mPageSize;
+        int lastPage = ((firstVisibleItemPosition + listView.getChildCount()) / mPageSize) * mPageSize;
+
+        // Visible pages first, in scroll direction
+        int pos = (mScrollDirection > 0 ? firstPage : lastPage);
+        for (int i = 0; i <= (lastPage - firstPage) / mPageSize + PREFETCH_PAGES; i++) {
+            if (pos < 0 || pos >= itemCount) {
+                break;
+            }
+            if (mListScrolling && mOrderedPages.size() >= MAX_SCROLLING_ORDERS) {
+                break;
+            }
+            orderPageIfNeeded(pos);
+            pos += mScrollDirection * mPageSize;
+        }
+    }
+
+    /**
+     * Call this while the list is scrolled with a fast scroll handle. No pages are ordered while
+     * the handle is dragged, only the pages visible when it is released. So dragging the handle
+     * across a long list doesn't order all the pages in between.
+     */
+    protected void setFastScrolling(boolean fastScrolling) {
+        mFastScrolling = fastScrolling;
+        if (!fastScrolling) {
+            maybeOrderVisiblePages(getListView());
         }
     }
 
@@ -386,6 +469,14 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
         clearItemAdapter();
     }
 
+    /**
+     * Forget which pages were received, so they are ordered again when they are shown, e.g.
+     * because the list changed on the server.
+     */
+    protected void forgetReceivedPages() {
+        mReceivedPages.clear();
+    }
+
     /**
      * Removes any outstanding requests from mOrderedPages.
      */
@@ -396,7 +487,9 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
     /**
      * Tracks scrolling activity.
      * <p>
-     * When the list is idle, new pages of data are fetched from the server.
+     * When the list is idle, new pages of data are fetched from the server. While the list is
+     * scrolling, pages around the visible rows are fetched ahead, see
+     * {@link #maybeOrderPagesAhead(RecyclerView)}.
      */
     protected class ScrollListener extends RecyclerView.OnScrollListener {
 
@@ -422,5 +515,15 @@ public abstract class ItemListActivity extends BaseActivity implements ItemAdapt
 
             mPrevScrollState = scrollState;
         }
+
+        @Override
+        public void onScrolled(@NonNull RecyclerView listView, int dx, int dy) {
+            if (dy != 0) {
+                mScrollDirection = (dy > 0 ? 1 : -1);
+            }
+            if (mListScrolling) {
+                maybeOrderPagesAhead(listView);
+            }
+        }
     }
 }
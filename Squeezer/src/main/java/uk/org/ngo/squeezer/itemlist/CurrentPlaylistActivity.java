@@ -31,7 +31,10 @@ import androidx.annotation.LayoutRes;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.ActionBar;
 import androidx.core.view.GestureDetectorCompat;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
 import androidx.recyclerview.widget.ItemTouchHelper;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
@@ -47,6 +50,7 @@ import uk.org.ngo.squeezer.itemlist.dialog.PlaylistClearDialog;
 import uk.org.ngo.squeezer.itemlist.dialog.PlaylistSaveDialog;
 import uk.org.ngo.squeezer.model.JiveItem;
 import uk.org.ngo.squeezer.service.ISqueezeService;
+import uk.org.ngo.squeezer.service.SqueezeService;
 import uk.org.ngo.squeezer.service.event.MusicChanged;
 import uk.org.ngo.squeezer.service.event.PlaylistChanged;
 import uk.org.ngo.squeezer.widget.OnSwipeListener;
@@ -56,8 +60,17 @@ import uk.org.ngo.squeezer.widget.UndoBarController;
  * Activity that shows the songs in the current playlist.
  */
 public class CurrentPlaylistActivity extends JiveItemListActivity implements PlaylistClearDialog.PlaylistClearDialogListener {
+    /** Number of items on each side of the shown items, which are fetched when the playlist changes. */
+    private static final int WINDOW_MARGIN = 16;
+
     private int skipPlaylistChanged = 0;
 
+    /** Incremented when the playlist is fetched again, so older windows are ignored. */
+    private int playlistGeneration;
+
+    /** Set until the list is positioned at the current song. */
+    private volatile boolean scrollToCurrentSong = true;
+
     /**
      * Called when the activity is first created.
      */
@@ -217,11 +230,81 @@ public class CurrentPlaylistActivity extends JiveItemListActivity implements Pla
             return;
         }
         if (event.player.equals(getService().getActivePlayer())) {
+            fetchShownItems();
+        }
+    }
+
+    /**
+     * Fetch the shown items of the changed playlist, and apply the changes to the loaded items,
+     * so the list keeps its position. The other items are fetched again when they are shown.
+     */
+    private void fetchShownItems() {
+        LinearLayoutManager layoutManager = (LinearLayoutManager) getListView().getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            clearAndReOrderItems();
+            return;
+        }
+
+        int start = Math.max(0, first - WINDOW_MARGIN);
+        try {
+            requireService().pluginItems(start, last + WINDOW_MARGIN + 1 - start, "status", new PlaylistWindowReceiver(++playlistGeneration));
+        } catch (SqueezeService.HandshakeNotCompleteException e) {
+            clearAndReOrderItems();
+        }
+    }
+
+    /**
+     * Replace the loaded items with the new version of the playlist, of which the supplied
+     * window was received, and notify what changed.
+     */
+    private void onWindowReceived(int generation, int count, int start, List<JiveItem> items) {
+        if (generation != playlistGeneration || getService() == null) {
+            return;
+        }
+        if (count == 0) {
             clearAndReOrderItems();
-            getItemAdapter().notifyDataSetChanged();
+            return;
+        }
+
+        ItemAdapter<ItemViewHolder<JiveItem>, JiveItem> adapter = getItemAdapter();
+        List<String> keys = new ArrayList<>(items.size());
+        for (JiveItem item : items) {
+            keys.add(playlistKey(item));
+        }
+        PlaylistDiff diff = new PlaylistDiff(adapter.getItemCount(), position -> {
+            JiveItem item = adapter.getLoadedItem(position);
+            return (item != null) ? playlistKey(item) : null;
+        }, count, start, keys);
+
+        forgetReceivedPages();
+        adapter.replaceItems(count, start, items, diff::getOldPosition);
+        diff.dispatchUpdatesTo(new AdapterListUpdateCallback(adapter));
+
+        int prevSelectedIndex = getSelectedIndex();
+        setSelectedIndex(getService().getActivePlayerState().getCurrentPlaylistIndex());
+        if (getSelectedIndex() != prevSelectedIndex) {
+            adapter.notifyItemChanged(prevSelectedIndex);
+            adapter.notifyItemChanged(getSelectedIndex());
         }
     }
 
+    /**
+     * @return Key of a playlist item, which is the same if the item is shown the same
+     */
+    private static String playlistKey(JiveItem item) {
+        Object trackId = (item.moreAction != null && item.moreAction.action != null) ? item.moreAction.action.params.get("track_id") : null;
+        return trackId + "\n" + item.getName() + "\n" + item.text2 + "\n" + item.getIcon();
+    }
+
+    @Override
+    public void clearItems() {
+        playlistGeneration++;
+        scrollToCurrentSong = true;
+        super.clearItems();
+    }
+
     public void skipPlaylistChanged() {
         skipPlaylistChanged++;
     }
@@ -229,10 +312,38 @@ public class CurrentPlaylistActivity extends JiveItemListActivity implements Pla
     @Override
     public void onItemsReceived(int count, int start, Map<String, Object> parameters, List<JiveItem> items, Class<JiveItem> dataType) {
         List<JiveItem> playlistItems = new ArrayList<>();
+        count -= getPlaylistItems(items, playlistItems);
+        super.onItemsReceived(count, start, parameters, playlistItems, dataType);
+
+        ISqueezeService service = getService();
+        if (service != null) {
+            int selectedIndex = service.getActivePlayerState().getCurrentPlaylistIndex();
+            setSelectedIndex(selectedIndex);
+            // Initially position the list at the currently playing song.
+            // Do it again once it has loaded because the newly displayed items
+            // may push the current song outside the displayed area
+            boolean hasSelectedIndex = (start <= selectedIndex && selectedIndex < start + playlistItems.size());
+            if (scrollToCurrentSong && (start == 0 || hasSelectedIndex)) {
+                if (hasSelectedIndex) {
+                    scrollToCurrentSong = false;
+                }
+                runOnUiThread(() -> getListView().scrollToPosition(selectedIndex));
+            }
+        }
+    }
+
+    /**
+     * Add the playlist items of the supplied items to the supplied list, and prepare them to be
+     * shown.
+     *
+     * @return The number of skipped special items
+     */
+    private static int getPlaylistItems(List<JiveItem> items, List<JiveItem> playlistItems) {
+        int skipped = 0;
         for (JiveItem item : items) {
             // Skip special items (global actions) as there are handled locally
             if ((item.hasSubItems() || item.hasInput())) {
-                count--;
+                skipped++;
             } else {
                 playlistItems.add(item);
                 if (item.moreAction == null) {
@@ -241,18 +352,29 @@ public class CurrentPlaylistActivity extends JiveItemListActivity implements Pla
                 }
             }
         }
-        super.onItemsReceived(count, start, parameters, playlistItems, dataType);
+        return skipped;
+    }
 
-        ISqueezeService service = getService();
-        if (service != null) {
-            int selectedIndex = service.getActivePlayerState().getCurrentPlaylistIndex();
-            setSelectedIndex(selectedIndex);
-            // Initially position the list at the currently playing song.
-            // Do it again once it has loaded because the newly displayed items
-            // may push the current song outside the displayed area
-            if (start == 0 || (start <= selectedIndex && selectedIndex < start + playlistItems.size())) {
-                runOnUiThread(() -> getListView().scrollToPosition(selectedIndex));
-            }
+    /**
+     * Receives a window of the playlist, see {@link #fetchShownItems()}.
+     */
+    private class PlaylistWindowReceiver implements IServiceItemListCallback<JiveItem> {
+        private final int generation;
+
+        PlaylistWindowReceiver(int generation) {
+            this.generation = generation;
+        }
+
+        @Override
+        public void onItemsReceived(int count, int start, Map<String, Object> parameters, List<JiveItem> items, Class<JiveItem> dataType) {
+            List<JiveItem> playlistItems = new ArrayList<>();
+            int playlistCount = count - getPlaylistItems(items, playlistItems);
+            runOnUiThread(() -> onWindowReceived(generation, playlistCount, start, playlistItems));
+        }
+
+        @Override
+        public Object getClient() {
+            return CurrentPlaylistActivity.this;
         }
     }
 
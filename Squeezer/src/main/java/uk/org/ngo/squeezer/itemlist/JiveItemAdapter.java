@@ -3,6 +3,7 @@ package uk.org.ngo.squeezer.itemlist;
 import android.view.View;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.qtalk.recyclerviewfastscroller.RecyclerViewFastScroller;
 
@@ -11,13 +12,32 @@ import uk.org.ngo.squeezer.framework.ItemAdapter;
 import uk.org.ngo.squeezer.framework.ItemViewHolder;
 import uk.org.ngo.squeezer.itemlist.dialog.ArtworkListLayout;
 import uk.org.ngo.squeezer.model.JiveItem;
+import uk.org.ngo.squeezer.model.ListIndex;
 
 class JiveItemAdapter extends ItemAdapter<ItemViewHolder<JiveItem>, JiveItem> implements RecyclerViewFastScroller.OnPopupTextUpdate {
 
+    /** Index of the list if the server sent one, retained with the adapter */
+    @Nullable
+    private volatile ListIndex listIndex;
+
     public JiveItemAdapter(JiveItemListActivity activity) {
         super(activity);
     }
 
+    @Override
+    public void clear() {
+        listIndex = null;
+        super.clear();
+    }
+
+    void setListIndex(@Nullable ListIndex listIndex) {
+        this.listIndex = listIndex;
+    }
+
+    boolean hasListIndex() {
+        return listIndex != null;
+    }
+
     @Override
     public ItemViewHolder<JiveItem> createViewHolder(View view, int viewType) {
         if (viewType == R.layout.grid_item_pending || viewType == R.layout.list_item_pending) {
@@ -47,6 +67,11 @@ class JiveItemAdapter extends ItemAdapter<ItemViewHolder<JiveItem>, JiveItem> im
     @NonNull
     @Override
     public CharSequence onChange(int position) {
+        // Use the index if we have it, the item may not be received yet
+        ListIndex index = listIndex;
+        if (index != null) {
+            return index.getKey(position);
+        }
         JiveItem item = getItem(position);
         return (item != null ? item.textkey : "");
     }
@@ -72,6 +72,7 @@ import uk.org.ngo.squeezer.itemlist.dialog.ArtworkDialog;
 import uk.org.ngo.squeezer.itemlist.dialog.ArtworkListLayout;
 import uk.org.ngo.squeezer.model.Action;
 import uk.org.ngo.squeezer.model.JiveItem;
+import uk.org.ngo.squeezer.model.ListIndex;
 import uk.org.ngo.squeezer.model.Player;
 import uk.org.ngo.squeezer.model.Window;
 import uk.org.ngo.squeezer.service.ISqueezeService;
@@ -218,6 +219,21 @@ public class JiveItemListActivity extends BaseListActivity<ItemViewHolder<JiveIt
             getListView().addItemDecoration(dividerItemDecoration);
         }
         fastScroller = findViewById(R.id.fastscroller);
+        fastScroller.setHandleStateListener(new RecyclerViewFastScroller.HandleStateListener() {
+            @Override
+            public void onEngaged() {
+                setFastScrolling(true);
+            }
+
+            @Override
+            public void onDragged(float offset, int position) {
+            }
+
+            @Override
+            public void onReleased() {
+                setFastScrolling(false);
+            }
+        });
 
         setupListView(getListView(), getListLayout());
     }
@@ -431,9 +447,21 @@ public class JiveItemListActivity extends BaseListActivity<ItemViewHolder<JiveIt
             networkErrorDialogFragment.show(getSupportFragmentManager(), "networkerror");
         }
 
+        // The index only comes with the first chunk of the list
+        boolean hasListIndex = false;
+        if (getItemAdapter() instanceof JiveItemAdapter) {
+            if (start == 0) {
+                ListIndex listIndex = ListIndex.fromIndexList(parameters.get("indexList"));
+                runOnUiThread(() -> ((JiveItemAdapter) getItemAdapter()).setListIndex(listIndex));
+                hasListIndex = (listIndex != null);
+            } else {
+                hasListIndex = ((JiveItemAdapter) getItemAdapter()).hasListIndex();
+            }
+        }
+
         super.onItemsReceived(count, start, parameters, items, dataType);
 
-        boolean hasTextKey = items.stream().anyMatch(item -> !TextUtils.isEmpty(item.textkey));
+        boolean hasTextKey = hasListIndex || items.stream().anyMatch(item -> !TextUtils.isEmpty(item.textkey));
         fastScroller.popupTextView.setVisibility(hasTextKey ? View.VISIBLE : View.GONE);
     }
 
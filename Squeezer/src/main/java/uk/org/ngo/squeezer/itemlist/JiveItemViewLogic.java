@@ -96,7 +96,7 @@ public class JiveItemViewLogic {
     /** Fetch and show album art or use embedded icon */
     public static void icon(ImageView icon, JiveItem item, ImageWorker.LoadImageCallback callback) {
         if (item.useIcon()) {
-            ImageFetcher.getInstance(icon.getContext()).loadImage(item.getIcon(), icon, callback);
+            ImageFetcher.getInstance(icon.getContext()).loadImage(item.getIconKey(), icon, callback);
         } else {
             icon.setImageDrawable(item.getIconDrawable(icon.getContext()));
         }
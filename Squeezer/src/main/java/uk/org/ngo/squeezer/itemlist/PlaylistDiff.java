@@ -0,0 +1,162 @@
+package uk.org.ngo.squeezer.itemlist;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * The changes of a list of which only a window was fetched again, compared to the items which
+ * were loaded before.
+ * <p>
+ * The items in the window are matched to the loaded items around it by the longest common
+ * subsequence of their keys, like {@link androidx.recyclerview.widget.DiffUtil} does. Outside
+ * the window the items are taken to be in the same order as before, aligned to the nearest
+ * matched item, so items which were inserted or removed there are put at the far ends of the
+ * list. Matched items keep their rows, and the rows around the window stay where they are.
+ */
+class PlaylistDiff {
+    /** Loaded items further than this from the window are not matched. */
+    static final int MAX_SHIFT = 256;
+
+    private final int oldCount;
+    private final int newCount;
+    private final int start;
+    private final int end;
+
+    /** Old position of each item in the window, or -1 if it's not matched */
+    private final int[] windowToOld;
+
+    /** New and old positions of the first and last matched items, or -1 if nothing matched */
+    private int firstNew = -1;
+    private int firstOld = -1;
+    private int lastNew = -1;
+    private int lastOld = -1;
+
+    /**
+     * @param oldCount Number of items before the change
+     * @param oldKeys Gives the key of the loaded item at a position before the change, or null if
+     *     the item is not loaded
+     * @param newCount Number of items after the change
+     * @param start Position of the window after the change
+     * @param newKeys Keys of the items in the window
+     */
+    PlaylistDiff(int oldCount, @NonNull IntFunction<?> oldKeys, int newCount, int start, @NonNull List<?> newKeys) {
+        this.oldCount = oldCount;
+        this.newCount = newCount;
+        this.start = start;
+        this.end = start + newKeys.size();
+
+        int n = newKeys.size();
+        int shift = Math.min(MAX_SHIFT, Math.max(n, Math.abs(newCount - oldCount)));
+        int oldStart = Math.max(0, start - shift);
+        int m = Math.max(0, Math.min(oldCount, end + shift) - oldStart);
+
+        Object[] keys = new Object[m];
+        for (int i = 0; i < m; i++) {
+            keys[i] = oldKeys.apply(oldStart + i);
+        }
+
+        // lcs[i * (n + 1) + j] is the length of the longest common subsequence of keys[i..] and
+        // newKeys[j..]
+        int[] lcs = new int[(m + 1) * (n + 1)];
+        for (int i = m - 1; i >= 0; i--) {
+            for (int j = n - 1; j >= 0; j--) {
+                lcs[i * (n + 1) + j] = (keys[i] != null && keys[i].equals(newKeys.get(j)))
+                        ? lcs[(i + 1) * (n + 1) + j + 1] + 1
+                        : Math.max(lcs[(i + 1) * (n + 1) + j], lcs[i * (n + 1) + j + 1]);
+            }
+        }
+
+        windowToOld = new int[n];
+        for (int i = 0, j = 0; j < n; ) {
+            if (i < m && keys[i] != null && keys[i].equals(newKeys.get(j))) {
+                windowToOld[j] = oldStart + i;
+                if (firstNew < 0) {
+                    firstNew = start + j;
+                    firstOld = oldStart + i;
+                }
+                lastNew = start + j;
+                lastOld = oldStart + i;
+                i++;
+                j++;
+            } else if (i < m && lcs[(i + 1) * (n + 1) + j] >= lcs[i * (n + 1) + j + 1]) {
+                i++;
+            } else {
+                windowToOld[j++] = -1;
+            }
+        }
+    }
+
+    /**
+     * @param newPosition A position outside the window
+     * @return The position before the change of the item at the supplied position after the
+     *     change, or -1 if the item was inserted. The item may have changed.
+     */
+    int getOldPosition(int newPosition) {
+        int oldPosition;
+        if (newPosition > lastNew) {
+            oldPosition = newPosition - (lastNew - lastOld);
+        } else if (newPosition < firstNew) {
+            oldPosition = newPosition - (firstNew - firstOld);
+        } else {
+            oldPosition = windowToOld[newPosition - start];
+        }
+        return (oldPosition >= 0 && oldPosition < oldCount) ? oldPosition : -1;
+    }
+
+    /**
+     * Notify the changes to the supplied callback, from the end of the list, so each position is
+     * the same before and after the change. Rows in the window which didn't match are changed,
+     * and rows outside the window are only inserted or removed.
+     */
+    void dispatchUpdatesTo(@NonNull ListUpdateCallback callback) {
+        // After the last matched item the rows are aligned at the start
+        int common = Math.min(oldCount - lastOld - 1, newCount - lastNew - 1);
+        resize(lastOld + 1 + common, oldCount - lastOld - 1 - common, newCount - lastNew - 1 - common, callback);
+        changeWindow(lastNew + 1, lastNew + 1 + common, lastNew - lastOld, callback);
+        if (lastNew < 0) {
+            return;
+        }
+
+        // Between matched items the rows are aligned at the start
+        int nextOld = lastOld;
+        int nextNew = lastNew;
+        for (int newPosition = lastNew - 1; newPosition >= firstNew; newPosition--) {
+            int oldPosition = windowToOld[newPosition - start];
+            if (oldPosition >= 0) {
+                common = Math.min(nextOld - oldPosition - 1, nextNew - newPosition - 1);
+                resize(oldPosition + 1 + common, nextOld - oldPosition - 1 - common, nextNew - newPosition - 1 - common, callback);
+                if (common > 0) {
+                    callback.onChanged(oldPosition + 1, common, null);
+                }
+                nextOld = oldPosition;
+                nextNew = newPosition;
+            }
+        }
+
+        // Before the first matched item the rows are aligned at the end
+        common = Math.min(firstOld, firstNew);
+        changeWindow(firstNew - common, firstNew, firstNew - firstOld, callback);
+        resize(0, firstOld - common, firstNew - common, callback);
+    }
+
+    /** Replace the supplied number of old rows at the supplied position with the new rows. */
+    private static void resize(int position, int oldRows, int newRows, ListUpdateCallback callback) {
+        if (newRows > oldRows) {
+            callback.onInserted(position, newRows - oldRows);
+        } else if (oldRows > newRows) {
+            callback.onRemoved(position, oldRows - newRows);
+        }
+    }
+
+    /** Change the rows in the window from the supplied new positions, which have moved by shift. */
+    private void changeWindow(int from, int to, int shift, ListUpdateCallback callback) {
+        from = Math.max(from, start);
+        to = Math.min(to, end);
+        if (from < to) {
+            callback.onChanged(from - shift, to - from, null);
+        }
+    }
+}
@@ -24,6 +24,7 @@ import android.text.TextUtils;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.StringRes;
 
 import org.eclipse.jetty.util.ajax.JSON;
@@ -42,6 +43,7 @@ import uk.org.ngo.squeezer.R;
 import uk.org.ngo.squeezer.Squeezer;
 import uk.org.ngo.squeezer.Util;
 import uk.org.ngo.squeezer.util.FluentHashMap;
+import uk.org.ngo.squeezer.util.ImageKey;
 
 
 public class JiveItem extends Item {
@@ -113,11 +115,23 @@ public class JiveItem extends Item {
     }
 
 
-    private String record;
+    /**
+     * The record this item was created from. It is never modified, so it is shared with copies
+     * of this item, and nested records are shared with the server response. It is null for an item
+     * read from a parcel, until it's needed, see {@link #getRecord()}.
+     */
+    @Nullable
+    private Map<String, Object> record;
+
+    /** The record as parcelled, without the nested records, while {@link #record} is null. */
+    @Nullable
+    private String parcelledRecord;
     @NonNull private String name = "";
     public String text2;
     @NonNull public String textkey = "";
     @NonNull private Uri icon = Uri.EMPTY;
+    /** Cache keys of {@link #getIcon()}, see {@link #getIconKey()} */
+    private ImageKey iconKey;
     public String iconStyle;
     private String extid;
 
@@ -171,6 +185,21 @@ public class JiveItem extends Item {
         return icon;
     }
 
+    /**
+     * @return The URL to download the icon as a key for the image caches. Pass this to the
+     *     image loaders, so the cache keys aren't computed again when the item is shown again.
+     */
+    @NonNull
+    public ImageKey getIconKey() {
+        Uri icon = getIcon();
+        ImageKey key = iconKey;
+        if (key == null || !key.toString().equals(icon.toString())) {
+            key = new ImageKey(icon.toString());
+            iconKey = key;
+        }
+        return key;
+    }
+
     /**
      * @return Whether the song has downloadable artwork associated with it.
      */
@@ -231,21 +260,46 @@ public class JiveItem extends Item {
         return (playAction != null || addAction != null || insertAction != null || moreAction != null || checkbox != null || radio != null);
     }
 
+    /** @return The record this item was created from. The record can't be modified. */
     public Map<String, Object> getRecord() {
-        JSON json = new JSON();
-        return (Map) json.fromJSON(this.record);
+        if (record == null) {
+            // The nested records were parcelled as the sub items
+            Map<String, Object> map = (Map) new JSON().fromJSON(parcelledRecord);
+            if (subItems != null) {
+                Object[] itemLoop = new Object[subItems.size()];
+                for (int i = 0; i < itemLoop.length; i++) {
+                    itemLoop[i] = subItems.get(i).getRecord();
+                }
+                map.put("item_loop", itemLoop);
+            }
+            record = Collections.unmodifiableMap(map);
+            parcelledRecord = null;
+        }
+        return record;
+    }
+
+    /**
+     * @return The record as JSON text, without the nested records, which are parcelled as the sub
+     *     items
+     */
+    private String parcelRecord() {
+        if (record == null) {
+            return parcelledRecord;
+        }
+        Map<String, Object> map = new HashMap<>(record);
+        map.remove("item_loop");
+        return new JSON().toJSON(map);
     }
 
     public void appendWeight(int weight) {
-        JSON json = new JSON();
-        Map<String, Object> map = (Map) json.fromJSON(this.record);
+        Map<String, Object> map = new HashMap<>(getRecord());
         map.put("weight", weight);
-        this.record = json.toJSON(map);
+        record = Collections.unmodifiableMap(map);
     }
 
     public JiveItem(Map<String, Object> record) {
-        JSON json = new JSON();
-        this.record = json.toJSON(record);
+        // Shallow copy, the caller may reuse the map for the next record
+        this.record = Collections.unmodifiableMap(new HashMap<>(record));
         setId(getString(record, record.containsKey("cmd") ? "cmd" : "id"));
         splitItemText(getStringOrEmpty(record, record.containsKey("name") ? "name" : "text"));
         textkey = getStringOrEmpty(record, "textkey");
@@ -317,6 +371,7 @@ public class JiveItem extends Item {
     }
 
     public JiveItem(Parcel source) {
+        parcelledRecord = source.readString();
         setId(source.readString());
         name = source.readString();
         text2 = source.readString();
@@ -356,6 +411,7 @@ public class JiveItem extends Item {
 
     @Override
     public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(parcelRecord());
         dest.writeString(getId());
         dest.writeString(name);
         dest.writeString(text2);
@@ -0,0 +1,83 @@
+package uk.org.ngo.squeezer.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Index of a sorted list from the server, mapping the text key (usually the first letter) of the
+ * items to the position of the first item with that key.
+ * <p>
+ * LMS sends the index of library lists in the <code>indexList</code> field of the response, when
+ * the request has the <code>wantIndex</code> parameter. Each entry is a pair of a text key and the
+ * number of items with that key, in list order.
+ */
+public class ListIndex {
+    private final String[] keys;
+    private final int[] offsets;
+
+    private ListIndex(String[] keys, int[] offsets) {
+        this.keys = keys;
+        this.offsets = offsets;
+    }
+
+    /**
+     * @param indexList The <code>indexList</code> field of a response
+     * @return The index, or null if the list has no index, or it is malformed
+     */
+    @Nullable
+    public static ListIndex fromIndexList(@Nullable Object indexList) {
+        if (!(indexList instanceof Object[])) {
+            return null;
+        }
+        Object[] entries = (Object[]) indexList;
+        String[] keys = new String[entries.length];
+        int[] offsets = new int[entries.length];
+        int offset = 0;
+        int n = 0;
+        for (Object entry : entries) {
+            if (!(entry instanceof Object[]) || ((Object[]) entry).length < 2) {
+                return null;
+            }
+            Object[] pair = (Object[]) entry;
+            int count = getCount(pair[1]);
+            if (count < 0) {
+                return null;
+            }
+            if (count > 0) {
+                keys[n] = String.valueOf(pair[0]);
+                offsets[n] = offset;
+                n++;
+                offset += count;
+            }
+        }
+        return (n > 0 ? new ListIndex(Arrays.copyOf(keys, n), Arrays.copyOf(offsets, n)) : null);
+    }
+
+    /** @return The number of items of an entry, or -1 if it is not a number */
+    private static int getCount(@Nullable Object count) {
+        if (count instanceof Number) {
+            return Math.max(0, ((Number) count).intValue());
+        }
+        if (count instanceof String) {
+            try {
+                return Math.max(0, Integer.parseInt((String) count));
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** @return The text key of the item at the supplied position */
+    @NonNull
+    public String getKey(int position) {
+        int i = Arrays.binarySearch(offsets, position);
+        if (i < 0) {
+            // Insertion point is the first entry after position
+            i = -i - 2;
+        }
+        return (i >= 0 ? keys[i] : "");
+    }
+}
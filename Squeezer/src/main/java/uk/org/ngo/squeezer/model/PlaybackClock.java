@@ -0,0 +1,110 @@
+package uk.org.ngo.squeezer.model;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The position of a player in the current song, as of a player status.
+ * <p>
+ * The position moves on at the play rate from when the status was received, so views read it
+ * when they are drawn, instead of being told the position every second. Times are in seconds,
+ * see {@link SystemClock#elapsedRealtime()}.
+ */
+public final class PlaybackClock {
+    /**
+     * A clock whose position is within this many seconds of another clock's position, is
+     * in line with it, see {@link #isInLineWith(PlaybackClock)}.
+     */
+    static final double TOLERANCE = 1.0;
+
+    /** Position in the song when the status was received */
+    private final double timeSecond;
+
+    /** Play rate, 0 if not playing */
+    private final double rate;
+
+    /** When the status was received */
+    private final double seen;
+
+    /** Duration of the song */
+    private final int duration;
+
+    public PlaybackClock(double timeSecond, double rate, double seen, int duration) {
+        this.timeSecond = timeSecond;
+        this.rate = rate;
+        this.seen = seen;
+        this.duration = duration;
+    }
+
+    /**
+     * @return The position in the song at the supplied time
+     */
+    public double getPositionAt(double now) {
+        double correction = rate * (now - seen);
+        return correction <= 0 ? timeSecond : timeSecond + correction;
+    }
+
+    /**
+     * @return The position in the song now
+     */
+    public double getPosition() {
+        return getPositionAt(SystemClock.elapsedRealtime() / 1000.0);
+    }
+
+    /**
+     * @return The number of whole seconds into the song now
+     */
+    public int getTrackElapsed() {
+        return (int) getPosition();
+    }
+
+    public int getDuration() {
+        return duration;
+    }
+
+    /**
+     * @return True if the position moves on
+     */
+    public boolean isRunning() {
+        return rate > 0;
+    }
+
+    /**
+     * @return Milliseconds from the supplied time until the position reaches the next whole
+     *     second, if the clock is running
+     */
+    public long getMillisToNextSecondAt(double now) {
+        double position = getPositionAt(now);
+        return (long) Math.ceil((Math.floor(position) + 1 - position) * 1000 / rate);
+    }
+
+    /**
+     * @return Milliseconds until the position reaches the next whole second, if the clock is
+     *     running
+     */
+    public long getMillisToNextSecond() {
+        return getMillisToNextSecondAt(SystemClock.elapsedRealtime() / 1000.0);
+    }
+
+    /**
+     * @return True if this clock runs like the supplied earlier clock, and gives about the
+     *     same position, so views which read the earlier clock need not be told about this one
+     */
+    public boolean isInLineWith(@NonNull PlaybackClock other) {
+        return rate == other.rate
+                && duration == other.duration
+                && Math.abs(other.getPositionAt(seen) - timeSecond) < TOLERANCE;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "PlaybackClock{" +
+                "timeSecond=" + timeSecond +
+                ", rate=" + rate +
+                ", seen=" + seen +
+                ", duration=" + duration +
+                '}';
+    }
+}
@@ -184,7 +184,7 @@ public class Player extends Item implements Comparable<Player> {
     }
 
     public SongTimeChanged getTrackElapsed() {
-        return new SongTimeChanged(this, mPlayerState.getTrackElapsed(), mPlayerState.getCurrentSongDuration());
+        return new SongTimeChanged(this, mPlayerState.getPlaybackClock());
     }
 
     public int getSleepingIn() {
@@ -19,7 +19,6 @@ package uk.org.ngo.squeezer.model;
 
 import android.os.Parcel;
 import android.os.Parcelable;
-import android.os.SystemClock;
 
 import androidx.annotation.DrawableRes;
 import androidx.annotation.NonNull;
@@ -308,9 +307,13 @@ public class PlayerState implements Parcelable {
     }
 
     private double calcPosition() {
-        double now = SystemClock.elapsedRealtime() / 1000.0;
-        double trackCorrection = rate * (now - statusSeen);
-        return trackCorrection <= 0 ? currentTimeSecond : currentTimeSecond + trackCorrection;
+        return getPlaybackClock().getPosition();
+    }
+
+    /** Get the position in the current song, as of the last status */
+    @NonNull
+    public PlaybackClock getPlaybackClock() {
+        return new PlaybackClock(currentTimeSecond, rate, statusSeen, currentSongDuration);
     }
 
     public int getCurrentSongDuration() {
@@ -0,0 +1,182 @@
+package uk.org.ngo.squeezer.service;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import uk.org.ngo.squeezer.itemlist.IServiceItemListCallback;
+import uk.org.ngo.squeezer.model.CurrentPlaylistItem;
+import uk.org.ngo.squeezer.model.JiveItem;
+import uk.org.ngo.squeezer.model.Player;
+import uk.org.ngo.squeezer.model.PlayerState;
+import uk.org.ngo.squeezer.util.ImageFetcher;
+
+/**
+ * Loads the artwork of the next tracks of the playlist of the active player into the image
+ * caches, so it shows at once when the track starts.
+ * <p>
+ * The artwork is loaded at the size of the large icon of the notification, and at the sizes
+ * of the now playing views. A round of prefetching downloads at most {@link #PREFETCH_BUDGET}
+ * bytes, and nothing is prefetched on metered networks.
+ * <p>
+ * All work is done on the main thread.
+ */
+class ArtworkPrefetcher {
+    private static final String TAG = ArtworkPrefetcher.class.getSimpleName();
+
+    /** Number of upcoming tracks to prefetch the artwork of. */
+    private static final int PREFETCH_TRACKS = 3;
+
+    /** Maximum number of bytes to download per round. */
+    private static final long PREFETCH_BUDGET = 2 * 1024 * 1024;
+
+    /**
+     * Time to wait for the playlist to settle before prefetching, in milliseconds. Skipping
+     * through tracks, or adding several albums, starts only one round.
+     */
+    private static final long PREFETCH_DELAY = 2000;
+
+    private final Context mContext;
+    private final SlimDelegate mDelegate;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    /** Incremented to abandon the current round. Only accessed on the main thread. */
+    private int mGeneration;
+
+    /** The scheduled round, if it hasn't started. Only accessed on the main thread. */
+    @Nullable
+    private Runnable mScheduled;
+
+    ArtworkPrefetcher(@NonNull Context context, @NonNull SlimDelegate delegate) {
+        mContext = context.getApplicationContext();
+        mDelegate = delegate;
+    }
+
+    /**
+     * Prefetch the artwork of the next tracks of the player, after a short delay. Abandons any
+     * round in progress. May be called from any thread.
+     */
+    void schedule(@NonNull Player player) {
+        mHandler.post(() -> {
+            abandon();
+            final int generation = mGeneration;
+            mScheduled = () -> requestTracks(generation, player);
+            mHandler.postDelayed(mScheduled, PREFETCH_DELAY);
+        });
+    }
+
+    /**
+     * Abandon any scheduled or current round. May be called from any thread.
+     */
+    void cancel() {
+        mHandler.post(this::abandon);
+    }
+
+    private void abandon() {
+        ++mGeneration;
+        if (mScheduled != null) {
+            mHandler.removeCallbacks(mScheduled);
+            mScheduled = null;
+        }
+    }
+
+    private boolean isMetered() {
+        ConnectivityManager connectivityManager = (ConnectivityManager) mContext.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivityManager == null || connectivityManager.isActiveNetworkMetered();
+    }
+
+    private void requestTracks(int generation, @NonNull Player player) {
+        mScheduled = null;
+        if (generation != mGeneration || !player.equals(mDelegate.getActivePlayer()) || isMetered()) {
+            return;
+        }
+
+        PlayerState playerState = player.getPlayerState();
+        int start = playerState.getCurrentPlaylistIndex() + 1;
+        if (start >= playerState.getCurrentPlaylistTracksNum()) {
+            return;
+        }
+        CurrentPlaylistItem currentSong = playerState.getCurrentSong();
+        String skip = (currentSong != null && currentSong.useIcon()) ? currentSong.getIcon().toString() : null;
+
+        mDelegate.requestItems(player, start, PREFETCH_TRACKS, new UpcomingTracksReceiver(generation, start, skip))
+                .cmd("status").param("menu", "menu").exec();
+    }
+
+    private void start(int generation, @NonNull List<String> urls, @Nullable String skip) {
+        if (generation != mGeneration) {
+            return;
+        }
+
+        ImageFetcher imageFetcher = ImageFetcher.getInstance(mContext);
+        List<int[]> sizes = new ArrayList<>();
+        sizes.add(new int[]{
+                mContext.getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_width),
+                mContext.getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_height)});
+        sizes.addAll(imageFetcher.getPriorityImageSizes());
+
+        prefetchNext(generation, imageFetcher, new PrefetchRound(urls, skip, sizes, PREFETCH_BUDGET));
+    }
+
+    private void prefetchNext(int generation, @NonNull ImageFetcher imageFetcher, @NonNull PrefetchRound round) {
+        if (generation != mGeneration || isMetered()) {
+            return;
+        }
+
+        PrefetchRound.Request request = round.next();
+        if (request == null) {
+            Log.d(TAG, "Prefetched artwork, downloaded " + round.getDownloaded() + " bytes");
+            return;
+        }
+
+        imageFetcher.prefetchImage(request.url, request.width, request.height, (loaded, downloadedBytes) -> {
+            round.onPrefetched(downloadedBytes);
+            prefetchNext(generation, imageFetcher, round);
+        });
+    }
+
+    /**
+     * Receives the upcoming tracks, and starts prefetching their artwork on the main thread.
+     */
+    private class UpcomingTracksReceiver implements IServiceItemListCallback<JiveItem> {
+        private final int generation;
+        private final int start;
+        @Nullable
+        private final String skip;
+
+        UpcomingTracksReceiver(int generation, int start, @Nullable String skip) {
+            this.generation = generation;
+            this.start = start;
+            this.skip = skip;
+        }
+
+        @Override
+        public void onItemsReceived(int count, int start, Map<String, Object> parameters, List<JiveItem> items, Class<JiveItem> dataType) {
+            if (start != this.start) {
+                return;
+            }
+
+            final List<String> urls = new ArrayList<>();
+            for (JiveItem item : items.subList(0, Math.min(items.size(), PREFETCH_TRACKS))) {
+                if (item.useIcon()) {
+                    urls.add(item.getIcon().toString());
+                }
+            }
+            mHandler.post(() -> start(generation, urls, skip));
+        }
+
+        @Override
+        public Object getClient() {
+            return ArtworkPrefetcher.this;
+        }
+    }
+}
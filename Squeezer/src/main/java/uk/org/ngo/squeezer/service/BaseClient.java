@@ -19,6 +19,7 @@ package uk.org.ngo.squeezer.service;
 import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Arrays;
 import java.util.Map;
@@ -31,6 +32,7 @@ import uk.org.ngo.squeezer.Squeezer;
 import uk.org.ngo.squeezer.Util;
 import uk.org.ngo.squeezer.itemlist.IServiceItemListCallback;
 import uk.org.ngo.squeezer.model.CurrentPlaylistItem;
+import uk.org.ngo.squeezer.model.PlaybackClock;
 import uk.org.ngo.squeezer.model.Player;
 import uk.org.ngo.squeezer.model.PlayerState;
 import uk.org.ngo.squeezer.model.SlimCommand;
@@ -92,6 +94,7 @@ abstract class BaseClient implements SlimClient {
 
     void parseStatus(final Player player, CurrentPlaylistItem currentSong, Map<String, Object> tokenMap) {
         PlayerState playerState = player.getPlayerState();
+        PlaybackClock previousClock = playerState.getPlaybackClock();
         playerState.statusSeen = SystemClock.elapsedRealtime() / 1000.0;
 
         boolean changedPower = playerState.setPoweredOn(Util.getInt(tokenMap, "power") == 1);
@@ -110,7 +113,9 @@ abstract class BaseClient implements SlimClient {
         playerState.rate = Util.getDouble(tokenMap, "rate");
         boolean changedSongDuration = playerState.setCurrentSongDuration(Util.getInt(tokenMap, "duration"));
         boolean changedSongTime = playerState.setCurrentTimeSecond(Util.getDouble(tokenMap, "time"));
-        boolean changedVolume = playerState.setCurrentVolume(Util.getInt(tokenMap, "mixer volume"));
+        int volume = Util.getInt(tokenMap, "mixer volume");
+        boolean changedVolume = !mConnectionState.getVolumeChannel(player).isEcho(volume, SystemClock.elapsedRealtime())
+                && playerState.setCurrentVolume(volume);
         boolean changedSyncMaster = playerState.setSyncMaster(Util.getString(tokenMap, "sync_master"));
         boolean changedSyncSlaves = playerState.setSyncSlaves(Arrays.stream(Util.getStringOrEmpty(tokenMap, "sync_slaves").split(",")).filter(it -> !it.isEmpty()).collect(Collectors.toList()));
         boolean changedPlayStatus = updatePlayStatus(playerState, Util.getStringOrEmpty(tokenMap, "mode"));
@@ -156,8 +161,8 @@ abstract class BaseClient implements SlimClient {
             mEventBus.post(new RepeatStatusChanged(player, playerState.getRepeatStatus()));
         }
 
-        // Position in song
-        if (changedSongDuration || changedSongTime || changedPlayStatus) {
+        // Position in song, if it didn't just move on as the previous status says
+        if (changedSongDuration || changedPlayStatus || !playerState.getPlaybackClock().isInLineWith(previousClock)) {
             postSongTimeChanged(player);
         }
 
@@ -195,14 +200,26 @@ abstract class BaseClient implements SlimClient {
     protected static class BrowseRequest<T> extends SlimCommand {
         private final Player player;
         private final boolean fullList;
+        private final boolean window;
         private int start;
         private int itemsPerResponse;
         private final IServiceItemListCallback<T> callback;
 
+        /** When the current response was requested, see {@link System#nanoTime()} */
+        long requestTime;
+
+        /** True if the response was looked up in the browse cache */
+        boolean cacheLookedUp;
+
+        /** The page which collects the responses for the browse cache, or null */
+        @Nullable
+        BrowseCache.Page cachePage;
+
         BrowseRequest(Player player, String[] cmd, Map<String, Object> params, int start, int itemsPerResponse, IServiceItemListCallback<T> callback) {
             this.player = player;
             this.cmd(cmd);
             this.fullList = (start == ALL_ITEMS);
+            this.window = (!fullList && itemsPerResponse < mPageSize);
             this.start = start;
             this.itemsPerResponse = itemsPerResponse;
             this.callback = callback;
@@ -212,6 +229,10 @@ abstract class BaseClient implements SlimClient {
         public BrowseRequest update(int start, int itemsPerResponse) {
             this.start = start;
             this.itemsPerResponse = itemsPerResponse;
+            if (start > 0) {
+                // The index of the list comes with the first chunk, see ListIndex
+                params.remove("wantIndex");
+            }
             return this;
         }
 
@@ -223,6 +244,14 @@ abstract class BaseClient implements SlimClient {
             return (fullList);
         }
 
+        /**
+         * @return True if fewer items than a page were requested. Only those items are ordered,
+         * not the rest of the page.
+         */
+        boolean isWindow() {
+            return (window);
+        }
+
         boolean isCurrent() {
             return (start == CURRENT);
         }
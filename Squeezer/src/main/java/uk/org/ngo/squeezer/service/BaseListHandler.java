@@ -45,6 +45,13 @@ abstract class BaseListHandler<T> implements ListHandler<T> {
 
     @Override
     public void add(Map<String, Object> record) {
+        items.add(newItem(record));
+    }
+
+    /**
+     * @return A new item made from the supplied record
+     */
+    T newItem(Map<String, Object> record) {
         if (constructor == null) {
             try {
                 constructor = dataType.getDeclaredConstructor(Map.class);
@@ -54,7 +61,7 @@ abstract class BaseListHandler<T> implements ListHandler<T> {
             }
         }
         try {
-            items.add(constructor.newInstance(record));
+            return constructor.newInstance(record);
         } catch (Exception e) {
             throw new InstantiationException("Unable to create new " + dataType.getName(), e);
         }
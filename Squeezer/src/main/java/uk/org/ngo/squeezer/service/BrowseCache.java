@@ -0,0 +1,538 @@
+package uk.org.ngo.squeezer.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import uk.org.ngo.squeezer.util.DiskLruCache;
+
+/**
+ * Pages of browse responses for library views, kept on disk.
+ * <p>
+ * Library views only change when the server scans the library, so a page is valid as long as
+ * the server reports the same {@code lastscan} as when the page was received. Pages are shown
+ * from the cache without asking the server, and pages older than {@link #REVALIDATE_AGE} are
+ * shown and also ordered again. While the server scans the library nothing is cached.
+ * <p>
+ * Pages are stored as a compact binary encoding of the JSON of the response, before it's
+ * patched for the connection, see {@link Page}. Times are in milliseconds, see
+ * {@link System#currentTimeMillis()}. Thread safe.
+ */
+class BrowseCache {
+    /** Version of the format of the stored pages. */
+    static final int VERSION = 1;
+
+    /** Age after which a page which is still valid is shown, and also ordered again. */
+    static final long REVALIDATE_AGE = TimeUnit.HOURS.toMillis(1);
+
+    /** First terms of the commands of library views. */
+    private static final Set<String> LIBRARY_COMMANDS = new HashSet<>(Arrays.asList(
+            "browselibrary", "artists", "albums", "genres", "years", "musicfolder"));
+
+    /** Parameters of searches, which are not cached. */
+    private static final Set<String> SEARCH_PARAMS = new HashSet<>(Arrays.asList(
+            "search", "term"));
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int ARRAY = 6;
+    private static final int MAP = 7;
+
+    private final File directory;
+    private final long maxSize;
+
+    /**
+     * Guards the cache on disk and the counters. Disk operations hold this lock instead of the
+     * monitor of the cache, so the server status can be read and set while they run.
+     */
+    private final Object diskLock = new Object();
+
+    /** The cache on disk, opened when it's first used, or null */
+    @Nullable
+    private DiskLruCache diskCache;
+
+    /** Identity of the server, or null if the server status is not known */
+    @Nullable
+    private String serverId;
+
+    /** When the server last scanned the library, or null if the server status is not known */
+    @Nullable
+    private String lastScan;
+
+    /** True while the server scans the library */
+    private boolean scanning;
+
+    private long hits;
+    private long revalidations;
+    private long misses;
+    private long invalidations;
+    private long writes;
+    private long errors;
+    private long clears;
+
+    BrowseCache(@NonNull File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return True if the response to the supplied command only changes when the server scans the
+     *     library
+     */
+    static boolean isCacheable(@NonNull List<String> cmd, @NonNull Map<String, Object> params) {
+        if (cmd.isEmpty() || !LIBRARY_COMMANDS.contains(cmd.get(0))) {
+            return false;
+        }
+        for (String param : params.keySet()) {
+            if (SEARCH_PARAMS.contains(param)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Set the status of the server, as reported by the server, or null values while it's not
+     * known.
+     *
+     * @return True if the server scanned the library since the last status, so the cache must be
+     *     cleared, see {@link #clear()}
+     */
+    synchronized boolean setServerStatus(@Nullable String serverId, @Nullable String lastScan, boolean scanning) {
+        boolean rescanned = serverId != null && serverId.equals(this.serverId)
+                && this.lastScan != null && !this.lastScan.equals(lastScan);
+        this.serverId = serverId;
+        this.lastScan = lastScan;
+        this.scanning = scanning;
+        return rescanned;
+    }
+
+    /**
+     * @return True if the server status is known and the server is not scanning the library
+     */
+    synchronized boolean isEnabled() {
+        return serverId != null && lastScan != null && !scanning;
+    }
+
+    /**
+     * @param request Key of the request for a page, which is equal for requests that get the same
+     *     response from the server
+     * @param start Position of the page
+     * @param size Number of items in a page
+     * @return A page to collect the response to the request in, or null if nothing is cached now
+     */
+    @Nullable
+    synchronized Page newPage(@NonNull String request, int start, int size) {
+        return isEnabled() ? new Page(diskKey(request), lastScan, start, size) : null;
+    }
+
+    /**
+     * @param request Key of the request for a page, see {@link #newPage(String, int, int)}
+     * @return The cached response to the request, or null if there is no valid response
+     */
+    @Nullable
+    Entry get(@NonNull String request, long now) {
+        String key;
+        String lastScan;
+        synchronized (this) {
+            if (!isEnabled()) {
+                return null;
+            }
+            key = diskKey(request);
+            lastScan = this.lastScan;
+        }
+        synchronized (diskLock) {
+            try {
+                DiskLruCache cache = open();
+                try (DiskLruCache.Snapshot snapshot = cache.get(key)) {
+                    if (snapshot == null) {
+                        misses++;
+                        return null;
+                    }
+                    Entry entry = Entry.read(snapshot.getInputStream(0));
+                    if (!lastScan.equals(entry.lastScan)) {
+                        cache.remove(key);
+                        invalidations++;
+                        misses++;
+                        return null;
+                    }
+                    entry.revalidate = now - entry.written >= REVALIDATE_AGE;
+                    if (entry.revalidate) {
+                        revalidations++;
+                    } else {
+                        hits++;
+                    }
+                    return entry;
+                }
+            } catch (IOException | RuntimeException e) {
+                errors++;
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Store the supplied complete page, if it's still valid.
+     */
+    void put(@NonNull Page page, long now) {
+        synchronized (this) {
+            if (!isEnabled() || !lastScan.equals(page.lastScan)) {
+                return;
+            }
+        }
+        synchronized (diskLock) {
+            try {
+                DiskLruCache.Editor editor = open().edit(page.key);
+                if (editor == null) {
+                    return;
+                }
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(editor.newOutputStream(0)))) {
+                    page.write(out, now);
+                } catch (IOException e) {
+                    editor.abort();
+                    throw e;
+                }
+                editor.commit();
+                writes++;
+            } catch (IOException | RuntimeException e) {
+                errors++;
+            }
+        }
+    }
+
+    /**
+     * Remove all pages.
+     */
+    void clear() {
+        synchronized (diskLock) {
+            try {
+                if (diskCache != null) {
+                    diskCache.delete();
+                } else if (directory.isDirectory()) {
+                    DiskLruCache.deleteContents(directory);
+                }
+                clears++;
+            } catch (IOException | RuntimeException e) {
+                errors++;
+            } finally {
+                diskCache = null;
+            }
+        }
+    }
+
+    private DiskLruCache open() throws IOException {
+        if (diskCache == null || diskCache.isClosed()) {
+            diskCache = DiskLruCache.open(directory, VERSION, 1, maxSize);
+        }
+        return diskCache;
+    }
+
+    private String diskKey(String request) {
+        return UUID.nameUUIDFromBytes((serverId + ' ' + request).getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        synchronized (diskLock) {
+            long lookups = hits + revalidations + misses;
+            return "BrowseCache{" +
+                    "hits=" + hits +
+                    ", revalidations=" + revalidations +
+                    ", misses=" + misses +
+                    ", hitRate=" + (lookups > 0 ? (hits + revalidations) * 100 / lookups : 0) + '%' +
+                    ", invalidations=" + invalidations +
+                    ", writes=" + writes +
+                    ", errors=" + errors +
+                    ", clears=" + clears +
+                    '}';
+        }
+    }
+
+    /**
+     * The response to the request for a page, collected from the responses for the chunks of the
+     * page.
+     * <p>
+     * The records are encoded as they are received, because the records of a response are decoded
+     * into the same map.
+     */
+    static class Page {
+        private final String key;
+        private final String lastScan;
+        private final int start;
+        private final int size;
+
+        private int count = -1;
+        private byte[] data;
+        private int recordCount;
+        private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+        private final DataOutputStream recordsOut = new DataOutputStream(records);
+        private final Map<String, Integer> keys = new HashMap<>();
+
+        private Page(String key, String lastScan, int start, int size) {
+            this.key = key;
+            this.lastScan = lastScan;
+            this.start = start;
+            this.size = size;
+        }
+
+        /**
+         * Start the response for a chunk of the page.
+         *
+         * @param start Position of the chunk
+         * @param count Number of items in the list
+         * @param data The response
+         * @param itemLoopName Name of the records in the response, which are added one at a time
+         * @return False if the chunk doesn't follow the previous chunk, or the list changed, so
+         *     the page must not be stored
+         */
+        boolean startChunk(int start, int count, @NonNull Map<String, Object> data, @NonNull String itemLoopName) {
+            if (start != this.start + recordCount || (this.count >= 0 && count != this.count)) {
+                return false;
+            }
+            if (this.count < 0) {
+                this.count = count;
+                Map<String, Object> response = new HashMap<>(data);
+                response.remove(itemLoopName);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (DataOutputStream out = new DataOutputStream(bytes)) {
+                    writeValue(out, response, new HashMap<>());
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                this.data = bytes.toByteArray();
+            }
+            return true;
+        }
+
+        /** Add a record of the current chunk. */
+        void addRecord(@NonNull Map<String, Object> record) {
+            try {
+                writeValue(recordsOut, record, keys);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            recordCount++;
+        }
+
+        /** @return True if all the records of the page are added */
+        boolean isComplete() {
+            return count >= 0 && start + recordCount >= Math.min(count, start + size);
+        }
+
+        private void write(DataOutputStream out, long now) throws IOException {
+            out.writeUTF(lastScan);
+            out.writeLong(now);
+            writeVarInt(out, count);
+            out.write(data);
+            writeVarInt(out, recordCount);
+            records.writeTo(out);
+        }
+    }
+
+    /**
+     * A cached response to the request for a page.
+     */
+    static class Entry {
+        private String lastScan;
+        private long written;
+        private int count;
+        private Map<String, Object> data;
+        private Object[] records;
+        private boolean revalidate;
+
+        /** @return Number of items in the list */
+        int getCount() {
+            return count;
+        }
+
+        /** @return The response, without the records */
+        Map<String, Object> getData() {
+            return data;
+        }
+
+        /** @return The records of the page */
+        Object[] getRecords() {
+            return records;
+        }
+
+        /** @return True if the page must also be ordered from the server */
+        boolean needsRevalidation() {
+            return revalidate;
+        }
+
+        @SuppressWarnings("unchecked")
+        static Entry read(InputStream in) throws IOException {
+            try (DataInputStream din = new DataInputStream(new BufferedInputStream(in))) {
+                Entry entry = new Entry();
+                entry.lastScan = din.readUTF();
+                entry.written = din.readLong();
+                entry.count = readVarInt(din);
+                entry.data = (Map<String, Object>) readValue(din, new ArrayList<>());
+                entry.records = new Object[readVarInt(din)];
+                List<String> keys = new ArrayList<>();
+                for (int i = 0; i < entry.records.length; i++) {
+                    entry.records[i] = readValue(din, keys);
+                }
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Write a JSON value. Keys of maps are written once, and referred to by their index after
+     * that.
+     */
+    @SuppressWarnings("unchecked")
+    static void writeValue(DataOutputStream out, @Nullable Object value, Map<String, Integer> keys) throws IOException {
+        if (value instanceof RecordLoop) {
+            value = ((RecordLoop) value).toArray();
+        }
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            out.writeByte(LONG);
+            long l = ((Number) value).longValue();
+            writeVarLong(out, (l << 1) ^ (l >> 63));
+        } else if (value instanceof Number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            out.writeByte(ARRAY);
+            writeVarInt(out, array.length);
+            for (Object element : array) {
+                writeValue(out, element, keys);
+            }
+        } else if (value instanceof Map) {
+            Map<String, Object> map = (Map<String, Object>) value;
+            out.writeByte(MAP);
+            writeVarInt(out, map.size());
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                Integer index = keys.get(entry.getKey());
+                if (index != null) {
+                    writeVarInt(out, index << 1 | 1);
+                } else {
+                    keys.put(entry.getKey(), keys.size());
+                    writeVarInt(out, 0);
+                    writeString(out, entry.getKey());
+                }
+                writeValue(out, entry.getValue(), keys);
+            }
+        } else {
+            out.writeByte(STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    @Nullable
+    static Object readValue(DataInputStream in, List<String> keys) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case LONG: {
+                long l = readVarLong(in);
+                return (l >>> 1) ^ -(l & 1);
+            }
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString(in);
+            case ARRAY: {
+                Object[] array = new Object[readVarInt(in)];
+                for (int i = 0; i < array.length; i++) {
+                    array[i] = readValue(in, keys);
+                }
+                return array;
+            }
+            case MAP: {
+                int size = readVarInt(in);
+                Map<String, Object> map = new HashMap<>();
+                for (int i = 0; i < size; i++) {
+                    int index = readVarInt(in);
+                    String key;
+                    if ((index & 1) != 0) {
+                        key = keys.get(index >> 1);
+                    } else {
+                        key = readString(in);
+                        keys.add(key);
+                    }
+                    map.put(key, readValue(in, keys));
+                }
+                return map;
+            }
+            default:
+                throw new IOException("Unknown type " + type);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeVarInt(OutputStream out, int value) throws IOException {
+        writeVarLong(out, value & 0xffffffffL);
+    }
+
+    private static void writeVarLong(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Invalid number");
+    }
+}
@@ -0,0 +1,63 @@
+package uk.org.ngo.squeezer.service;
+
+/**
+ * Chooses how many items to ask for in each browse request.
+ * <p>
+ * The first request for a list asks for a few items, so the first screen can be shown quickly.
+ * Subsequent requests adapt to the time it took to receive and decode previous responses: the
+ * number of items doubles while responses are faster than the target time, and halves when they
+ * are much slower, within the given bounds.
+ * <p>
+ * Methods may be called from any thread.
+ */
+class BrowseChunkSizer {
+    private final int firstChunkSize;
+    private final int minChunkSize;
+    private final int maxChunkSize;
+    private final long targetNanos;
+
+    private int chunkSize;
+
+    /**
+     * @param firstChunkSize Number of items in the first request for a list
+     * @param minChunkSize Lower bound of the adapted number of items
+     * @param maxChunkSize Upper bound of the adapted number of items
+     * @param targetNanos Time it should take to receive and decode a response
+     */
+    BrowseChunkSizer(int firstChunkSize, int minChunkSize, int maxChunkSize, long targetNanos) {
+        this.firstChunkSize = firstChunkSize;
+        this.minChunkSize = minChunkSize;
+        this.maxChunkSize = maxChunkSize;
+        this.targetNanos = targetNanos;
+        this.chunkSize = minChunkSize;
+    }
+
+    /** @return Number of items to request for the first response of a list */
+    int getFirstChunkSize() {
+        return Math.min(firstChunkSize, maxChunkSize);
+    }
+
+    /** @return Number of items to request in subsequent responses */
+    synchronized int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Record the cost of a response.
+     *
+     * @param requested Number of items requested
+     * @param received Number of items received
+     * @param latencyNanos Time from the request until the response was received
+     * @param decodeNanos Time spent creating items from the response
+     */
+    synchronized void onResponse(int requested, int received, long latencyNanos, long decodeNanos) {
+        long elapsed = latencyNanos + decodeNanos;
+        if (elapsed > 2 * targetNanos) {
+            chunkSize = Math.max(minChunkSize, chunkSize / 2);
+        } else if (elapsed < targetNanos && received >= requested && requested >= chunkSize / 2) {
+            // Only grow when a response of about the current size was fast, not when the end of
+            // the list or a small first response was fast.
+            chunkSize = Math.min(maxChunkSize, chunkSize * 2);
+        }
+    }
+}
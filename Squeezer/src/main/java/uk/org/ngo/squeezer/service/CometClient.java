@@ -19,6 +19,7 @@ package uk.org.ngo.squeezer.service;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.SystemClock;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
@@ -38,21 +39,30 @@ import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 
 import uk.org.ngo.squeezer.Preferences;
+import uk.org.ngo.squeezer.R;
 import uk.org.ngo.squeezer.Squeezer;
 import uk.org.ngo.squeezer.Util;
 import uk.org.ngo.squeezer.model.AlertWindow;
@@ -75,6 +85,7 @@ import uk.org.ngo.squeezer.service.event.MusicChanged;
 import uk.org.ngo.squeezer.service.event.PlayerVolume;
 import uk.org.ngo.squeezer.service.event.RegisterSqueezeNetwork;
 import uk.org.ngo.squeezer.util.FluentHashMap;
+import uk.org.ngo.squeezer.util.ImageCache;
 import uk.org.ngo.squeezer.util.Reflection;
 import uk.org.ngo.squeezer.util.SendWakeOnLan;
 
@@ -115,6 +126,40 @@ class CometClient extends BaseClient {
     public static long SERVER_STATUS_INTERVAL = 60;
     public static final long SERVER_STATUS_TIMEOUT = SERVER_STATUS_INTERVAL * 1_000 + 10_000;
 
+    /** Maximum number of published messages waiting for a reply from the server. */
+    private static final int PUBLISH_WINDOW = Math.max(1, Squeezer.getInstance().getResources().getInteger(R.integer.PublishWindow));
+
+    /** Time in milliseconds to collect published messages, before they are sent to the server together. */
+    private static final long PUBLISH_BATCH_DELAY = 5;
+
+    /** Number of items in the first response for a list, so the first screen is shown quickly. */
+    private static final int FIRST_CHUNK_SIZE = 64;
+
+    /** Time in milliseconds it should take to receive and decode the items in a response. */
+    private static final long TARGET_CHUNK_TIME = 250;
+
+    /** Chooses the number of items in browse responses, after the first response for a list. */
+    private final BrowseChunkSizer mChunkSizer = new BrowseChunkSizer(FIRST_CHUNK_SIZE, FIRST_CHUNK_SIZE,
+            mPageSize, TimeUnit.MILLISECONDS.toNanos(TARGET_CHUNK_TIME));
+
+    /** Time in milliseconds after which a browse request is not joined by identical requests. */
+    private static final long BROWSE_COALESCE_TIMEOUT = 10_000;
+
+    /** Maximum size in bytes of the browse cache on disk. */
+    private static final long BROWSE_CACHE_SIZE = 8 * 1024 * 1024;
+
+    /** Pages of library views, until the server scans the library. */
+    private final BrowseCache mBrowseCache = new BrowseCache(
+            ImageCache.getDiskCacheDir(Squeezer.getInstance(), "browse"), BROWSE_CACHE_SIZE);
+
+    /**
+     * Runs reads, writes and clears of the browse cache, so disk access doesn't delay commands
+     * and replies on the handler thread.
+     */
+    private final ExecutorService mBrowseCacheExecutor = Executors.newSingleThreadExecutor();
+
+    /** Browse requests waiting to be looked up in the browse cache. */
+    private final Set<BrowseRequest<?>> mCacheLookups = ConcurrentHashMap.newKeySet();
 
     /** Handler for off-main-thread work. */
     @NonNull
@@ -135,14 +180,42 @@ class CometClient extends BaseClient {
 
     private final Map<String, BrowseRequest<?>> mPendingBrowseRequests = new ConcurrentHashMap<>();
 
-    private final Queue<PublishMessage> mCommandQueue = new LinkedList<>();
-    private boolean mCurrentCommand;
+    /**
+     * Browse requests sent to the server, and identical requests waiting for the same response,
+     * by {@link #browseKey(BrowseRequest)}. Guarded by itself.
+     */
+    private final Map<String, BrowseGroup> mBrowseGroups = new HashMap<>();
+
+    /** Browse requests sent to the server, and browse requests which joined an identical request. */
+    private final AtomicInteger mBrowseRequestCount = new AtomicInteger();
+    private final AtomicInteger mCoalescedBrowseRequestCount = new AtomicInteger();
+
+    /** Messages waiting for a free slot in the publish window. Only accessed from the handler thread. */
+    private final Queue<PublishMessage> mCommandQueue = new ArrayDeque<>();
+
+    /** Published messages waiting for a reply. Only accessed from the handler thread. */
+    private final Set<PublishMessage> mInFlight = new HashSet<>();
+
+    /** Ordering keys of published messages waiting for a reply. Only accessed from the handler thread. */
+    private final Set<String> mInFlightKeys = new HashSet<>();
+
+    /** The client which is collecting published messages, or null. Only accessed from the handler thread. */
+    @Nullable
+    private SqueezerBayeuxClient mBatchClient;
+
+    /** Number of messages in the current batch. Only accessed from the handler thread. */
+    private int mBatchSize;
+
+    /** Batch statistics. Only updated from the handler thread. */
+    private volatile int mBatchCount;
+    private volatile int mBatchedMessageCount;
+    private volatile int mMaxBatchSize;
 
     private final PublishListener mPublishListener = new PublishListener();
 
     // All requests are tagged with a correlation id, which can be used when
     // asynchronous responses are received.
-    private volatile int mCorrelationId = 0;
+    private final AtomicInteger mCorrelationId = new AtomicInteger();
 
     CometClient(@NonNull EventBus eventBus) {
         super(eventBus);
@@ -176,9 +249,11 @@ class CometClient extends BaseClient {
                         String volume = (String) message.getDataAsMap().get("_volume");
                         if (volume != null) {
                             int newVolume = Integer.parseInt(volume);
-                            PlayerState playerState = player.getPlayerState();
-                            playerState.setCurrentVolume(newVolume);
-                            mEventBus.post(new PlayerVolume(player));
+                            if (!getConnectionState().getVolumeChannel(player).isEcho(newVolume, SystemClock.elapsedRealtime())) {
+                                PlayerState playerState = player.getPlayerState();
+                                playerState.setCurrentVolume(newVolume);
+                                mEventBus.post(new PlayerVolume(player));
+                            }
                         } else {
                             // Since LMS doesn't send player status when volume is updated via a synced player we order them explicitly
                             if (player.isSyncVolume()) {
@@ -305,8 +380,12 @@ class CometClient extends BaseClient {
 
     private void onConnected(boolean isSqueezeNetwork) {
         Log.i(TAG, "Connected, start learning server capabilities");
-        mCurrentCommand = false;
+        // Replies to messages published before the (re)handshake will never arrive.
+        // This is posted so it is handled before the publishes below.
+        mBackgroundHandler.post(this::resetPublishWindow);
         mConnectionState.setConnectionState(ConnectionState.CONNECTION_COMPLETED);
+        // The browse cache is used when the server status says which server this is
+        mBrowseCache.setServerStatus(null, null, false);
         // If this is a rehandshake we may already have players.
         boolean rehandshake = !mConnectionState.getPlayers().isEmpty();
 
@@ -362,19 +441,21 @@ class CometClient extends BaseClient {
 
         getConnectionState().setMediaDirs(Util.getStringArray(data, ConnectionState.MEDIA_DIRS));
         getConnectionState().setServerVersion((String) data.get("version"));
-        Object[] item_data = (Object[]) data.get("players_loop");
+        if (mBrowseCache.setServerStatus(Util.getString(data, "uuid"), Util.getString(data, "lastscan"), Util.getInt(data, "rescan") != 0)) {
+            mBrowseCacheExecutor.execute(() -> {
+                Log.i(TAG, "Library scanned, clear " + mBrowseCache);
+                mBrowseCache.clear();
+            });
+        }
         final HashMap<String, Player> players = new HashMap<>();
-        if (item_data != null) {
-            for (Object item_d : item_data) {
-                Map<String, Object> record = (Map<String, Object>) item_d;
-                if (!record.containsKey(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName()) &&
-                        data.containsKey(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName())) {
-                    record.put(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName(), data.get(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName()));
-                }
-                Player player = new Player(record);
-                players.put(player.getId(), player);
+        RecordLoop.forEach(data.get("players_loop"), new HashMap<>(), record -> {
+            if (!record.containsKey(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName()) &&
+                    data.containsKey(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName())) {
+                record.put(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName(), data.get(Player.Pref.DEFEAT_DESTRUCTIVE_TTP.prefName()));
             }
-        }
+            Player player = new Player(record);
+            players.put(player.getId(), player);
+        });
 
         Map<String, Player> currentPlayers = mConnectionState.getPlayers();
         if (firstTimePlayersReceived || !players.equals(currentPlayers)) {
@@ -406,7 +487,7 @@ class CometClient extends BaseClient {
 
         Map<String, Object> messageData = message.getDataAsMap();
         CurrentPlaylistItem currentSong = null;
-        Object[] item_data = (Object[]) messageData.get("item_loop");
+        Object[] item_data = RecordLoop.toArray(messageData.get("item_loop"));
         if (item_data != null && item_data.length > 0) {
             Map<String, Object> record = (Map<String, Object>) item_data[0];
 
@@ -443,15 +524,6 @@ class CometClient extends BaseClient {
         internalRequestItems(browseRequest);
     }
 
-    @Override
-    protected void postSongTimeChanged(Player player) {
-        super.postSongTimeChanged(player);
-        if (player.getPlayerState().isPlaying()) {
-            mBackgroundHandler.removeMessages(MSG_TIME_UPDATE);
-            mBackgroundHandler.sendEmptyMessageDelayed(MSG_TIME_UPDATE, 1000);
-        }
-    }
-
     @Override
     protected void postSleepTimeChanged(Player player) {
         super.postSleepTimeChanged(player);
@@ -526,7 +598,6 @@ class CometClient extends BaseClient {
                     Log.w(TAG, channel + ": " + message.getJSON(), exception);
                 }
             }
-            mBackgroundHandler.sendEmptyMessage(MSG_PUBLISH_RESPONSE_RECIEVED);
         }
     }
 
@@ -539,22 +610,34 @@ class CometClient extends BaseClient {
             }
 
             mPendingBrowseRequests.remove(message.getChannel());
+            List<BrowseRequest<?>> followers = removeBrowseGroup(browseRequest);
+            long latency = System.nanoTime() - browseRequest.requestTime;
             clear();
             Map<String, Object> data = message.getDataAsMap();
             int count = Util.getInt(data.get(countName));
             Map<String, Object> baseRecord = (Map<String, Object>) data.get("base");
+            // Collect the page for the browse cache as received, before it's patched
+            final BrowseCache.Page cachePage = (browseRequest.cachePage != null
+                    && browseRequest.cachePage.startChunk(browseRequest.getStart(), count, data, itemLoopName))
+                    ? browseRequest.cachePage : null;
+            browseRequest.cachePage = cachePage;
             if (baseRecord != null) {
                 patchUrlPrefix(baseRecord);
             }
-            Object[] item_data = (Object[]) data.get(itemLoopName);
-            if (item_data != null) {
-                for (Object item_d : item_data) {
-                    Map<String, Object> record = (Map<String, Object>) item_d;
-                    patchUrlPrefix(record);
-                    if (baseRecord != null) record.put("base", baseRecord);
-                    add(record);
-                    record.remove("base");
-                }
+            // Build the items directly from the JSON of each record. The models copy what they
+            // keep of the record, so all records are decoded into the same map.
+            long decodeStart = System.nanoTime();
+            RecordLoop.forEach(data.get(itemLoopName), new HashMap<>(), record -> {
+                if (cachePage != null) cachePage.addRecord(record);
+                patchUrlPrefix(record);
+                if (baseRecord != null) record.put("base", baseRecord);
+                add(record);
+                record.remove("base");
+            });
+            mChunkSizer.onResponse(browseRequest.getItemsPerResponse(), getItems().size(), latency, System.nanoTime() - decodeStart);
+            if (cachePage != null && cachePage.isComplete()) {
+                browseRequest.cachePage = null;
+                mBrowseCacheExecutor.execute(() -> mBrowseCache.put(cachePage, System.currentTimeMillis()));
             }
 
             // Process the lists for all the registered handlers
@@ -564,21 +647,51 @@ class CometClient extends BaseClient {
             int max = 0;
             patchUrlPrefix(data);
             browseRequest.getCallback().onItemsReceived(count, start, data, getItems(), getDataType());
+            for (BrowseRequest<?> follower : followers) {
+                ((BrowseRequest<T>) follower).getCallback().onItemsReceived(count, start, data, getItems(), getDataType());
+            }
             if (count > max) {
                 max = count;
             }
 
             // Check if we need to order more items
-            if ((fullList || end % mPageSize != 0) && end < max && !browseRequest.isCurrent()) {
-                int itemsPerResponse = (end + mPageSize > max ? max - end : fullList ? mPageSize : mPageSize - browseRequest.getItemsPerResponse());
+            if ((fullList || end % mPageSize != 0) && end < max && !browseRequest.isCurrent() && !browseRequest.isWindow()) {
+                // Order the rest of the page, or of the list, in adaptively sized chunks
+                int itemsPerResponse = Math.min(mChunkSizer.getChunkSize(),
+                        fullList ? max - end : Math.min(max, end - end % mPageSize + mPageSize) - end);
+                for (BrowseRequest<?> follower : followers) {
+                    follower.update(end, itemsPerResponse);
+                }
                 //XXX support prefix
-                internalRequestItems(browseRequest.update(end, itemsPerResponse));
+                internalRequestItems(browseRequest.update(end, itemsPerResponse), followers);
             }
         }
 
         void parseMessage(String itemLoopName, Message message) {
             parseMessage("count", itemLoopName, message);
         }
+
+        /**
+         * Pass the supplied page from the browse cache to the callback of the supplied request,
+         * like a response from the server.
+         */
+        void onCachedPage(BrowseRequest<T> browseRequest, BrowseCache.Entry entry) {
+            Map<String, Object> data = entry.getData();
+            Map<String, Object> baseRecord = (Map<String, Object>) data.get("base");
+            if (baseRecord != null) {
+                patchUrlPrefix(baseRecord);
+            }
+            List<T> items = new ArrayList<>(entry.getRecords().length);
+            for (Object object : entry.getRecords()) {
+                Map<String, Object> record = (Map<String, Object>) object;
+                patchUrlPrefix(record);
+                if (baseRecord != null) record.put("base", baseRecord);
+                items.add(newItem(record));
+                record.remove("base");
+            }
+            patchUrlPrefix(data);
+            browseRequest.getCallback().onItemsReceived(entry.getCount(), browseRequest.getStart(), data, items, getDataType());
+        }
     }
 
     private class AlarmsListener extends ItemListener<Alarm> {
@@ -649,9 +762,34 @@ class CometClient extends BaseClient {
 
     @Override
     public void cancelClientRequests(Object client) {
+        mCacheLookups.removeIf(browseRequest -> browseRequest.getCallback().getClient() == client);
         for (Map.Entry<String, BrowseRequest<?>> entry : mPendingBrowseRequests.entrySet()) {
-            if (entry.getValue().getCallback().getClient() == client) {
-                Log.d(TAG, "Cancel: " + entry.getValue().cmd);
+            BrowseRequest<?> browseRequest = entry.getValue();
+            String key = browseKey(browseRequest);
+            synchronized (mBrowseGroups) {
+                BrowseGroup group = mBrowseGroups.get(key);
+                if (group != null && group.request == browseRequest) {
+                    for (Iterator<BrowseRequest<?>> it = group.followers.iterator(); it.hasNext(); ) {
+                        if (it.next().getCallback().getClient() == client) {
+                            it.remove();
+                        }
+                    }
+                    if (browseRequest.getCallback().getClient() == client) {
+                        if (group.followers.isEmpty()) {
+                            mBrowseGroups.remove(key);
+                        } else {
+                            // Hand the response over to a request which is still wanted
+                            BrowseRequest<?> follower = group.followers.remove(0);
+                            follower.requestTime = browseRequest.requestTime;
+                            group.request = follower;
+                            mPendingBrowseRequests.put(entry.getKey(), follower);
+                            continue;
+                        }
+                    }
+                }
+            }
+            if (browseRequest.getCallback().getClient() == client) {
+                Log.d(TAG, "Cancel: " + browseRequest.cmd);
                 mPendingBrowseRequests.remove(entry.getKey());
             }
         }
@@ -662,19 +800,27 @@ class CometClient extends BaseClient {
     }
 
     private String exec(Request request) {
-        String responseChannel = String.format(CHANNEL_SLIM_REQUEST_RESPONSE_FORMAT, mBayeuxClient.getId(), mCorrelationId++);
+        String responseChannel = String.format(CHANNEL_SLIM_REQUEST_RESPONSE_FORMAT, mBayeuxClient.getId(), mCorrelationId.getAndIncrement());
         if (request.callback != null) mPendingRequests.put(responseChannel, request);
-        publishMessage(request, CHANNEL_SLIM_REQUEST, responseChannel, null);
+        // Player commands must reach the server in order, f.e. "playlist clear" before "playlist add"
+        String orderingKey = (request.player != null && !(request.callback instanceof ItemListener)) ? request.player.getId() : null;
+        publishMessage(request, CHANNEL_SLIM_REQUEST, responseChannel, orderingKey, null);
         return responseChannel;
     }
 
     /** If request is null, this is an unsubscribe to the suplied response channel */
     private void publishMessage(final Request request, final String channel, final String responseChannel, final PublishListener publishListener) {
+        // Subscriptions to the same channel must reach the server in the order they were made
+        String orderingKey = CHANNEL_SLIM_REQUEST.equals(channel) ? null : responseChannel;
+        publishMessage(request, channel, responseChannel, orderingKey, publishListener);
+    }
+
+    private void publishMessage(final Request request, final String channel, final String responseChannel, final String orderingKey, final PublishListener publishListener) {
+        PublishMessage publishMessage = new PublishMessage(request, channel, responseChannel, orderingKey, publishListener);
         // Make sure all requests are done in the handler thread
         if (mBackgroundHandler.getLooper() == Looper.myLooper()) {
-            _publishMessage(request, channel, responseChannel, publishListener);
+            _publishMessage(publishMessage);
         } else {
-            PublishMessage publishMessage = new PublishMessage(request, channel, responseChannel, publishListener);
             android.os.Message message = mBackgroundHandler.obtainMessage(MSG_PUBLISH, publishMessage);
             mBackgroundHandler.sendMessage(message);
         }
@@ -682,35 +828,282 @@ class CometClient extends BaseClient {
     }
 
     /** This may only be called from the handler thread */
-    private void _publishMessage(Request request, String channel, String responseChannel, PublishListener publishListener) {
-        if (!mCurrentCommand) {
-            mCurrentCommand = true;
+    private void _publishMessage(PublishMessage publishMessage) {
+        mCommandQueue.add(publishMessage);
+        publishQueuedMessages();
+    }
+
+    /**
+     * Publish queued messages until the publish window is full.
+     * <p>
+     * A message is held back while an earlier message with the same ordering key is waiting
+     * for a reply, messages without an ordering key may overtake each other.
+     * <p>
+     * This may only be called from the handler thread
+     */
+    private void publishQueuedMessages() {
+        Iterator<PublishMessage> it = mCommandQueue.iterator();
+        while (mInFlight.size() < PUBLISH_WINDOW && it.hasNext()) {
+            PublishMessage publishMessage = it.next();
+            if (publishMessage.orderingKey != null && !mInFlightKeys.add(publishMessage.orderingKey)) {
+                continue;
+            }
+            it.remove();
+            mInFlight.add(publishMessage);
+            startPublishBatch();
+
             Map<String, Object> data = new HashMap<>();
-            if (request != null) {
-                data.put("request", request.slimRequest());
-                data.put("response", responseChannel);
+            if (publishMessage.request != null) {
+                data.put("request", publishMessage.request.slimRequest());
+                data.put("response", publishMessage.responseChannel);
             } else {
-                data.put("unsubscribe", responseChannel);
+                data.put("unsubscribe", publishMessage.responseChannel);
+            }
+            final PublishListener publishListener = (publishMessage.publishListener != null ? publishMessage.publishListener : mPublishListener);
+            mBayeuxClient.getChannel(publishMessage.channel).publish(data, (channel, message) -> {
+                publishListener.onMessage(channel, message);
+                mBackgroundHandler.obtainMessage(MSG_PUBLISH_RESPONSE_RECIEVED, publishMessage).sendToTarget();
+            });
+        }
+    }
+
+    /**
+     * Let the bayeux client collect messages published in the next {@link #PUBLISH_BATCH_DELAY}
+     * milliseconds, so they are sent to the server in a single request.
+     * <p>
+     * This may only be called from the handler thread
+     */
+    private void startPublishBatch() {
+        if (mBatchClient == null) {
+            mBatchClient = mBayeuxClient;
+            mBatchClient.startBatch();
+            mBackgroundHandler.sendEmptyMessageDelayed(MSG_PUBLISH_BATCH, PUBLISH_BATCH_DELAY);
+        }
+        mBatchSize++;
+    }
+
+    /** This may only be called from the handler thread */
+    private void endPublishBatch() {
+        if (mBatchClient != null) {
+            // End the batch on the client which started it, in case we have reconnected since
+            mBatchClient.endBatch();
+            mBatchClient = null;
+
+            mBatchCount++;
+            mBatchedMessageCount += mBatchSize;
+            if (mBatchSize > mMaxBatchSize) {
+                mMaxBatchSize = mBatchSize;
             }
-            mBayeuxClient.getChannel(channel).publish(data, publishListener != null ? publishListener : this.mPublishListener);
-        } else
-            mCommandQueue.add(new PublishMessage(request, channel, responseChannel, publishListener));
+            mBatchSize = 0;
+        }
+    }
+
+    /** This may only be called from the handler thread */
+    private void onPublishResponse(PublishMessage publishMessage) {
+        if (!mInFlight.remove(publishMessage)) {
+            // Published before the publish window was reset
+            return;
+        }
+        if (publishMessage.orderingKey != null) {
+            mInFlightKeys.remove(publishMessage.orderingKey);
+        }
+        publishQueuedMessages();
+    }
+
+    /** This may only be called from the handler thread */
+    private void resetPublishWindow() {
+        mInFlight.clear();
+        mInFlightKeys.clear();
+        // Responses to requests sent on the previous connection will not arrive
+        synchronized (mBrowseGroups) {
+            mBrowseGroups.clear();
+        }
+    }
+
+    /** @return Number of messages waiting for a free slot in the publish window */
+    int getPublishQueueDepth() {
+        return mCommandQueue.size();
+    }
+
+    /** @return Number of published messages waiting for a reply */
+    int getPublishInFlightCount() {
+        return mInFlight.size();
+    }
+
+    /** @return Number of batches of published messages sent to the server */
+    int getPublishBatchCount() {
+        return mBatchCount;
+    }
+
+    /** @return Number of published messages sent to the server in batches */
+    int getPublishBatchedMessageCount() {
+        return mBatchedMessageCount;
+    }
+
+    /** @return Size of the largest batch of published messages sent to the server */
+    int getMaxPublishBatchSize() {
+        return mMaxBatchSize;
     }
 
     @Override
     protected  <T> void internalRequestItems(final BrowseRequest<T> browseRequest) {
+        internalRequestItems(browseRequest, Collections.emptyList());
+    }
+
+    /**
+     * Send the supplied browse request to the server, unless an identical request is waiting for
+     * a response, in which case the request joins it. The supplied followers join the request
+     * either way.
+     */
+    private <T> void internalRequestItems(final BrowseRequest<T> browseRequest, List<BrowseRequest<?>> followers) {
         Class<?> callbackClass = Reflection.getGenericClass(browseRequest.getCallback().getClass(), IServiceItemListCallback.class, 0);
         ItemListener listener = mItemRequestMap.get(callbackClass);
         if (listener == null) {
             throw new RuntimeException("No handler defined for '" + browseRequest.getCallback().getClass() + "'");
         }
 
+        if (followers.isEmpty() && !browseRequest.cacheLookedUp && isCacheable(browseRequest)) {
+            // Look for the page in the browse cache first, off the calling thread
+            browseRequest.cacheLookedUp = true;
+            String cacheKey = browseKey(browseRequest, callbackClass);
+            mCacheLookups.add(browseRequest);
+            mBrowseCacheExecutor.execute(() -> lookUpBrowseCache(listener, browseRequest, cacheKey));
+            return;
+        }
+
+        if (browseRequest.getItemsPerResponse() == mPageSize && !browseRequest.isCurrent()) {
+            // A new page was ordered with the default size. Start with a small first response for
+            // the first page of a list, so it's shown quickly. The rest of the page is ordered
+            // when the response is received.
+            browseRequest.update(browseRequest.getStart(), browseRequest.getStart() == 0
+                    ? mChunkSizer.getFirstChunkSize() : mChunkSizer.getChunkSize());
+        }
+        browseRequest.requestTime = System.nanoTime();
+
+        String key = browseKey(browseRequest, callbackClass);
+        synchronized (mBrowseGroups) {
+            BrowseGroup group = mBrowseGroups.get(key);
+            if (group != null && browseRequest.requestTime - group.request.requestTime < TimeUnit.MILLISECONDS.toNanos(BROWSE_COALESCE_TIMEOUT)) {
+                group.followers.add(browseRequest);
+                group.followers.addAll(followers);
+                mCoalescedBrowseRequestCount.incrementAndGet();
+                return;
+            }
+            BrowseGroup expired = group;
+            group = new BrowseGroup(browseRequest);
+            group.followers.addAll(followers);
+            if (expired != null) {
+                // The response is overdue, so let this request answer the waiting requests too
+                group.followers.addAll(expired.followers);
+            }
+            mBrowseGroups.put(key, group);
+        }
+        mBrowseRequestCount.incrementAndGet();
+
         Request request = request(browseRequest.getPlayer(), listener, browseRequest.cmd())
                 .page(browseRequest.isCurrent() ? "-" : String.valueOf(browseRequest.getStart()), browseRequest.getItemsPerResponse())
                 .params(browseRequest.params);
         mPendingBrowseRequests.put(exec(request), browseRequest);
     }
 
+    /**
+     * @return True if the supplied request orders a page of a library view, which may be in the
+     * browse cache
+     */
+    private boolean isCacheable(BrowseRequest<?> browseRequest) {
+        return !browseRequest.isFullList() && !browseRequest.isWindow() && !browseRequest.isCurrent()
+                && browseRequest.getItemsPerResponse() == mPageSize
+                && mBrowseCache.isEnabled() && BrowseCache.isCacheable(browseRequest.cmd, browseRequest.params);
+    }
+
+    /**
+     * Show the page ordered by the supplied request from the browse cache, and order it from the
+     * server if it's not in the cache, or it's old. The cache is read on the browse cache
+     * executor, the page is shown and the request is sent from the handler thread.
+     */
+    private <T> void lookUpBrowseCache(ItemListener<T> listener, BrowseRequest<T> browseRequest, String cacheKey) {
+        if (!mCacheLookups.contains(browseRequest)) {
+            // The request was cancelled
+            return;
+        }
+        BrowseCache.Entry entry = mBrowseCache.get(cacheKey, System.currentTimeMillis());
+        BrowseCache.Page cachePage = (entry == null || entry.needsRevalidation())
+                ? mBrowseCache.newPage(cacheKey, browseRequest.getStart(), mPageSize) : null;
+        mBackgroundHandler.post(() -> {
+            if (!mCacheLookups.remove(browseRequest)) {
+                // The request was cancelled
+                return;
+            }
+            if (entry != null) {
+                listener.onCachedPage(browseRequest, entry);
+                if (!entry.needsRevalidation()) {
+                    return;
+                }
+            }
+            browseRequest.cachePage = cachePage;
+            internalRequestItems(browseRequest, Collections.emptyList());
+        });
+    }
+
+    /**
+     * @return Key which is equal for browse requests that will get the same response from the
+     * server: same player, command, parameters, paging and item type.
+     */
+    private static String browseKey(BrowseRequest<?> browseRequest, Class<?> dataType) {
+        Player player = browseRequest.getPlayer();
+        return (player != null ? player.getId() : "") + ' ' + browseRequest.cmd + ' ' + new TreeMap<>(browseRequest.params)
+                + ' ' + (browseRequest.isCurrent() ? "-" : String.valueOf(browseRequest.getStart()))
+                + ' ' + browseRequest.getItemsPerResponse() + ' ' + browseRequest.isFullList() + ' ' + browseRequest.isWindow()
+                + ' ' + dataType.getName();
+    }
+
+    private static String browseKey(BrowseRequest<?> browseRequest) {
+        return browseKey(browseRequest, Reflection.getGenericClass(browseRequest.getCallback().getClass(), IServiceItemListCallback.class, 0));
+    }
+
+    /**
+     * Remove the group of the supplied browse request.
+     *
+     * @return The requests that joined the supplied request.
+     */
+    private List<BrowseRequest<?>> removeBrowseGroup(BrowseRequest<?> browseRequest) {
+        String key = browseKey(browseRequest);
+        synchronized (mBrowseGroups) {
+            BrowseGroup group = mBrowseGroups.get(key);
+            if (group == null || group.request != browseRequest) {
+                return Collections.emptyList();
+            }
+            mBrowseGroups.remove(key);
+            return group.followers;
+        }
+    }
+
+    /** @return Number of browse requests sent to the server */
+    int getBrowseRequestCount() {
+        return mBrowseRequestCount.get();
+    }
+
+    /** @return Number of browse requests which joined an identical request, instead of being sent */
+    int getCoalescedBrowseRequestCount() {
+        return mCoalescedBrowseRequestCount.get();
+    }
+
+    /** @return The browse cache, which tells how many pages were found in it */
+    BrowseCache getBrowseCache() {
+        return mBrowseCache;
+    }
+
+    /** A browse request sent to the server, and the identical requests waiting for its response. */
+    private static class BrowseGroup {
+        @NonNull
+        BrowseRequest<?> request;
+        final List<BrowseRequest<?>> followers = new ArrayList<>();
+
+        BrowseGroup(@NonNull BrowseRequest<?> request) {
+            this.request = request;
+        }
+    }
+
     @Override
     public void command(Player player, String[] cmd, Map<String, Object> params) {
         ResponseHandler callback = mRequestMap.get(cmd[0]);
@@ -776,9 +1169,9 @@ class CometClient extends BaseClient {
     private static final int MSG_HANDSHAKE_TIMEOUT = 3;
     private static final int MSG_SERVER_STATUS_TIMEOUT = 4;
     private static final int MSG_PUBLISH_RESPONSE_RECIEVED = 5;
-    private static final int MSG_TIME_UPDATE = 6;
     private static final int MSG_SLEEP_UPDATE = 7;
     private static final int MSG_MUSIC_CHANGED = 8;
+    private static final int MSG_PUBLISH_BATCH = 9;
     private class CliHandler extends Handler {
         CliHandler(Looper looper) {
             super(looper);
@@ -787,11 +1180,9 @@ class CometClient extends BaseClient {
         @Override
         public void handleMessage(android.os.Message msg) {
             switch (msg.what) {
-                case MSG_PUBLISH: {
-                    PublishMessage message = (PublishMessage) msg.obj;
-                    _publishMessage(message.request, message.channel, message.responseChannel, message.publishListener);
+                case MSG_PUBLISH:
+                    _publishMessage((PublishMessage) msg.obj);
                     break;
-                }
                 case MSG_DISCONNECT:
                     mBayeuxClient.disconnect();
                     break;
@@ -803,20 +1194,12 @@ class CometClient extends BaseClient {
                     Log.w(TAG, "Server status timeout: initiate a new handshake");
                     mBayeuxClient.rehandshake();
                     break;
-                case MSG_PUBLISH_RESPONSE_RECIEVED: {
-                    mCurrentCommand = false;
-                    PublishMessage message = mCommandQueue.poll();
-                    if (message != null)
-                        _publishMessage(message.request, message.channel, message.responseChannel, message.publishListener);
+                case MSG_PUBLISH_RESPONSE_RECIEVED:
+                    onPublishResponse((PublishMessage) msg.obj);
                     break;
-                }
-                case MSG_TIME_UPDATE: {
-                    Player activePlayer = mConnectionState.getActivePlayer();
-                    if (activePlayer != null) {
-                        postSongTimeChanged(activePlayer);
-                    }
+                case MSG_PUBLISH_BATCH:
+                    endPublishBatch();
                     break;
-                }
                 case MSG_SLEEP_UPDATE: {
                     Player player = (Player) msg.obj;
                     postSleepTimeChanged(player);
@@ -947,12 +1330,15 @@ class CometClient extends BaseClient {
         final Request request;
         final String channel;
         final String responseChannel;
+        /** Messages with the same ordering key are not published until the previous is replied */
+        final String orderingKey;
         final PublishListener publishListener;
 
-        private PublishMessage(Request request, String channel, String responseChannel, PublishListener publishListener) {
+        private PublishMessage(Request request, String channel, String responseChannel, String orderingKey, PublishListener publishListener) {
             this.request = request;
             this.channel = channel;
             this.responseChannel = responseChannel;
+            this.orderingKey = orderingKey;
             this.publishListener = publishListener;
         }
     }
@@ -57,6 +57,7 @@ public class ConnectionState {
     private final EventBus mEventBus;
     private final HomeMenuHandling mHomeMenuHandling;
     private final Map<Player, RandomPlay> mRandomPlay = new HashMap<>();
+    private final Map<Player, VolumeChannel> mVolumeChannels = new ConcurrentHashMap<>();
 
 
     public final static String MEDIA_DIRS = "mediadirs";
@@ -235,6 +236,10 @@ public class ConnectionState {
         }
     }
 
+    VolumeChannel getVolumeChannel(Player player) {
+        return mVolumeChannels.computeIfAbsent(player, p -> new VolumeChannel());
+    }
+
 //    For menu updates sent from LMS, handling of archived nodes needs testing!
     void menuStatusEvent(MenuStatusMessage event) {
         if (event.playerId.equals(getActivePlayer().getId())) {
@@ -0,0 +1,292 @@
+package uk.org.ngo.squeezer.service;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads HTTP/1.1 responses from the streaming connection to the server.
+ * <p>
+ * Socket data is read into a reusable direct buffer and the status line, headers and chunk sizes
+ * are parsed directly from the bytes. Content is collected as bytes, and decoded as UTF-8 once
+ * per complete message, so <code>Content-Length</code> and chunk sizes are counted in bytes as
+ * the server intends, regardless of multi-byte characters in the content.
+ * <p>
+ * Usage: call {@link #readHead()} for each response. Then if the response {@link #isChunked()}
+ * call {@link #nextFrame()} until it returns null, otherwise call {@link #readContent()}.
+ */
+class HttpResponseReader {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_LENGTH = 8 * 1024;
+
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CHUNKED = "chunked".getBytes(StandardCharsets.US_ASCII);
+
+    private final ReadableByteChannel channel;
+
+    /** Bytes read from the channel, always ready to be drained (i.e. flipped). */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /** The current status, header or chunk size line without line terminator. */
+    private final byte[] line = new byte[MAX_LINE_LENGTH];
+    private int lineLength;
+
+    /** Content of the current non-chunked response. */
+    private byte[] content = new byte[0];
+
+    private final JsonFrameDecoder frameDecoder = new JsonFrameDecoder();
+
+    private int status;
+    private boolean chunked;
+    private int contentLength;
+
+    /** Bytes left of the current chunk. */
+    private int chunkRemaining;
+    private boolean lastChunk;
+
+    HttpResponseReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    /**
+     * Read the status line and the headers of the next response.
+     */
+    void readHead() throws IOException {
+        status = parseStatus();
+        chunked = false;
+        contentLength = 0;
+        while (readLine() > 0) {
+            int colon = indexOf((byte) ':');
+            if (colon < 0) {
+                continue;
+            }
+            int valueStart = skipWhitespace(colon + 1);
+            if (equalsIgnoreCase(0, colon, CONTENT_LENGTH)) {
+                contentLength = parseInt(valueStart, lineLength, 10);
+            } else if (equalsIgnoreCase(0, colon, TRANSFER_ENCODING)) {
+                chunked = containsIgnoreCase(valueStart, CHUNKED);
+            }
+        }
+
+        frameDecoder.reset();
+        chunkRemaining = 0;
+        lastChunk = false;
+    }
+
+    /** @return The HTTP status code of the current response, or -1 if it could not be parsed. */
+    int getStatus() {
+        return status;
+    }
+
+    /** @return True if the current response uses chunked transfer encoding. */
+    boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * Read the content of a non-chunked response.
+     *
+     * @return The content of the current response, decoded as UTF-8.
+     */
+    String readContent() throws IOException {
+        if (content.length < contentLength) {
+            content = new byte[contentLength];
+        }
+        int length = 0;
+        while (length < contentLength) {
+            if (!buffer.hasRemaining()) {
+                fill("Expected " + contentLength + " bytes, but got " + length);
+            }
+            int count = Math.min(buffer.remaining(), contentLength - length);
+            buffer.get(content, length, count);
+            length += count;
+        }
+        return new String(content, 0, contentLength, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the next JSON value from the chunks of a chunked response. Values may be split over
+     * several chunks and a chunk may contain several values.
+     *
+     * @return The next complete JSON value decoded as UTF-8, or null when the last chunk is read.
+     */
+    String nextFrame() throws IOException {
+        while (true) {
+            String frame = frameDecoder.nextFrame();
+            if (frame != null) {
+                return frame;
+            }
+            if (lastChunk) {
+                return null;
+            }
+
+            if (chunkRemaining == 0) {
+                chunkRemaining = readChunkSize();
+                if (chunkRemaining == 0) {
+                    // Skip trailers
+                    while (readLine() > 0) {
+                    }
+                    lastChunk = true;
+                    continue;
+                }
+            }
+
+            if (!buffer.hasRemaining()) {
+                fill("Expected " + chunkRemaining + " more bytes in chunk");
+            }
+            int count = Math.min(buffer.remaining(), chunkRemaining);
+            frameDecoder.append(buffer, count);
+            chunkRemaining -= count;
+        }
+    }
+
+    /** @return True if the last chunk ended in the middle of a JSON value */
+    boolean hasPartialFrame() {
+        return frameDecoder.hasPartialFrame();
+    }
+
+    private int readChunkSize() throws IOException {
+        // Skip the line terminator after the data of the previous chunk
+        while (readLine() == 0) {
+        }
+        int end = indexOf((byte) ';');
+        return parseInt(0, end < 0 ? lineLength : end, 16);
+    }
+
+    private int parseStatus() throws IOException {
+        // Status-Line = HTTP-Version SP Status-Code SP Reason-Phrase
+        readLine();
+        int space = indexOf((byte) ' ');
+        if (space < 0 || !startsWith("HTTP/") || lineLength < space + 4) {
+            return -1;
+        }
+        try {
+            return parseInt(space + 1, space + 4, 10);
+        } catch (ProtocolException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Read the next line into {@link #line}, without the line terminator (LF or CRLF).
+     *
+     * @return The length of the line
+     */
+    private int readLine() throws IOException {
+        lineLength = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                fill(null);
+            }
+            byte b = buffer.get();
+            if (b == '\n') {
+                if (lineLength > 0 && line[lineLength - 1] == '\r') {
+                    lineLength--;
+                }
+                return lineLength;
+            }
+            if (lineLength == line.length) {
+                throw new ProtocolException("Line too long");
+            }
+            line[lineLength++] = b;
+        }
+    }
+
+    /**
+     * Read more bytes from the channel. This must only be called when {@link #buffer} is
+     * drained.
+     */
+    private void fill(String eofMessage) throws IOException {
+        buffer.clear();
+        int count;
+        do {
+            count = channel.read(buffer);
+        } while (count == 0);
+        buffer.flip();
+        if (count < 0) {
+            throw (eofMessage != null ? new EOFException(eofMessage) : new EOFException());
+        }
+    }
+
+    private int indexOf(byte b) {
+        for (int i = 0; i < lineLength; i++) {
+            if (line[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int pos) {
+        while (pos < lineLength && (line[pos] == ' ' || line[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private boolean startsWith(String prefix) {
+        if (lineLength < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (line[i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @param lowerCase Bytes of an ASCII string in lower case */
+    private boolean equalsIgnoreCase(int start, int end, byte[] lowerCase) {
+        if (end - start != lowerCase.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length; i++) {
+            if (toLowerCase(line[start + i]) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @param lowerCase Bytes of an ASCII string in lower case */
+    private boolean containsIgnoreCase(int start, byte[] lowerCase) {
+        for (int i = start; i <= lineLength - lowerCase.length; i++) {
+            if (equalsIgnoreCase(i, i + lowerCase.length, lowerCase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static byte toLowerCase(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private int parseInt(int start, int end, int radix) throws ProtocolException {
+        // Ignore trailing whitespace
+        while (end > start && (line[end - 1] == ' ' || line[end - 1] == '\t')) {
+            end--;
+        }
+        if (start == end) {
+            throw new ProtocolException("Missing number");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(line[i], radix);
+            if (digit < 0) {
+                throw new ProtocolException("Invalid number: " + new String(line, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+            value = value * radix + digit;
+            if (value > Integer.MAX_VALUE) {
+                throw new ProtocolException("Number too large");
+            }
+        }
+        return (int) value;
+    }
+}
@@ -27,16 +27,9 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpScheme;
 import org.eclipse.jetty.http.HttpStatus;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-import org.json.JSONTokener;
 
-import java.io.BufferedReader;
-import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.CookieManager;
 import java.net.CookiePolicy;
@@ -45,6 +38,7 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.util.ArrayList;
@@ -322,6 +316,12 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
                     if (content != null && content.length() > 0) {
                         try {
                             List<Message.Mutable> responseMessages = parseMessages(content);
+                            List<Message.Mutable> unansweredMessages = new ArrayList<>(requestMessages);
+                            for (Message.Mutable message : responseMessages) {
+                                if (message.getId() != null) {
+                                    removeMessage(unansweredMessages, message.getId());
+                                }
+                            }
                             //Log.v(TAG, "Received messages " + messages);
                             for (Message.Mutable message : responseMessages) {
                                 // LMS echoes the data field in the publish response for messages to the
@@ -338,12 +338,15 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
                                         _delegate.disconnect("Disconnect");
                                     }
                                 } else {
-                                    // LMS does not put ID on all replies. In this case we look for a request with the same
-                                    // channel as this response, and use the id from that request.
+                                    // LMS does not put ID on all replies. In this case we look for the first
+                                    // unanswered request with the same channel as this response, and use the
+                                    // id from that request. Requests may be batched, so there may be several.
                                     if (message.isPublishReply() && message.getId() == null) {
-                                        for (Message.Mutable requestMessage : requestMessages) {
+                                        for (Message.Mutable requestMessage : unansweredMessages) {
                                             if (requestMessage.getChannel().equals(message.getChannel())) {
                                                 message.setId(requestMessage.getId());
+                                                unansweredMessages.remove(requestMessage);
+                                                break;
                                             }
                                         }
                                     }
@@ -370,19 +373,33 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
         });
     }
 
+    /**
+     * Decode messages with {@link MessageDecoder}, so large lists of records are decoded on demand.
+     */
+    @Override
+    protected List<Message.Mutable> parseMessages(String content) throws ParseException {
+        return MessageDecoder.decode(content);
+    }
+
     private static void sendText(OutputStream stream, String json, HttpFields customHeaders) throws IOException {
+        byte[] content = json.getBytes(StandardCharsets.UTF_8);
         StringBuilder msg = new StringBuilder("POST /cometd HTTP/1.1\r\n" +
                 HttpHeader.CONTENT_TYPE.asString() + ": text/json;charset=UTF-8\r\n" +
-                HttpHeader.CONTENT_LENGTH.asString() + ": " + json.length() + "\r\n");
+                HttpHeader.CONTENT_LENGTH.asString() + ": " + content.length + "\r\n");
 
         for (HttpField httpField : customHeaders) {
             if (httpField.getHeader() != HttpHeader.ACCEPT_ENCODING) {
                 msg.append(httpField.getName()).append(": ").append(httpField.getValue()).append("\r\n");
             }
         }
-        msg.append("\r\n").append(json);
-        //Log.v(TAG,"sendtext: " + msg);
-        stream.write(msg.toString().getBytes(StandardCharsets.UTF_8));
+        msg.append("\r\n");
+        //Log.v(TAG,"sendtext: " + msg + json);
+        byte[] head = msg.toString().getBytes(StandardCharsets.UTF_8);
+        // Write in one go, so the request isn't split over more packets than necessary
+        byte[] request = new byte[head.length + content.length];
+        System.arraycopy(head, 0, request, 0, head.length);
+        System.arraycopy(content, 0, request, head.length, content.length);
+        stream.write(request);
         stream.flush();
     }
 
@@ -646,33 +663,22 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
 
     private static class ListeningThread extends Thread {
         private final Delegate delegate;
-        private final BufferedReader reader;
+        private final HttpResponseReader reader;
 
         public ListeningThread(Delegate delegate, InputStream inputStream) {
             this.delegate = delegate;
-            reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+            reader = new HttpResponseReader(Channels.newChannel(inputStream));
         }
 
         @Override
         public void run() {
             while (delegate.isConnected()) {
                 try {
-                    int status = parseHttpStatus(readLine());
-
-                    boolean chunked = false;
-                    int contentSize = 0;
-                    String headerLine;
-                    while (!"".equals(headerLine = readLine())) {
-                        if ("Transfer-Encoding: chunked".equals(headerLine))
-                            chunked = true;
-                        int pos = headerLine.indexOf("Content-Length: ");
-                        if (pos == 0) {
-                            contentSize = Integer.parseInt(headerLine.substring("Content-Length: ".length()));
-                        }
-                    }
+                    reader.readHead();
+                    int status = reader.getStatus();
 
-                    if (!chunked) {
-                        String content = read(contentSize);
+                    if (!reader.isChunked()) {
+                        String content = reader.readContent();
                         if (content.length() > 0) {
                             if (status == HttpStatus.OK_200) {
                                 delegate.onData(content);
@@ -685,20 +691,15 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
                             delegate.fail(x, "No content");
                         }
                     } else {
-                        String unprocessed = "";
-                        while (!"0".equals(readLine())) {
-                            String data = readLine();
-                            unprocessed += data;
-                            if (isValidJson(unprocessed)) {
-                                if (status == HttpStatus.OK_200) {
-                                    delegate.onData(unprocessed);
-                                }
-                                unprocessed = "";
-                            } else {
-                                Log.v(TAG, "JSON is not valid! Appending to next chunk: " + data);
+                        String frame;
+                        while ((frame = reader.nextFrame()) != null) {
+                            if (status == HttpStatus.OK_200) {
+                                delegate.onData(frame);
                             }
                         }
-                        readLine();//Read final/empty chunk
+                        if (reader.hasPartialFrame()) {
+                            Log.w(TAG, "Incomplete JSON at end of chunks");
+                        }
                         delegate.disconnect("End of chunks");
                     }
 
@@ -715,58 +716,18 @@ public class HttpStreamingTransport extends HttpClientTransport implements Messa
                 }
             }
         }
+    }
 
-        private boolean isValidJson(String jsonStr) {
-            try {
-                JSONTokener tokenizer = new JSONTokener(jsonStr);
-                while (tokenizer.more()) {
-                    Object json = tokenizer.nextValue();
-                    if (!(json instanceof JSONObject || json instanceof JSONArray)) {
-                        return false;
-                    }
-                }
-                return true;
-            } catch (JSONException e) {
-                return false;
-            }
-        }
-
-        Pattern httpStatusLinePattern = Pattern.compile("HTTP/1.1 (\\d{3}) \\p{all}+");
-        private int parseHttpStatus(String statusLine) {
-            Matcher m = httpStatusLinePattern.matcher(statusLine);
-            try {
-                if (m.find()) {
-                    return Integer.parseInt(m.group(1));
-                }
-            } catch (NumberFormatException e) {
-            }
-            return -1;
-        }
-
-        private String readLine() throws IOException {
-            String inputLine = reader.readLine();
-            if (inputLine == null) {
-                throw new EOFException();
-            }
-            return inputLine;
-        }
 
-        private String read(int size) throws IOException {
-            char[] buffer = new char[size];
-            int length = 0, bytes;
-            while ((bytes = reader.read(buffer, length, size - length)) > 0) {
-                length += bytes;
-                if (length == size) break;
-                Log.v(TAG, "Partial read " + bytes + ", read so far " + length + ", still needs " + (size - length));
-            }
-            if (length != size) {
-                throw new EOFException("Expected " + size + " characters, but got " + length);
+    private static void removeMessage(List<Message.Mutable> messages, String id) {
+        for (Message.Mutable message : messages) {
+            if (id.equals(message.getId())) {
+                messages.remove(message);
+                return;
             }
-            return new String(buffer);
         }
     }
 
-
     private static String getAdviceAction(Map<String, Object> advice) {
         String action = null;
         if (advice != null && advice.containsKey(Message.RECONNECT_FIELD))
@@ -165,12 +165,25 @@ public interface ISqueezeService {
     // Plugins (Radios/Apps (music services)/Favorites)
     void pluginItems(int start, String cmd, IServiceItemListCallback<JiveItem>  callback) throws SqueezeService.HandshakeNotCompleteException;
 
+    /**
+     * Start an asynchronous fetch of a window of the items of the supplied command. Unlike a
+     * page, only the requested items are fetched.
+     *
+     * @param start Position of the first item to fetch
+     * @param count Number of items to fetch, fewer than a page
+     * @param cmd The command
+     * @param callback This will be called as the items arrive.
+     * @throws SqueezeService.HandshakeNotCompleteException if this is called before handshake is complete
+     */
+    void pluginItems(int start, int count, String cmd, IServiceItemListCallback<JiveItem> callback) throws SqueezeService.HandshakeNotCompleteException;
+
     /**
      * Start an asynchronous fetch of the squeezeservers generic menu items.
      * <p>
      * See http://wiki.slimdevices.com/index.php/SqueezeCenterSqueezePlayInterface#Go_Do.2C_On_and_Off_actions"
      *
      * @param start Offset of the first item to fetch. Paging parameters are added automatically.
+     *              When this is 0 the index of the list is requested too, see {@link uk.org.ngo.squeezer.model.ListIndex}.
      * @param item Current SBS item with the <code>action</code>, and which may contain parameters for the action.
      * @param action <code>go</code> action from SBS. "go" refers to a command that opens a new window (i.e. returns results to browse)
      * @param callback This will be called as the items arrive.
@@ -0,0 +1,118 @@
+package uk.org.ngo.squeezer.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits a stream of UTF-8 encoded JSON text into complete top level JSON values (objects or
+ * arrays).
+ * <p>
+ * Bytes are appended as they arrive, and each byte is examined once, tracking the nesting depth
+ * and whether we are inside a string or just after an escape character. So it doesn't matter how
+ * the server splits its responses into chunks, each JSON value is decoded and returned exactly
+ * once, and it is only parsed by the receiver.
+ * <p>
+ * This works on the encoded bytes, because all bytes of multi-byte UTF-8 sequences are outside
+ * the ASCII range, so they can't be mistaken for JSON structural characters.
+ * <p>
+ * Text outside of top level objects or arrays is ignored.
+ */
+class JsonFrameDecoder {
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    /** Bytes which are not yet returned as part of a complete JSON value. */
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+
+    /** Number of bytes in {@link #buffer}. */
+    private int length;
+
+    /** Number of bytes in {@link #buffer} which have been examined. */
+    private int scanned;
+
+    /** Start of the current JSON value in {@link #buffer}, or -1 if between values. */
+    private int frameStart = -1;
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /** Append the next <code>count</code> bytes from the supplied buffer. */
+    void append(ByteBuffer src, int count) {
+        ensureCapacity(count);
+        src.get(buffer, length, count);
+        length += count;
+    }
+
+    /** Append <code>count</code> bytes from the supplied array. */
+    void append(byte[] src, int offset, int count) {
+        ensureCapacity(count);
+        System.arraycopy(src, offset, buffer, length, count);
+        length += count;
+    }
+
+    private void ensureCapacity(int count) {
+        if (length + count > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length * 2, length + count)];
+            System.arraycopy(buffer, 0, newBuffer, 0, length);
+            buffer = newBuffer;
+        }
+    }
+
+    /**
+     * @return The next complete JSON value in the appended bytes, or null if there is none yet.
+     */
+    String nextFrame() {
+        while (scanned < length) {
+            byte c = buffer[scanned++];
+            if (frameStart < 0) {
+                if (c == '{' || c == '[') {
+                    frameStart = scanned - 1;
+                    depth = 1;
+                }
+            } else if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (--depth == 0) {
+                    String frame = new String(buffer, frameStart, scanned - frameStart, StandardCharsets.UTF_8);
+                    System.arraycopy(buffer, scanned, buffer, 0, length - scanned);
+                    length -= scanned;
+                    scanned = 0;
+                    frameStart = -1;
+                    return frame;
+                }
+            }
+        }
+
+        if (frameStart < 0) {
+            // Nothing but separators so far, don't keep them
+            length = 0;
+            scanned = 0;
+        }
+        return null;
+    }
+
+    /** @return True if some of the appended bytes are part of an incomplete JSON value */
+    boolean hasPartialFrame() {
+        return frameStart >= 0;
+    }
+
+    /** Discard all appended bytes. */
+    void reset() {
+        length = 0;
+        scanned = 0;
+        frameStart = -1;
+        depth = 0;
+        inString = false;
+        escaped = false;
+    }
+}
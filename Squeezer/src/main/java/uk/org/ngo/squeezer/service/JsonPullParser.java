@@ -0,0 +1,305 @@
+package uk.org.ngo.squeezer.service;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pull parser for JSON text.
+ * <p>
+ * The caller steps through objects and arrays, and decides for each value if it wants it
+ * decoded, or just skipped. Skipping validates the JSON but allocates nothing.
+ * <p>
+ * Decoded values are of the same types as produced by the JSON parser in the cometd library:
+ * {@link HashMap} for objects, <code>Object[]</code> for arrays, {@link Long} or {@link Double}
+ * for numbers, {@link Boolean}, {@link String} and null.
+ */
+class JsonPullParser {
+    private final String json;
+    private final int end;
+    private int pos;
+
+    JsonPullParser(String json) {
+        this(json, 0, json.length());
+    }
+
+    JsonPullParser(String json, int start, int end) {
+        this.json = json;
+        this.pos = start;
+        this.end = end;
+    }
+
+    /** @return Position of the next character to parse */
+    int position() {
+        return pos;
+    }
+
+    /** @return The next non-whitespace character without consuming it, or -1 at the end */
+    int peek() {
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    void beginObject() throws ParseException {
+        expect('{');
+    }
+
+    void endObject() throws ParseException {
+        expect('}');
+    }
+
+    void beginArray() throws ParseException {
+        expect('[');
+    }
+
+    void endArray() throws ParseException {
+        expect(']');
+    }
+
+    /**
+     * @return True if the current object or array has more elements. The separator before the
+     * element is consumed.
+     */
+    boolean hasNext() throws ParseException {
+        int c = peek();
+        if (c == '}' || c == ']') {
+            return false;
+        }
+        if (c == ',') {
+            pos++;
+        } else if (c < 0) {
+            throw error("Unexpected end of JSON");
+        }
+        return true;
+    }
+
+    /** @return The name of the next member of the current object */
+    String nextName() throws ParseException {
+        String name = nextString();
+        expect(':');
+        return name;
+    }
+
+    /** @return The next value, decoded */
+    Object nextValue() throws ParseException {
+        switch (peek()) {
+            case '{':
+                return nextObject(new HashMap<>());
+            case '[':
+                return nextArray();
+            case '"':
+                return nextString();
+            case 't':
+                expectLiteral("true");
+                return Boolean.TRUE;
+            case 'f':
+                expectLiteral("false");
+                return Boolean.FALSE;
+            case 'n':
+                expectLiteral("null");
+                return null;
+            default:
+                return nextNumber();
+        }
+    }
+
+    /**
+     * Decode the members of the next object into the supplied map.
+     *
+     * @return The supplied map
+     */
+    Map<String, Object> nextObject(Map<String, Object> map) throws ParseException {
+        beginObject();
+        while (hasNext()) {
+            String name = nextName();
+            map.put(name, nextValue());
+        }
+        endObject();
+        return map;
+    }
+
+    /** @return The next array, decoded */
+    Object[] nextArray() throws ParseException {
+        List<Object> list = new ArrayList<>();
+        beginArray();
+        while (hasNext()) {
+            list.add(nextValue());
+        }
+        endArray();
+        return list.toArray();
+    }
+
+    /** @return The next string, with escape sequences decoded */
+    String nextString() throws ParseException {
+        expect('"');
+        int start = pos;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                return json.substring(start, pos++);
+            }
+            if (c == '\\') {
+                break;
+            }
+            pos++;
+        }
+
+        StringBuilder sb = new StringBuilder(pos - start + 16).append(json, start, pos);
+        while (pos < end) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c == '\\') {
+                sb.append(nextEscaped());
+            } else {
+                sb.append(c);
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /** @return The next number, as a {@link Long} if it is integral, otherwise as a {@link Double} */
+    Object nextNumber() throws ParseException {
+        int start = pos;
+        boolean integral = skipNumber();
+        String number = json.substring(start, pos);
+        try {
+            return integral ? (Object) Long.parseLong(number) : (Object) Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            pos = start;
+            throw error("Invalid number: " + number);
+        }
+    }
+
+    /** Skip the next value, without decoding it. */
+    void skipValue() throws ParseException {
+        switch (peek()) {
+            case '{':
+                beginObject();
+                while (hasNext()) {
+                    skipString();
+                    expect(':');
+                    skipValue();
+                }
+                endObject();
+                break;
+            case '[':
+                beginArray();
+                while (hasNext()) {
+                    skipValue();
+                }
+                endArray();
+                break;
+            case '"':
+                skipString();
+                break;
+            case 't':
+                expectLiteral("true");
+                break;
+            case 'f':
+                expectLiteral("false");
+                break;
+            case 'n':
+                expectLiteral("null");
+                break;
+            default:
+                skipNumber();
+        }
+    }
+
+    private void skipString() throws ParseException {
+        expect('"');
+        while (pos < end) {
+            char c = json.charAt(pos++);
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                nextEscaped();
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    /** @return True if the number is integral */
+    private boolean skipNumber() throws ParseException {
+        int start = pos;
+        boolean integral = true;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c == '.' || c == 'e' || c == 'E') {
+                integral = false;
+            } else if (!((c >= '0' && c <= '9') || c == '-' || c == '+')) {
+                break;
+            }
+            pos++;
+        }
+        if (pos == start) {
+            throw error(pos < end ? "Unexpected character '" + json.charAt(pos) + "'" : "Unexpected end of JSON");
+        }
+        return integral;
+    }
+
+    /** Decode the escape sequence after a backslash */
+    private char nextEscaped() throws ParseException {
+        if (pos >= end) {
+            throw error("Unterminated escape sequence");
+        }
+        char c = json.charAt(pos++);
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (pos + 4 > end) {
+                    throw error("Unterminated escape sequence");
+                }
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(json.charAt(pos++), 16);
+                    if (digit < 0) {
+                        throw error("Invalid unicode escape sequence");
+                    }
+                    value = (value << 4) + digit;
+                }
+                return (char) value;
+            default:
+                // Includes '"', '\\' and '/'
+                return c;
+        }
+    }
+
+    private void expect(char expected) throws ParseException {
+        if (peek() != expected) {
+            throw error(pos < end ? "Expected '" + expected + "' but got '" + json.charAt(pos) + "'" : "Unexpected end of JSON");
+        }
+        pos++;
+    }
+
+    private void expectLiteral(String literal) throws ParseException {
+        if (!json.startsWith(literal, pos) || pos + literal.length() > end) {
+            throw error("Expected " + literal);
+        }
+        pos += literal.length();
+    }
+
+    private ParseException error(String message) {
+        return new ParseException(message + " at " + pos, pos);
+    }
+}
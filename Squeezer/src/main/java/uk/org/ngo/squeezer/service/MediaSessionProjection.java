@@ -0,0 +1,203 @@
+package uk.org.ngo.squeezer.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * What the media session and the notification show of the active player, and what of it
+ * changed since it was last published.
+ * <p>
+ * The server sends a status of the player every few seconds, and several events for each
+ * status. Most of them only move the position of the song along, which the media session
+ * extrapolates from the published playback state anyway. So only the parts which changed are
+ * published, and the artwork is only loaded again if it's another image.
+ * <p>
+ * Counts the updates which were avoided. Thread safe.
+ */
+class MediaSessionProjection {
+    /**
+     * A position which is less than this many milliseconds from where the published playback
+     * state puts it, is not published.
+     */
+    static final long POSITION_TOLERANCE = 2000;
+
+    /** The last published state, or null if nothing was published since {@link #reset()} */
+    @Nullable
+    private State published;
+
+    /** Artwork URL of the last update, see {@link Changes#artwork} */
+    @Nullable
+    private String artworkUrl;
+
+    /** Song and play status of the last update, see {@link Changes#scrobble} */
+    @Nullable
+    private State scrobbled;
+
+    private long updates;
+    private long coalesced;
+    private long metadataSkipped;
+    private long playbackStateSkipped;
+    private long notificationsSkipped;
+    private long artworkLoadsSkipped;
+
+    /**
+     * Compare the supplied state with the published state, and publish it.
+     *
+     * @param state The state of the active player, or null if there is no active player
+     * @return What changed
+     */
+    @NonNull
+    synchronized Changes update(@Nullable State state) {
+        updates++;
+        final State previous = published;
+        final Changes changes = new Changes();
+
+        if (state == null) {
+            changes.metadata = changes.playbackState = changes.notification = (previous != null);
+            changes.artwork = (artworkUrl != null);
+            published = scrobbled = null;
+            artworkUrl = null;
+            count(changes);
+            return changes;
+        }
+
+        if (previous == null) {
+            changes.metadata = changes.playbackState = changes.notification = true;
+        } else {
+            changes.metadata = !state.sameMetadata(previous);
+            changes.playbackState = !state.samePlaybackState(previous);
+            changes.notification = !state.sameNotification(previous);
+        }
+        changes.artwork = !Objects.equals(state.artworkUrl, artworkUrl);
+        changes.scrobble = (scrobbled == null || !state.sameScrobble(scrobbled));
+
+        if (!changes.playbackState) {
+            // Keep extrapolating from the published position
+            state.position = previous.position;
+            state.positionTime = previous.positionTime;
+        }
+        published = state;
+        artworkUrl = state.artworkUrl;
+        scrobbled = state;
+        count(changes);
+        return changes;
+    }
+
+    /**
+     * Forget what was published to the media session and the notification, e.g. because they
+     * were replaced, so the next update publishes everything. The artwork is kept.
+     */
+    synchronized void reset() {
+        published = null;
+    }
+
+    /**
+     * @return The last published state, or null if nothing was published since {@link #reset()}
+     */
+    @Nullable
+    synchronized State getPublished() {
+        return published;
+    }
+
+    /** Record an update which was coalesced with another update. */
+    synchronized void onCoalesced() {
+        coalesced++;
+    }
+
+    private void count(Changes changes) {
+        if (!changes.metadata) metadataSkipped++;
+        if (!changes.playbackState) playbackStateSkipped++;
+        if (!changes.notification) notificationsSkipped++;
+        if (!changes.artwork) artworkLoadsSkipped++;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "MediaSessionProjection{" +
+                "updates=" + updates +
+                ", coalesced=" + coalesced +
+                ", metadataSkipped=" + metadataSkipped +
+                ", playbackStateSkipped=" + playbackStateSkipped +
+                ", notificationsSkipped=" + notificationsSkipped +
+                ", artworkLoadsSkipped=" + artworkLoadsSkipped +
+                '}';
+    }
+
+    /** What changed in an update, and must be published. */
+    static class Changes {
+        boolean metadata;
+        boolean playbackState;
+        boolean notification;
+        /** The artwork is another image, and must be loaded */
+        boolean artwork;
+        /** Another song, or another play status, to tell the scrobbler */
+        boolean scrobble;
+    }
+
+    /** What is shown of the active player. */
+    static class State {
+        boolean hasSong;
+        String title;
+        String artist;
+        String album;
+        /** Name of the song in the notification */
+        String name;
+        /** Artist and album in the notification */
+        String artistAlbum;
+        /** Player and playlist position */
+        String subtext;
+        long duration;
+        long trackNumber;
+        long numTracks;
+        @Nullable
+        String artworkUrl;
+
+        String playStatus;
+        boolean playing;
+        boolean poweredOn;
+        /** Position in the song in milliseconds */
+        long position;
+        /** When the position was taken, in milliseconds, see {@link android.os.SystemClock#elapsedRealtime()} */
+        long positionTime;
+
+        private boolean sameSong(State other) {
+            return hasSong == other.hasSong
+                    && Objects.equals(title, other.title)
+                    && Objects.equals(artist, other.artist)
+                    && Objects.equals(album, other.album);
+        }
+
+        private boolean sameMetadata(State other) {
+            return sameSong(other)
+                    && Objects.equals(subtext, other.subtext)
+                    && duration == other.duration
+                    && trackNumber == other.trackNumber
+                    && numTracks == other.numTracks
+                    && Objects.equals(artworkUrl, other.artworkUrl);
+        }
+
+        private boolean samePlaybackState(State other) {
+            if (playing != other.playing || poweredOn != other.poweredOn) {
+                return false;
+            }
+            long expected = other.position + (other.playing ? positionTime - other.positionTime : 0);
+            return Math.abs(position - expected) < POSITION_TOLERANCE;
+        }
+
+        private boolean sameNotification(State other) {
+            return hasSong == other.hasSong
+                    && Objects.equals(name, other.name)
+                    && Objects.equals(artistAlbum, other.artistAlbum)
+                    && Objects.equals(subtext, other.subtext)
+                    && playing == other.playing
+                    && Objects.equals(artworkUrl, other.artworkUrl);
+        }
+
+        private boolean sameScrobble(State other) {
+            return sameSong(other) && Objects.equals(playStatus, other.playStatus);
+        }
+    }
+}
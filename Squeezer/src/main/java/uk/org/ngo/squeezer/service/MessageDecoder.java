@@ -0,0 +1,91 @@
+package uk.org.ngo.squeezer.service;
+
+import org.cometd.bayeux.Message;
+import org.cometd.common.HashMapMessage;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decodes bayeux messages from the server.
+ * <p>
+ * This produces the same messages as the JSON parser in the cometd library, except that the lists
+ * of records we receive in large numbers (see {@link #RECORD_LOOPS}) are not decoded. They are
+ * left in the data of the message as a {@link RecordLoop}, so the records can be decoded one at a
+ * time directly into model objects.
+ */
+class MessageDecoder {
+    /** Names of record lists in the data of a message, which are decoded on demand. */
+    static final Set<String> RECORD_LOOPS = new HashSet<>(Arrays.asList(
+            "item_loop",
+            "titles_loop",
+            "playlist_loop",
+            "playlisttracks_loop",
+            "folder_loop",
+            "players_loop",
+            "alarms_loop"
+    ));
+
+    private MessageDecoder() {
+    }
+
+    /**
+     * @param content A JSON array of messages, or a single message.
+     * @return The decoded messages
+     */
+    static List<Message.Mutable> decode(String content) throws ParseException {
+        JsonPullParser parser = new JsonPullParser(content);
+        List<Message.Mutable> messages = new ArrayList<>();
+        if (parser.peek() == '[') {
+            parser.beginArray();
+            while (parser.hasNext()) {
+                messages.add(decodeMessage(content, parser));
+            }
+            parser.endArray();
+        } else {
+            messages.add(decodeMessage(content, parser));
+        }
+        if (parser.peek() >= 0) {
+            throw new ParseException("Unexpected content after messages at " + parser.position(), parser.position());
+        }
+        return messages;
+    }
+
+    private static Message.Mutable decodeMessage(String content, JsonPullParser parser) throws ParseException {
+        Message.Mutable message = new HashMapMessage();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            if (Message.DATA_FIELD.equals(name) && parser.peek() == '{') {
+                message.put(name, decodeData(content, parser));
+            } else {
+                message.put(name, parser.nextValue());
+            }
+        }
+        parser.endObject();
+        return message;
+    }
+
+    private static Map<String, Object> decodeData(String content, JsonPullParser parser) throws ParseException {
+        Map<String, Object> data = new HashMap<>();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            String name = parser.nextName();
+            if (RECORD_LOOPS.contains(name) && parser.peek() == '[') {
+                int start = parser.position();
+                parser.skipValue();
+                data.put(name, new RecordLoop(content, start, parser.position()));
+            } else {
+                data.put(name, parser.nextValue());
+            }
+        }
+        parser.endObject();
+        return data;
+    }
+}
@@ -0,0 +1,93 @@
+package uk.org.ngo.squeezer.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Which artwork to prefetch for the upcoming tracks of a playlist, at which sizes, and in which
+ * order, within a budget of downloaded bytes.
+ * <p>
+ * Each distinct image is prefetched at every size, the image of the next track first. The round
+ * ends when all images are prefetched or the budget is spent. The download which exceeds the
+ * budget still completes, so the budget may be exceeded by one image.
+ * <p>
+ * Methods must be called from one thread.
+ */
+class PrefetchRound {
+    private final List<Request> requests = new ArrayList<>();
+    private final long budget;
+
+    private int next;
+    private long downloaded;
+
+    /**
+     * @param urls Artwork URLs of the upcoming tracks, in play order. Empty entries and repeats
+     *     are skipped.
+     * @param skip Artwork which needs no prefetching, e.g. of the current track, or null
+     * @param sizes Sizes (width, height) to prefetch the artwork at
+     * @param budget Maximum number of bytes to download
+     */
+    PrefetchRound(@NonNull List<String> urls, @Nullable String skip, @NonNull List<int[]> sizes, long budget) {
+        this.budget = budget;
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String url : urls) {
+            if (url != null && !url.isEmpty() && !url.equals(skip)) {
+                distinct.add(url);
+            }
+        }
+        for (String url : distinct) {
+            for (int[] size : sizes) {
+                requests.add(new Request(url, size[0], size[1]));
+            }
+        }
+    }
+
+    /**
+     * @return The next image to prefetch, or null if the round is done
+     */
+    @Nullable
+    Request next() {
+        if (next >= requests.size() || downloaded >= budget) {
+            return null;
+        }
+        return requests.get(next++);
+    }
+
+    /**
+     * Record a prefetched image.
+     *
+     * @param downloadedBytes Number of bytes downloaded to prefetch it
+     */
+    void onPrefetched(long downloadedBytes) {
+        downloaded += downloadedBytes;
+    }
+
+    /** @return Number of bytes downloaded in this round */
+    long getDownloaded() {
+        return downloaded;
+    }
+
+    static class Request {
+        @NonNull
+        final String url;
+        final int width;
+        final int height;
+
+        Request(@NonNull String url, int width, int height) {
+            this.url = url;
+            this.width = width;
+            this.height = height;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Request{" + url + ", " + width + "x" + height + '}';
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package uk.org.ngo.squeezer.service;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.eclipse.jetty.util.ajax.JSON;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A list of records (f.e. <code>item_loop</code>) in a message from the server, which is kept as
+ * JSON text until it is needed.
+ * <p>
+ * The records can then be decoded one at a time and handed to the caller, optionally in the same
+ * map, so a page of items can be turned into model objects without first decoding all the records
+ * into a tree of maps.
+ *
+ * @see MessageDecoder
+ */
+class RecordLoop implements JSON.Generator {
+    private final String json;
+    private final int start;
+    private final int end;
+
+    RecordLoop(String json, int start, int end) {
+        this.json = json;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Decode the records one at a time, and pass each to the supplied action.
+     * <p>
+     * Elements of the list which are not JSON objects are ignored.
+     *
+     * @param reusableRecord If not null, every record is decoded into this map, so the action
+     *                       must not keep a reference to the record. Otherwise a new map is
+     *                       created for each record.
+     * @param action Called for each record
+     */
+    void forEach(@Nullable Map<String, Object> reusableRecord, Consumer<Map<String, Object>> action) {
+        JsonPullParser parser = new JsonPullParser(json, start, end);
+        try {
+            parser.beginArray();
+            while (parser.hasNext()) {
+                if (parser.peek() != '{') {
+                    parser.skipValue();
+                    continue;
+                }
+                Map<String, Object> record;
+                if (reusableRecord != null) {
+                    record = reusableRecord;
+                    record.clear();
+                } else {
+                    record = new HashMap<>();
+                }
+                action.accept(parser.nextObject(record));
+            }
+            parser.endArray();
+        } catch (ParseException e) {
+            // The JSON was validated by MessageDecoder, so this is a bug
+            throw new IllegalStateException("Invalid record loop", e);
+        }
+    }
+
+    /** @return The records decoded into an array of maps */
+    Object[] toArray() {
+        try {
+            return new JsonPullParser(json, start, end).nextArray();
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid record loop", e);
+        }
+    }
+
+    /**
+     * Pass each record in the supplied list of records to the supplied action. The list may be
+     * a {@link RecordLoop} or an array of maps.
+     *
+     * @see #forEach(Map, Consumer)
+     */
+    @SuppressWarnings("unchecked")
+    static void forEach(@Nullable Object loop, @Nullable Map<String, Object> reusableRecord, Consumer<Map<String, Object>> action) {
+        if (loop instanceof RecordLoop) {
+            ((RecordLoop) loop).forEach(reusableRecord, action);
+        } else if (loop instanceof Object[]) {
+            for (Object record : (Object[]) loop) {
+                if (record instanceof Map) {
+                    action.accept((Map<String, Object>) record);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The supplied list of records as an array of maps, or null. The list may be a
+     * {@link RecordLoop} or an array of maps.
+     */
+    @Nullable
+    static Object[] toArray(@Nullable Object loop) {
+        return (loop instanceof RecordLoop) ? ((RecordLoop) loop).toArray() : (Object[]) loop;
+    }
+
+    @Override
+    public void addJSON(Appendable buffer) {
+        try {
+            buffer.append(json, start, end);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return json.substring(start, end);
+    }
+}
@@ -69,6 +69,10 @@ public class SlimDelegate {
     }
 
 
+    VolumeChannel getVolumeChannel(Player player) {
+        return mClient.getConnectionState().getVolumeChannel(player);
+    }
+
     boolean isConnected() {
         return mClient.getConnectionState().isConnected();
     }
@@ -102,6 +106,10 @@ public class SlimDelegate {
         return new Request<>(mClient, player, start, BaseClient.mPageSize, callback);
     }
 
+    <T> Request<T> requestItems(Player player, int start, int pageSize, IServiceItemListCallback<T> callback) {
+        return new Request<>(mClient, player, start, pageSize, callback);
+    }
+
     <T> Request<T> requestItems(Player player, IServiceItemListCallback<T> callback) {
         return new Request<>(mClient, player, 0, BaseClient.mPageSize, callback);
     }
@@ -34,8 +34,11 @@ import android.net.wifi.WifiManager;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -64,6 +67,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import uk.org.ngo.squeezer.NowPlayingActivity;
@@ -91,6 +95,7 @@ import uk.org.ngo.squeezer.service.event.PlayStatusChanged;
 import uk.org.ngo.squeezer.service.event.PlayerStateChanged;
 import uk.org.ngo.squeezer.service.event.PlayerVolume;
 import uk.org.ngo.squeezer.service.event.PlayersChanged;
+import uk.org.ngo.squeezer.service.event.PlaylistChanged;
 import uk.org.ngo.squeezer.util.ImageFetcher;
 import uk.org.ngo.squeezer.util.Intents;
 import uk.org.ngo.squeezer.util.NotificationUtil;
@@ -138,6 +143,25 @@ public class SqueezeService extends Service {
 
     private final RandomPlayDelegate randomPlayDelegate = new RandomPlayDelegate(mDelegate);
 
+    /** Loads the artwork of the next tracks of the active player ahead of time. */
+    private ArtworkPrefetcher mArtworkPrefetcher;
+
+    /** Time to coalesce updates of the media session and the notification, in milliseconds. */
+    private static final long MEDIA_SESSION_UPDATE_DELAY = 100;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    /** What was published to the media session and the notification. */
+    private final MediaSessionProjection mMediaSessionProjection = new MediaSessionProjection();
+
+    /** True if {@link #publishMediaSession()} is scheduled. */
+    private final AtomicBoolean mMediaSessionUpdatePending = new AtomicBoolean();
+
+    private final Runnable mPublishMediaSession = this::publishMediaSession;
+
+    /** Artwork of the current song, shown in the media session and the notification. */
+    private Bitmap mArtwork;
+
     /**
      * Is scrobbling enabled?
      */
@@ -215,6 +239,8 @@ public class SqueezeService extends Service {
         WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(Context.WIFI_SERVICE);
         this.wifiLock = wifiManager.createWifiLock(WifiManager.WIFI_MODE_FULL, "Squeezer_WifiLock");
 
+        mArtworkPrefetcher = new ArtworkPrefetcher(this, mDelegate);
+
         mEventBus.register(this);  // Get events before other subscribers - now with Annotation
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
@@ -271,12 +297,15 @@ public class SqueezeService extends Service {
     @Override
     public IBinder onBind(Intent intent) {
         mMediaSession = new MediaSessionCompat(getApplicationContext(), "squeezer");
+        mMediaSessionProjection.reset();
         return (IBinder) squeezeService;
     }
 
     @Override
     public boolean onUnbind(Intent intent) {
         if (mMediaSession != null) {
+            mMainHandler.removeCallbacks(mPublishMediaSession);
+            mMediaSessionUpdatePending.set(false);
             mMediaSession.release();
         }
         return super.onUnbind(intent);
@@ -287,6 +316,7 @@ public class SqueezeService extends Service {
         super.onDestroy();
         disconnect(false);
         mEventBus.unregister(this);
+        Log.d(TAG, "Media session updates: " + mMediaSessionProjection);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             try {
@@ -305,6 +335,7 @@ public class SqueezeService extends Service {
     }
 
     private void disconnect(boolean fromUser) {
+        mArtworkPrefetcher.cancel();
         mDelegate.disconnect(fromUser);
     }
 
@@ -409,65 +440,147 @@ public class SqueezeService extends Service {
 
     /**
      * Manages the state of any ongoing notification based on the player and connection state.
+     * <p>
+     * Updates requested within {@link #MEDIA_SESSION_UPDATE_DELAY} are coalesced, so the
+     * events of a player status, and bursts of player statuses, update the media session and
+     * the notification once. May be called from any thread.
      */
     private void updateMediaSession() {
-        PlayerState playerState = getActivePlayerState();
-        if (playerState == null) {
-            mMediaSession.setMetadata(null);
-            mMediaSession.setPlaybackState(null);
-            notify(null);
+        if (mMediaSessionUpdatePending.compareAndSet(false, true)) {
+            mMainHandler.postDelayed(mPublishMediaSession, MEDIA_SESSION_UPDATE_DELAY);
+        } else {
+            mMediaSessionProjection.onCoalesced();
+        }
+    }
+
+    /**
+     * Publish what changed of the active player to the media session and the notification,
+     * see {@link MediaSessionProjection}.
+     */
+    private void publishMediaSession() {
+        mMediaSessionUpdatePending.set(false);
+        if (mMediaSession == null) {
+            return;
+        }
+
+        final PlayerState playerState = getActivePlayerState();
+        final MediaSessionProjection.State state = (playerState != null ? projectMediaSession(playerState) : null);
+        final MediaSessionProjection.Changes changes = mMediaSessionProjection.update(state);
+        if (changes.artwork) {
+            mArtwork = null;
+        }
+
+        if (state == null) {
+            if (changes.metadata) {
+                mMediaSession.setMetadata(null);
+                mMediaSession.setPlaybackState(null);
+                notify(null);
+            }
             return;
         }
 
         // Update scrobble state, if either we're currently scrobbling, or we
         // were (to catch the case where we started scrobbling a song, and the
         // user went in to settings to disable scrobbling).
-        if (scrobblingEnabled || scrobblingPreviouslyEnabled) {
+        if (changes.scrobble && (scrobblingEnabled || scrobblingPreviouslyEnabled)) {
             scrobblingPreviouslyEnabled = scrobblingEnabled;
             Scrobble.scrobbleFromPlayerState(this, playerState);
         }
 
-        final MediaMetadataCompat.Builder metaBuilder = new MediaMetadataCompat.Builder();
-        CurrentPlaylistItem song = playerState.getCurrentSong();
-        if (song != null) {
-            metaBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_DESCRIPTION, notificationSubtext(mDelegate.getActivePlayer()));
-            metaBuilder.putString(MediaMetadata.METADATA_KEY_ARTIST, song.songInfo.getArtist());
-            metaBuilder.putString(MediaMetadata.METADATA_KEY_ALBUM, song.songInfo.album);
-            metaBuilder.putString(MediaMetadata.METADATA_KEY_TITLE, song.songInfo.title);
-            metaBuilder.putLong(MediaMetadata.METADATA_KEY_DURATION, playerState.getCurrentSongDuration()*1000L);
-            metaBuilder.putLong(MediaMetadata.METADATA_KEY_TRACK_NUMBER, playerState.getCurrentPlaylistIndex() + 1);
-            metaBuilder.putLong(MediaMetadata.METADATA_KEY_NUM_TRACKS, playerState.getCurrentPlaylistTracksNum());
-            mMediaSession.setMetadata(metaBuilder.build());
-        }
-
-        int playState = isPlaying() ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_STOPPED;
-        PlaybackStateCompat playbackState = new PlaybackStateCompat.Builder()
-                .setState(playState, playerState.getPosition(), isPlaying() ? 1.0f : 0)
-                .setActions(
-                        PlaybackStateCompat.ACTION_PLAY |
-                                PlaybackStateCompat.ACTION_PAUSE |
-                                PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
-                                PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
-                                PlaybackStateCompat.ACTION_SEEK_TO
-                )
-                .addCustomAction(ACTION_POWER, getString(playerState.isPoweredOn() ? R.string.menu_item_power_off :  R.string.menu_item_power_on), R.drawable.power)
-                .addCustomAction(ACTION_DISCONNECT, getString(R.string.menu_item_disconnect), R.drawable.ic_action_disconnect)
-                .build();
-        mMediaSession.setPlaybackState(playbackState);
-
-        ImageFetcher.getInstance(this).loadImage(song != null ? song.getIcon() : null,
+        if (changes.metadata && state.hasSong) {
+            mMediaSession.setMetadata(buildMetadata(state, mArtwork));
+        }
+
+        if (changes.playbackState) {
+            int playState = state.playing ? PlaybackStateCompat.STATE_PLAYING : PlaybackStateCompat.STATE_STOPPED;
+            PlaybackStateCompat playbackState = new PlaybackStateCompat.Builder()
+                    .setState(playState, state.position, state.playing ? 1.0f : 0)
+                    .setActions(
+                            PlaybackStateCompat.ACTION_PLAY |
+                                    PlaybackStateCompat.ACTION_PAUSE |
+                                    PlaybackStateCompat.ACTION_SKIP_TO_PREVIOUS |
+                                    PlaybackStateCompat.ACTION_SKIP_TO_NEXT |
+                                    PlaybackStateCompat.ACTION_SEEK_TO
+                    )
+                    .addCustomAction(ACTION_POWER, getString(state.poweredOn ? R.string.menu_item_power_off :  R.string.menu_item_power_on), R.drawable.power)
+                    .addCustomAction(ACTION_DISCONNECT, getString(R.string.menu_item_disconnect), R.drawable.ic_action_disconnect)
+                    .build();
+            mMediaSession.setPlaybackState(playbackState);
+        }
+
+        if (!changes.artwork) {
+            if (changes.notification) {
+                notify(mArtwork);
+            }
+            return;
+        }
+
+        if (state.artworkUrl == null) {
+            notify(null);
+            return;
+        }
+        final String artworkUrl = state.artworkUrl;
+        ImageFetcher.getInstance(this).loadImage(playerState.getCurrentSong().getIconKey(),
                 getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_width),
                 getResources().getDimensionPixelSize(android.R.dimen.notification_large_icon_height),
                 (data, bitmap) -> {
-                    if (bitmap != null) {
-                        metaBuilder.putBitmap(MediaMetadata.METADATA_KEY_ALBUM_ART, bitmap);
-                        metaBuilder.putBitmap(MediaMetadata.METADATA_KEY_ART, bitmap);
-                        mMediaSession.setMetadata(metaBuilder.build());
+                    MediaSessionProjection.State published = mMediaSessionProjection.getPublished();
+                    if (published == null || !artworkUrl.equals(published.artworkUrl)) {
+                        // Another song started meanwhile
+                        return;
+                    }
+                    mArtwork = bitmap;
+                    if (bitmap != null && published.hasSong) {
+                        mMediaSession.setMetadata(buildMetadata(published, bitmap));
                     }
                     notify(bitmap);
                 });
     }
 
+    /**
+     * @return What the media session and the notification show of the player state
+     */
+    private MediaSessionProjection.State projectMediaSession(@NonNull PlayerState playerState) {
+        final MediaSessionProjection.State state = new MediaSessionProjection.State();
+        final CurrentPlaylistItem song = playerState.getCurrentSong();
+        if (song != null) {
+            state.hasSong = true;
+            state.title = song.songInfo.title;
+            state.artist = song.songInfo.getArtist();
+            state.album = song.songInfo.album;
+            state.name = song.getName();
+            state.artistAlbum = song.artistAlbum();
+            state.duration = playerState.getCurrentSongDuration() * 1000L;
+            state.trackNumber = playerState.getCurrentPlaylistIndex() + 1;
+            state.numTracks = playerState.getCurrentPlaylistTracksNum();
+            String artworkUrl = song.getIcon().toString();
+            state.artworkUrl = (artworkUrl.isEmpty() ? null : artworkUrl);
+        }
+        state.subtext = notificationSubtext(mDelegate.getActivePlayer());
+        state.playStatus = playerState.getPlayStatus();
+        state.playing = playerState.isPlaying();
+        state.poweredOn = playerState.isPoweredOn();
+        state.position = playerState.getPosition();
+        state.positionTime = SystemClock.elapsedRealtime();
+        return state;
+    }
+
+    private MediaMetadataCompat buildMetadata(@NonNull MediaSessionProjection.State state, @Nullable Bitmap artwork) {
+        final MediaMetadataCompat.Builder metaBuilder = new MediaMetadataCompat.Builder();
+        metaBuilder.putString(MediaMetadata.METADATA_KEY_DISPLAY_DESCRIPTION, state.subtext);
+        metaBuilder.putString(MediaMetadata.METADATA_KEY_ARTIST, state.artist);
+        metaBuilder.putString(MediaMetadata.METADATA_KEY_ALBUM, state.album);
+        metaBuilder.putString(MediaMetadata.METADATA_KEY_TITLE, state.title);
+        metaBuilder.putLong(MediaMetadata.METADATA_KEY_DURATION, state.duration);
+        metaBuilder.putLong(MediaMetadata.METADATA_KEY_TRACK_NUMBER, state.trackNumber);
+        metaBuilder.putLong(MediaMetadata.METADATA_KEY_NUM_TRACKS, state.numTracks);
+        if (artwork != null) {
+            metaBuilder.putBitmap(MediaMetadata.METADATA_KEY_ALBUM_ART, artwork);
+            metaBuilder.putBitmap(MediaMetadata.METADATA_KEY_ART, artwork);
+        }
+        return metaBuilder.build();
+    }
+
     private void notify(Bitmap bitmap) {
         final NotificationCompat.Builder notificationData = notificationData();
         notificationData.setLargeIcon(bitmap);
@@ -564,6 +677,7 @@ public class SqueezeService extends Service {
             mMediaSession.setActive(true);
 
             Notification notification = notificationData().build();
+            mMediaSessionProjection.reset();
 
             // Start it and have it run forever (until it shuts itself down).
             // This is required so swapping out the activity (and unbinding the
@@ -592,6 +706,7 @@ public class SqueezeService extends Service {
         mMediaSession.setActive(false);
 
         stopForeground(true);
+        mMediaSessionProjection.reset();
         stopSelf();
     }
 
@@ -710,12 +825,20 @@ public class SqueezeService extends Service {
     public void onEvent(MusicChanged event) {
         if (event.player.equals(mDelegate.getActivePlayer())) {
             updateMediaSession();
+            mArtworkPrefetcher.schedule(event.player);
         }
         if (event.player.getPlayerState().isRandomPlaying()) {
             handleRandomOnEvent(event.player);
         }
     }
 
+    @Subscribe(sticky = true, priority = 1)
+    public void onEvent(PlaylistChanged event) {
+        if (event.player.equals(mDelegate.getActivePlayer())) {
+            mArtworkPrefetcher.schedule(event.player);
+        }
+    }
+
     @Subscribe(priority = 1)
     public void onEvent(PlayStatusChanged event) {
         if (event.player.equals(mDelegate.getActivePlayer())) {
@@ -981,11 +1104,30 @@ public class SqueezeService extends Service {
             }
         }
 
+        /**
+         * Show the volume at once, and send it through the volume channel of the player, so
+         * only the latest of quickly set volumes is sent.
+         */
         private void setPlayerVolume(Player player, int percentage) {
             int volume = Math.min(100, Math.max(0, percentage));
-            mDelegate.command(player).cmd("mixer", "volume", String.valueOf(volume)).exec();
             player.getPlayerState().setCurrentVolume(volume);
             mEventBus.post(new PlayerVolume(player));
+
+            VolumeChannel volumeChannel = mDelegate.getVolumeChannel(player);
+            long delay = volumeChannel.set(volume, SystemClock.elapsedRealtime());
+            if (delay == 0) {
+                sendPlayerVolume(player, volumeChannel);
+            } else if (delay > 0) {
+                mMainHandler.postDelayed(() -> sendPlayerVolume(player, volumeChannel), delay);
+            }
+        }
+
+        private void sendPlayerVolume(Player player, VolumeChannel volumeChannel) {
+            int volume = volumeChannel.send(SystemClock.elapsedRealtime());
+            if (volume >= 0) {
+                mDelegate.command(player).cmd("mixer", "volume", String.valueOf(volume)).exec();
+                Log.v(TAG, "Volume of " + player.getName() + ": " + volumeChannel);
+            }
         }
 
         @Override
@@ -1474,13 +1616,26 @@ public class SqueezeService extends Service {
             mDelegate.requestItems(getActivePlayer(), start, callback).cmd(cmd).param("menu", "menu").exec();
         }
 
+        @Override
+        public void pluginItems(int start, int count, String cmd, IServiceItemListCallback<JiveItem> callback) throws SqueezeService.HandshakeNotCompleteException {
+            if (!mHandshakeComplete) {
+                throw new HandshakeNotCompleteException("Handshake with server has not completed.");
+            }
+            mDelegate.requestItems(getActivePlayer(), start, count, callback).cmd(cmd).param("menu", "menu").exec();
+        }
+
         /* Start an asynchronous fetch of the squeezeservers generic menu items */
         @Override
         public void pluginItems(int start, JiveItem item, Action action, IServiceItemListCallback<JiveItem>  callback) throws SqueezeService.HandshakeNotCompleteException {
             if (!mHandshakeComplete) {
                 throw new HandshakeNotCompleteException("Handshake with server has not completed.");
             }
-            mDelegate.requestItems(getActivePlayer(), start, callback).cmd(action.action.cmd).params(action.action.params(item.inputValue)).exec();
+            SlimDelegate.Command request = mDelegate.requestItems(getActivePlayer(), start, callback).cmd(action.action.cmd).params(action.action.params(item.inputValue));
+            if (start == 0) {
+                // Get the index of the list with the first page, see ListIndex
+                request.param("wantIndex", 1);
+            }
+            request.exec();
         }
 
         @Override
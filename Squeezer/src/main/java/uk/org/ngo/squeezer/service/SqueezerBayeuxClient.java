@@ -106,6 +106,9 @@ class SqueezerBayeuxClient extends BayeuxClient {
         if (key != null) {
             sb.append(key);
         }
+        if (object instanceof RecordLoop) {
+            object = ((RecordLoop) object).toArray();
+        }
         if (object == null) {
             sb.append("null\n");
         } else if (object.getClass().isArray()) {
@@ -0,0 +1,97 @@
+package uk.org.ngo.squeezer.service;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The volume commands of a player.
+ * <p>
+ * Dragging a volume slider sets the volume many times a second. Only the latest volume is kept,
+ * and sent at most every {@link #SEND_INTERVAL} milliseconds; a volume which is set while
+ * waiting is sent when the interval is over.
+ * <p>
+ * Until the server reports the latest volume, or for {@link #SETTLE_TIME} milliseconds after it
+ * was sent, other volumes reported by the server are from earlier commands, and are ignored so
+ * the slider doesn't jump back.
+ * <p>
+ * Times are in milliseconds, see {@link android.os.SystemClock#elapsedRealtime()}. Thread safe.
+ */
+class VolumeChannel {
+    /** Minimum time between volume commands. */
+    static final long SEND_INTERVAL = 150;
+
+    /** Time after the latest volume command in which other reported volumes are ignored. */
+    static final long SETTLE_TIME = 1000;
+
+    /** The latest volume, until the server reports it, or -1 */
+    private int target = -1;
+
+    /** The volume to send, or -1 */
+    private int pending = -1;
+
+    /** When the last volume command was sent */
+    private long lastSent = Long.MIN_VALUE / 2;
+
+    private long sent;
+    private long coalesced;
+    private long echoesIgnored;
+
+    /**
+     * Set the volume. If this returns 0 or more, the caller must call {@link #send(long)} after
+     * that many milliseconds.
+     *
+     * @return Milliseconds until the volume can be sent, or -1 if a send is already due
+     */
+    synchronized long set(int volume, long now) {
+        target = volume;
+        if (pending >= 0) {
+            pending = volume;
+            coalesced++;
+            return -1;
+        }
+        pending = volume;
+        return Math.max(0, lastSent + SEND_INTERVAL - now);
+    }
+
+    /**
+     * @return The volume to send now, or -1 if there is nothing to send
+     */
+    synchronized int send(long now) {
+        int volume = pending;
+        if (volume >= 0) {
+            pending = -1;
+            lastSent = now;
+            sent++;
+        }
+        return volume;
+    }
+
+    /**
+     * @return True if the supplied volume reported by the server is from an earlier command, and
+     *     must be ignored
+     */
+    synchronized boolean isEcho(int volume, long now) {
+        if (target < 0) {
+            return false;
+        }
+        if (pending < 0 && (volume == target || now - lastSent >= SETTLE_TIME)) {
+            target = -1;
+            return false;
+        }
+        if (volume == target) {
+            return false;
+        }
+        echoesIgnored++;
+        return true;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "VolumeChannel{" +
+                "target=" + target +
+                ", sent=" + sent +
+                ", coalesced=" + coalesced +
+                ", echoesIgnored=" + echoesIgnored +
+                '}';
+    }
+}
@@ -18,9 +18,13 @@ package uk.org.ngo.squeezer.service.event;
 
 import androidx.annotation.NonNull;
 
+import uk.org.ngo.squeezer.model.PlaybackClock;
 import uk.org.ngo.squeezer.model.Player;
 
-/** Event sent when the duration or current play position of the current song has changed. */
+/**
+ * Event sent when the duration of the current song changes, or the play position changes other
+ * than by playing, e.g. when the player seeks, pauses or starts another song.
+ */
 public class SongTimeChanged {
     /** The player with changed state. */
     @NonNull
@@ -32,10 +36,15 @@ public class SongTimeChanged {
     /** The song's duration, measured in seconds. */
     public final int duration;
 
-    public SongTimeChanged(@NonNull Player player, int currentPosition, int duration) {
+    /** Gives the position of the player in the song from now on. */
+    @NonNull
+    public final PlaybackClock clock;
+
+    public SongTimeChanged(@NonNull Player player, @NonNull PlaybackClock clock) {
         this.player = player;
-        this.currentPosition = currentPosition;
-        this.duration = duration;
+        this.currentPosition = clock.getTrackElapsed();
+        this.duration = clock.getDuration();
+        this.clock = clock;
     }
 
     @Override
@@ -0,0 +1,73 @@
+package uk.org.ngo.squeezer.util;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * A pool of bitmaps which are no longer used, to decode new bitmaps into with
+ * {@link BitmapFactory.Options#inBitmap}, instead of allocating new pixel buffers.
+ */
+class BitmapPool extends SizeBucketedPool<Bitmap> {
+
+    /**
+     * @param maxSize Maximum total size of the pooled bitmaps in bytes
+     */
+    BitmapPool(long maxSize) {
+        super(maxSize);
+    }
+
+    @Override
+    protected int sizeOf(@NonNull Bitmap bitmap) {
+        return bitmap.getAllocationByteCount();
+    }
+
+    @Override
+    protected boolean isReusable(@NonNull Bitmap bitmap) {
+        return bitmap.isMutable() && !bitmap.isRecycled();
+    }
+
+    /**
+     * Take a bitmap from the pool which the decode described by the supplied options can decode
+     * into.
+     *
+     * @param options Options with the out* fields populated by a decode with
+     *     inJustDecodeBounds==true, and the inSampleSize and inPreferredConfig of the decode
+     * @return The bitmap, or null if there is no suitable bitmap in the pool
+     */
+    @Nullable
+    Bitmap get(BitmapFactory.Options options) {
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int bytesPerPixel = getBytesPerPixel(options.inPreferredConfig);
+        if (bytesPerPixel == 0) {
+            return null;
+        }
+
+        // Decoders may round the sample size down to a power of 2, and round the dimensions up
+        int sampleSize = Integer.highestOneBit(Math.max(1, options.inSampleSize));
+        long width = (options.outWidth + sampleSize - 1) / sampleSize;
+        long height = (options.outHeight + sampleSize - 1) / sampleSize;
+        long byteCount = width * height * bytesPerPixel;
+        return (byteCount <= Integer.MAX_VALUE ? get((int) byteCount) : null);
+    }
+
+    /**
+     * @return Bytes per pixel of bitmaps with the supplied config, or 0 if they can't be reused
+     */
+    private static int getBytesPerPixel(@Nullable Bitmap.Config config) {
+        if (config == null || config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        }
+        if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,110 @@
+package uk.org.ngo.squeezer.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Where an entry of the disk cache was fetched from, when, and the validators the server sent
+ * with it (the <code>ETag</code> and <code>Last-Modified</code> headers), so the entry can be
+ * revalidated with a conditional request instead of downloaded again.
+ * <p>
+ * Instances are immutable.
+ */
+final class CacheValidators {
+    /** URL the entry was fetched from. */
+    @NonNull
+    final String url;
+
+    /** Value of the <code>ETag</code> header, or null if there was none. */
+    @Nullable
+    final String eTag;
+
+    /** Value of the <code>Last-Modified</code> header, or null if there was none. */
+    @Nullable
+    final String lastModified;
+
+    /** When the entry was fetched or last revalidated, in milliseconds since the epoch. */
+    final long fetchedAt;
+
+    CacheValidators(@NonNull String url, @Nullable String eTag, @Nullable String lastModified, long fetchedAt) {
+        this.url = url;
+        this.eTag = emptyToNull(eTag);
+        this.lastModified = emptyToNull(lastModified);
+        this.fetchedAt = fetchedAt;
+    }
+
+    /** @return Whether the server sent anything to revalidate the entry with. */
+    boolean canRevalidate() {
+        return eTag != null || lastModified != null;
+    }
+
+    /**
+     * @param now The current time in milliseconds since the epoch
+     * @param maxAge How long an entry is used without checking it is current, in milliseconds
+     * @return Whether the entry should be revalidated
+     */
+    boolean needsRevalidation(long now, long maxAge) {
+        // Also revalidate if the clock has been turned back
+        return canRevalidate() && (now - fetchedAt >= maxAge || now < fetchedAt);
+    }
+
+    /**
+     * @return The validators after the server answered a conditional request with
+     *     <code>304 Not Modified</code>. The response may carry updated validators.
+     */
+    @NonNull
+    CacheValidators notModified(@Nullable String eTag, @Nullable String lastModified, long now) {
+        return new CacheValidators(url,
+                emptyToNull(eTag) != null ? eTag : this.eTag,
+                emptyToNull(lastModified) != null ? lastModified : this.lastModified,
+                now);
+    }
+
+    /**
+     * @return The validators as a string, which {@link #decode(String)} reads back.
+     */
+    @NonNull
+    String encode() {
+        return url + '\n' + nullToEmpty(eTag) + '\n' + nullToEmpty(lastModified) + '\n' + fetchedAt;
+    }
+
+    /**
+     * @return The validators encoded by {@link #encode()}, or null if the string doesn't hold any
+     */
+    @Nullable
+    static CacheValidators decode(@Nullable String encoded) {
+        if (encoded == null) {
+            return null;
+        }
+        String[] lines = encoded.split("\n", -1);
+        if (lines.length != 4 || lines[0].isEmpty()) {
+            return null;
+        }
+        try {
+            return new CacheValidators(lines[0], lines[1], lines[2], Long.parseLong(lines[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable String s) {
+        return (s == null || s.isEmpty() ? null : s);
+    }
+
+    @NonNull
+    private static String nullToEmpty(@Nullable String s) {
+        return (s == null ? "" : s);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "CacheValidators{" +
+                "url='" + url + '\'' +
+                ", eTag='" + eTag + '\'' +
+                ", lastModified='" + lastModified + '\'' +
+                ", fetchedAt=" + fetchedAt +
+                '}';
+    }
+}
@@ -20,6 +20,7 @@ import androidx.annotation.NonNull;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.EOFException;
 import java.io.File;
@@ -766,6 +767,35 @@ public final class DiskLruCache implements Closeable {
             return inputStreamToString(getInputStream(index));
         }
 
+        /**
+         * Returns the value for {@code index}, copied into a new array.
+         */
+        public byte[] getBytes(int index) throws IOException {
+            InputStream in = getInputStream(index);
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                byte[] b = new byte[16384];
+                int bytes;
+                while ((bytes = in.read(b)) > 0) {
+                    out.write(b, 0, bytes);
+                }
+                return out.toByteArray();
+            }
+        }
+
+        /**
+         * Returns the unbuffered stream with the value for {@code index}, and
+         * closes the streams of the other values. The caller must close the
+         * returned stream instead of this snapshot.
+         */
+        public FileInputStream takeInputStream(int index) {
+            for (int i = 0; i < ins.length; i++) {
+                if (i != index) {
+                    closeQuietly(ins[i]);
+                }
+            }
+            return (FileInputStream) ins[index];
+        }
+
         @Override
         public void close() {
             for (InputStream in : ins) {
@@ -32,14 +32,19 @@ import android.text.TextUtils;
 import android.util.Log;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import uk.org.ngo.squeezer.BuildConfig;
-import uk.org.ngo.squeezer.Util;
 
 /**
  * This class holds our bitmap caches (memory and disk).
@@ -51,6 +56,12 @@ public class ImageCache {
     // Default memory cache size
     private static final int DEFAULT_MEM_CACHE_SIZE = 1024 * 1024 * 5; // 5MB
 
+    // Default bitmap pool size, relative to the memory cache size
+    private static final float DEFAULT_BITMAP_POOL_SIZE_PERCENT = 0.25f;
+
+    // Log the bitmap pool statistics after this many requests in debug builds
+    private static final int BITMAP_POOL_STATS_INTERVAL = 50;
+
     // Default disk cache size
     private static final int MAX_DISK_CACHE_SIZE = 1024 * 1024 * 100; // 100MB
 
@@ -63,6 +74,13 @@ public class ImageCache {
     private static final int DEFAULT_COMPRESS_QUALITY = 70;
 
     private static final int DISK_CACHE_INDEX = 0;
+    private static final int DISK_CACHE_VALIDATORS_INDEX = 1;
+    private static final int DISK_CACHE_VALUE_COUNT = 2;
+
+    private static final int DISK_CACHE_LOCK_STRIPES = 16;
+
+    /** Version of the disk cache format. A cache in another version is cleared. */
+    private static final int DISK_CACHE_VERSION = 2;
 
     // Constants to easily toggle various caches
     private static final boolean DEFAULT_MEM_CACHE_ENABLED = true;
@@ -77,9 +95,29 @@ public class ImageCache {
 
     private LruCache<String, Bitmap> mMemoryCache;
 
+    private BitmapPool mBitmapPool;
+
+    /**
+     * Bitmaps from the memory cache which are in use, by their user (e.g. the view showing the
+     * bitmap). Bitmaps in use are not added to the bitmap pool when they are evicted from the
+     * memory cache. Access is synchronized on the map.
+     */
+    private final Map<Object, Bitmap> mBitmapUsers = new WeakHashMap<>();
+
+    /** Bitmaps which have been passed on for good, and must never be reused. */
+    private final Set<Bitmap> mKeptBitmaps = Collections.newSetFromMap(new WeakHashMap<>());
+
     private ImageCacheParams mCacheParams;
 
-    private final Object mDiskCacheLock = new Object();
+    /**
+     * Guards the disk cache. Entries are read and written under the lock of their key, so a
+     * slow write doesn't hold up reads of other entries. Opening, clearing and closing the disk
+     * cache lock all of it.
+     */
+    private final StripedLock mDiskCacheLocks = new StripedLock(DISK_CACHE_LOCK_STRIPES);
+
+    /** Monitor to wait on for the disk cache to be initialized. */
+    private final Object mDiskCacheStartingLock = new Object();
 
     private boolean mDiskCacheStarting = true;
 
@@ -102,6 +140,14 @@ public class ImageCache {
         init(new ImageCacheParams(context, uniqueName));
     }
 
+    /**
+     * @return The parameters of this cache
+     */
+    @NonNull
+    ImageCacheParams getCacheParams() {
+        return mCacheParams;
+    }
+
     /**
      * Find and return an existing ImageCache stored in a {@link RetainFragment}, if not found a new
      * one is created using the supplied params and saved to a {@link RetainFragment}.
@@ -142,10 +188,18 @@ public class ImageCache {
             if (BuildConfig.DEBUG) {
                 Log.d(TAG, "Memory cache created (size = " + mCacheParams.memCacheSize + ")");
             }
+            mBitmapPool = new BitmapPool(Math.round(mCacheParams.memCacheSize * mCacheParams.bitmapPoolSizePercent));
             mMemoryCache = new LruCache<String, Bitmap>(mCacheParams.memCacheSize) {
                 @Override
                 protected int sizeOf(String key, Bitmap bitmap) {
-                    return (bitmap.getRowBytes() * bitmap.getHeight());
+                    return getBitmapSize(bitmap);
+                }
+
+                @Override
+                protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                    if (evicted) {
+                        addBitmapToPool(oldValue);
+                    }
                 }
             };
         }
@@ -166,7 +220,8 @@ public class ImageCache {
      */
     public void initDiskCache() {
         // Set up disk cache
-        synchronized (mDiskCacheLock) {
+        mDiskCacheLocks.lockAll();
+        try {
             if (mDiskLruCache == null || mDiskLruCache.isClosed()) {
                 File diskCacheDir = mCacheParams.diskCacheDir;
                 if (mCacheParams.diskCacheEnabled && diskCacheDir != null) {
@@ -182,7 +237,7 @@ public class ImageCache {
 
                     if (usableSpace > diskCacheSize) {
                         try {
-                            mDiskLruCache = DiskLruCache.open(diskCacheDir, 1, 1, diskCacheSize);
+                            mDiskLruCache = DiskLruCache.open(diskCacheDir, DISK_CACHE_VERSION, DISK_CACHE_VALUE_COUNT, diskCacheSize);
                             if (BuildConfig.DEBUG) {
                                 Log.d(TAG, "Disk cache initialized in " + diskCacheDir);
                             }
@@ -193,8 +248,30 @@ public class ImageCache {
                     }
                 }
             }
-            mDiskCacheStarting = false;
-            mDiskCacheLock.notifyAll();
+            setDiskCacheStarting(false);
+        } finally {
+            mDiskCacheLocks.unlockAll();
+        }
+    }
+
+    private void setDiskCacheStarting(boolean starting) {
+        synchronized (mDiskCacheStartingLock) {
+            mDiskCacheStarting = starting;
+            mDiskCacheStartingLock.notifyAll();
+        }
+    }
+
+    /**
+     * Wait until the disk cache has been initialized (or failed to initialize).
+     */
+    private void waitForDiskCache() {
+        synchronized (mDiskCacheStartingLock) {
+            while (mDiskCacheStarting) {
+                try {
+                    mDiskCacheStartingLock.wait();
+                } catch (InterruptedException e) {
+                }
+            }
         }
     }
 
@@ -237,23 +314,36 @@ public class ImageCache {
      * @param bitmap The bitmap to store
      */
     public void addBitmapToDiskCache(String data, Bitmap bitmap) {
+        addBitmapToDiskCache(data, bitmap, null);
+    }
+
+    /**
+     * Adds a bitmap to the disk cache, replacing any existing entry.
+     *
+     * @param data Unique identifier for the bitmap to store
+     * @param bitmap The bitmap to store
+     * @param validators Validators to revalidate the entry with, or null if it can't be revalidated
+     */
+    void addBitmapToDiskCache(String data, Bitmap bitmap, @Nullable CacheValidators validators) {
         if (data == null || bitmap == null) {
             return;
         }
 
-        synchronized (mDiskCacheLock) {
+        final String key = hashKeyForDisk(data);
+        mDiskCacheLocks.lockWrite(key);
+        try {
             // Add to disk cache
             if (mDiskLruCache != null) {
-                final String key = hashKeyForDisk(data);
-                try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
-                    if (snapshot == null) {
-                        final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
-                        if (editor != null) {
-                            try (OutputStream out = editor.newOutputStream(DISK_CACHE_INDEX)) {
-                                bitmap.compress(mCacheParams.compressFormat, mCacheParams.compressQuality, out);
-                                editor.commit();
-                            }
+                try {
+                    final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
+                    if (editor != null) {
+                        try (OutputStream out = editor.newOutputStream(DISK_CACHE_INDEX)) {
+                            // Keep the transparency of icons
+                            final CompressFormat format = bitmap.hasAlpha() ? CompressFormat.PNG : mCacheParams.compressFormat;
+                            bitmap.compress(format, mCacheParams.compressQuality, out);
                         }
+                        editor.set(DISK_CACHE_VALIDATORS_INDEX, validators != null ? validators.encode() : "");
+                        editor.commit();
                     }
                 } catch (final IOException e) {
                     Log.e(TAG, "addBitmapToCache - " + e);
@@ -261,6 +351,8 @@ public class ImageCache {
                     Log.e(TAG, "addBitmapToCache - " + e);
                 }
             }
+        } finally {
+            mDiskCacheLocks.unlockWrite(key);
         }
     }
 
@@ -271,23 +363,34 @@ public class ImageCache {
      * @param bytes The bytes to store
      */
     public void addBytesToDiskCache(String data, byte[] bytes) {
+        addBytesToDiskCache(data, bytes, null);
+    }
+
+    /**
+     * Adds a byte[] to the disk cache, replacing any existing entry.
+     *
+     * @param data Unique identifier for the bitmap to store
+     * @param bytes The bytes to store
+     * @param validators Validators to revalidate the entry with, or null if it can't be revalidated
+     */
+    void addBytesToDiskCache(String data, byte[] bytes, @Nullable CacheValidators validators) {
         if (data == null || bytes.length == 0) {
             return;
         }
 
-        synchronized (mDiskCacheLock) {
+        final String key = hashKeyForDisk(data);
+        mDiskCacheLocks.lockWrite(key);
+        try {
             // Add to disk cache
             if (mDiskLruCache != null) {
-                final String key = hashKeyForDisk(data);
-                try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
-                    if (snapshot == null) {
-                        final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
-                        if (editor != null) {
-                            try (OutputStream out = editor.newOutputStream(DISK_CACHE_INDEX)) {
-                                out.write(bytes);
-                                editor.commit();
-                            }
+                try {
+                    final DiskLruCache.Editor editor = mDiskLruCache.edit(key);
+                    if (editor != null) {
+                        try (OutputStream out = editor.newOutputStream(DISK_CACHE_INDEX)) {
+                            out.write(bytes);
                         }
+                        editor.set(DISK_CACHE_VALIDATORS_INDEX, validators != null ? validators.encode() : "");
+                        editor.commit();
                     }
                 } catch (final IOException e) {
                     Log.e(TAG, "addBitmapToCache - " + e);
@@ -295,6 +398,58 @@ public class ImageCache {
                     Log.e(TAG, "addBitmapToCache - " + e);
                 }
             }
+        } finally {
+            mDiskCacheLocks.unlockWrite(key);
+        }
+    }
+
+    /**
+     * Replace the validators of an entry of the disk cache, e.g. after the server confirmed the
+     * entry is current. Does nothing if there is no entry.
+     *
+     * @param data Unique identifier of the entry
+     * @param validators The new validators
+     */
+    void updateValidatorsInDiskCache(String data, @NonNull CacheValidators validators) {
+        final String key = hashKeyForDisk(data);
+        mDiskCacheLocks.lockWrite(key);
+        try {
+            if (mDiskLruCache != null) {
+                try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
+                    if (snapshot != null) {
+                        final DiskLruCache.Editor editor = snapshot.edit();
+                        if (editor != null) {
+                            editor.set(DISK_CACHE_VALIDATORS_INDEX, validators.encode());
+                            editor.commit();
+                        }
+                    }
+                } catch (final IOException e) {
+                    Log.e(TAG, "updateValidatorsInDiskCache - " + e);
+                }
+            }
+        } finally {
+            mDiskCacheLocks.unlockWrite(key);
+        }
+    }
+
+    /**
+     * Remove an entry from the disk cache.
+     *
+     * @param data Unique identifier of the entry
+     */
+    void removeFromDiskCache(String data) {
+        final String key = hashKeyForDisk(data);
+        mDiskCacheLocks.lockWrite(key);
+        try {
+            if (mDiskLruCache != null) {
+                try {
+                    mDiskLruCache.remove(key);
+                } catch (final IOException e) {
+                    Log.e(TAG, "removeFromDiskCache - " + e);
+                }
+            }
+        } finally {
+            mDiskCacheLocks.unlockWrite(key);
         }
     }
 
@@ -327,6 +482,86 @@ public class ImageCache {
         return bitmap;
     }
 
+    /**
+     * Get from memory cache, and register the user of the bitmap, so the bitmap is not reused
+     * while it is in use. See {@link #setBitmapUser(Object, Bitmap)}.
+     *
+     * @param data Unique identifier for which item to get
+     * @param user The user of the bitmap
+     *
+     * @return The bitmap if found in cache, null otherwise
+     */
+    public Bitmap getBitmapFromMemCache(String data, @NonNull Object user) {
+        synchronized (mBitmapUsers) {
+            Bitmap bitmap = getBitmapFromMemCache(data);
+            if (bitmap != null) {
+                mBitmapUsers.put(user, bitmap);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * Register the bitmap in use by the supplied user, replacing the bitmap it used before. A
+     * user only holds on to a bitmap while the user is reachable.
+     *
+     * @param user The user of the bitmap, e.g. the view showing it
+     * @param bitmap The bitmap, null if the user no longer uses a bitmap
+     */
+    public void setBitmapUser(@NonNull Object user, @Nullable Bitmap bitmap) {
+        synchronized (mBitmapUsers) {
+            if (bitmap != null) {
+                mBitmapUsers.put(user, bitmap);
+            } else {
+                mBitmapUsers.remove(user);
+            }
+        }
+    }
+
+    /**
+     * Never reuse the supplied bitmap, e.g. because it was passed to code which keeps it
+     * indefinitely.
+     */
+    public void keepBitmap(@NonNull Bitmap bitmap) {
+        synchronized (mBitmapUsers) {
+            mKeptBitmaps.add(bitmap);
+        }
+    }
+
+    /**
+     * Add a bitmap which was evicted from the memory cache to the bitmap pool, unless it is in
+     * use.
+     */
+    private void addBitmapToPool(Bitmap bitmap) {
+        synchronized (mBitmapUsers) {
+            if (mKeptBitmaps.contains(bitmap) || mBitmapUsers.containsValue(bitmap)) {
+                return;
+            }
+        }
+        mBitmapPool.put(bitmap);
+    }
+
+    /**
+     * Take a bitmap from the bitmap pool to decode into.
+     *
+     * @param options Options with the out* fields populated by a decode with
+     *     inJustDecodeBounds==true, and the inSampleSize and inPreferredConfig of the decode
+     * @return A bitmap to use as {@link BitmapFactory.Options#inBitmap}, or null if there is
+     *     no suitable bitmap in the pool
+     */
+    @Nullable
+    public Bitmap getReusableBitmap(BitmapFactory.Options options) {
+        if (mBitmapPool == null) {
+            return null;
+        }
+
+        Bitmap bitmap = mBitmapPool.get(options);
+        if (BuildConfig.DEBUG && mBitmapPool.requestCount() % BITMAP_POOL_STATS_INTERVAL == 0) {
+            Log.d(TAG, "Bitmap pool stats: " + mBitmapPool);
+        }
+        return bitmap;
+    }
+
     /**
      * Get from disk cache.
      *
@@ -337,13 +572,9 @@ public class ImageCache {
     @Nullable
     public Bitmap getBitmapFromDiskCache(String data) {
         final String key = hashKeyForDisk(data);
-        synchronized (mDiskCacheLock) {
-            while (mDiskCacheStarting) {
-                try {
-                    mDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                }
-            }
+        waitForDiskCache();
+        mDiskCacheLocks.lockRead(key);
+        try {
             if (mDiskLruCache != null) {
                 try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
                     if (snapshot != null) {
@@ -360,6 +591,8 @@ public class ImageCache {
                 }
             }
             return null;
+        } finally {
+            mDiskCacheLocks.unlockRead(key);
         }
     }
 
@@ -373,29 +606,86 @@ public class ImageCache {
     @Nullable
     public byte[] getBytesFromDiskCache(String data) {
         final String key = hashKeyForDisk(data);
-        synchronized (mDiskCacheLock) {
-            while (mDiskCacheStarting) {
-                try {
-                    mDiskCacheLock.wait();
-                } catch (InterruptedException e) {
-                }
-            }
+        waitForDiskCache();
+        mDiskCacheLocks.lockRead(key);
+        try {
             if (mDiskLruCache != null) {
                 try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
                     if (snapshot != null) {
                         if (BuildConfig.DEBUG) {
                             Log.d(TAG, "Disk cache hit");
                         }
-                        InputStream inputStream = snapshot.getInputStream(DISK_CACHE_INDEX);
-                        if (inputStream != null) {
-                            return Util.toByteArray(inputStream);
-                        }
+                        return snapshot.getBytes(DISK_CACHE_INDEX);
                     }
                 } catch (final IOException e) {
                     Log.e(TAG, "getBitmapFromDiskCache - " + e);
                 }
             }
             return null;
+        } finally {
+            mDiskCacheLocks.unlockRead(key);
+        }
+    }
+
+    /**
+     * Open an entry of the disk cache for reading, so it can be decoded from the file without
+     * reading it into memory first. The file stays readable while it is open, even if the entry
+     * is replaced or removed meanwhile.
+     *
+     * @param data Unique identifier for which item to get
+     *
+     * @return Stream of the entry, which the caller must close, or null if there is no entry
+     */
+    @Nullable
+    FileInputStream openFromDiskCache(String data) {
+        final String key = hashKeyForDisk(data);
+        waitForDiskCache();
+        mDiskCacheLocks.lockRead(key);
+        try {
+            if (mDiskLruCache != null) {
+                // The snapshot only holds the streams of the values, so instead of closing it,
+                // close the streams which aren't passed on.
+                final DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key);
+                if (snapshot != null) {
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "Disk cache hit");
+                    }
+                    return snapshot.takeInputStream(DISK_CACHE_INDEX);
+                }
+            }
+        } catch (final IOException e) {
+            Log.e(TAG, "openFromDiskCache - " + e);
+        } finally {
+            mDiskCacheLocks.unlockRead(key);
+        }
+        return null;
+    }
+
+    /**
+     * Get the validators of an entry of the disk cache.
+     *
+     * @param data Unique identifier for which item to get
+     *
+     * @return The validators, or null if there is no entry or it can't be revalidated
+     */
+    @Nullable
+    CacheValidators getValidatorsFromDiskCache(String data) {
+        final String key = hashKeyForDisk(data);
+        waitForDiskCache();
+        mDiskCacheLocks.lockRead(key);
+        try {
+            if (mDiskLruCache != null) {
+                try (DiskLruCache.Snapshot snapshot = mDiskLruCache.get(key)) {
+                    if (snapshot != null) {
+                        return CacheValidators.decode(snapshot.getString(DISK_CACHE_VALIDATORS_INDEX));
+                    }
+                } catch (final IOException e) {
+                    Log.e(TAG, "getValidatorsFromDiskCache - " + e);
+                }
+            }
+            return null;
+        } finally {
+            mDiskCacheLocks.unlockRead(key);
         }
     }
 
@@ -406,9 +696,10 @@ public class ImageCache {
     public void clearCache() {
         clearMemoryCache();
 
-        synchronized (mDiskCacheLock) {
-            mDiskCacheStarting = true;
+        mDiskCacheLocks.lockAll();
+        try {
             if (mDiskLruCache != null && !mDiskLruCache.isClosed()) {
+                setDiskCacheStarting(true);
                 try {
                     mDiskLruCache.delete();
                     if (BuildConfig.DEBUG) {
@@ -420,12 +711,16 @@ public class ImageCache {
                 mDiskLruCache = null;
                 initDiskCache();
             }
+        } finally {
+            mDiskCacheLocks.unlockAll();
         }
     }
 
     public void clearMemoryCache() {
         if (mMemoryCache != null) {
             mMemoryCache.evictAll();
+            // Release the evicted bitmaps
+            mBitmapPool.clear();
             Log.d(TAG, "Memory cache cleared");
         }
     }
@@ -435,7 +730,8 @@ public class ImageCache {
      * access so this should not be executed on the main/UI thread.
      */
     public void flush() {
-        synchronized (mDiskCacheLock) {
+        mDiskCacheLocks.lockShared();
+        try {
             if (mDiskLruCache != null) {
                 try {
                     mDiskLruCache.flush();
@@ -446,6 +742,8 @@ public class ImageCache {
                     Log.e(TAG, "flush - " + e);
                 }
             }
+        } finally {
+            mDiskCacheLocks.unlockShared();
         }
     }
 
@@ -454,7 +752,8 @@ public class ImageCache {
      * access so this should not be executed on the main/UI thread.
      */
     public void close() {
-        synchronized (mDiskCacheLock) {
+        mDiskCacheLocks.lockAll();
+        try {
             if (mDiskLruCache != null) {
                 try {
                     if (!mDiskLruCache.isClosed()) {
@@ -468,9 +767,31 @@ public class ImageCache {
                     Log.e(TAG, "close - " + e);
                 }
             }
+        } finally {
+            mDiskCacheLocks.unlockAll();
         }
     }
 
+    /**
+     * How images are decoded for display.
+     */
+    public enum DecodePolicy {
+        /** 32 bits per pixel, in a mutable bitmap which can be reused. */
+        ARGB_8888,
+        /**
+         * 16 bits per pixel for JPEG images, which have no alpha channel, half the memory of
+         * ARGB_8888. Other images are decoded as ARGB_8888. In a mutable bitmap which can be
+         * reused.
+         */
+        RGB_565,
+        /**
+         * Hardware bitmaps, which are kept in graphics memory only and drawn without uploading
+         * them first. They are immutable, so they are not reused, and their pixels can't be read
+         * or drawn on in software. Before Android 8 the same as RGB_565.
+         */
+        HARDWARE
+    }
+
     /**
      * A holder class that contains cache parameters.
      */
@@ -480,6 +801,8 @@ public class ImageCache {
 
         public float diskCacheSizePercent = DEFAULT_DISK_CACHE_SIZE_PERCENT;
 
+        public float bitmapPoolSizePercent = DEFAULT_BITMAP_POOL_SIZE_PERCENT;
+
         public final int maxDiskCacheSize = MAX_DISK_CACHE_SIZE;
 
         public File diskCacheDir;
@@ -494,6 +817,22 @@ public class ImageCache {
 
         public boolean clearDiskCacheOnStart = DEFAULT_CLEAR_DISK_CACHE_ON_START;
 
+        /**
+         * How images loaded into views are decoded. Views which use the pixels of the image, e.g.
+         * to draw a logo over it, or to pick colours from it, need software bitmaps.
+         */
+        public DecodePolicy decodePolicy = DecodePolicy.RGB_565;
+
+        /** How priority images are decoded, e.g. the artwork of the now playing screen. */
+        public DecodePolicy priorityDecodePolicy = DecodePolicy.HARDWARE;
+
+        /**
+         * How images passed to callbacks are decoded. Callbacks may pass the image to other
+         * processes, e.g. for the notification, so hardware bitmaps are copied to software
+         * bitmaps for them.
+         */
+        public DecodePolicy callbackDecodePolicy = DecodePolicy.ARGB_8888;
+
         public final boolean initDiskCacheOnCreate = DEFAULT_INIT_DISK_CACHE_ON_CREATE;
 
         public ImageCacheParams(Context context, String uniqueName) {
@@ -550,35 +889,45 @@ public class ImageCache {
         return new File(cachePath + File.separator + uniqueName);
     }
 
+    /** MD5 digests for {@link #hashKeyForDisk(String)}, reused by each thread. */
+    private static final ThreadLocal<MessageDigest> sDigests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("MD5");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /**
      * A hashing method that changes a string (like a URL) into a hash suitable for using as a disk
      * filename.  The hashing method is MD5.
      */
     public static String hashKeyForDisk(String key) {
-        MessageDigest digest;
-        try {
-            digest = MessageDigest.getInstance("MD5");
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException(e);
-        }
-        byte[] bytes = digest.digest(key.getBytes());
-        StringBuilder sb = new StringBuilder();
-        for (byte b : bytes) {
-            sb.append(String.format("%02x", b));
-
+        MessageDigest digest = sDigests.get();
+        byte[] bytes = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
         }
-        return sb.toString();
+        return new String(chars);
     }
 
     /**
-     * Get the size in bytes of a bitmap.
+     * Get the size in bytes of the memory of a bitmap. This may be more than the size of its
+     * pixels, if the bitmap was decoded into a larger bitmap from the bitmap pool.
      *
      * @param bitmap Bitmap to examine.
      *
      * @return size in bytes
      */
     public static int getBitmapSize(Bitmap bitmap) {
-        return bitmap.getByteCount();
+        return bitmap.getAllocationByteCount();
     }
 
     /**
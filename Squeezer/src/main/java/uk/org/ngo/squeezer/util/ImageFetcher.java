@@ -19,15 +19,16 @@ package uk.org.ngo.squeezer.util;
 import android.content.Context;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import android.util.Log;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.URLDecoder;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 import uk.org.ngo.squeezer.R;
 import uk.org.ngo.squeezer.Util;
@@ -38,6 +39,19 @@ import uk.org.ngo.squeezer.Util;
 public class ImageFetcher extends ImageWorker {
     private static final String TAG = "ImageFetcher";
 
+    /**
+     * Maximum number of simultaneous requests to one host. The server scales artwork on
+     * request, so more parallel requests don't make it answer faster.
+     */
+    private static final int MAX_CONNECTIONS_PER_HOST = 2;
+
+    /** Not defined in {@link HttpURLConnection}. */
+    private static final int HTTP_TEMPORARY_REDIRECT = 307;
+    private static final int HTTP_PERMANENT_REDIRECT = 308;
+
+    /** Permits to send requests, by host and port. Access is synchronized on the map. */
+    private final Map<String, Semaphore> mHostConnections = new HashMap<>();
+
     private volatile static ImageFetcher sImageFetcher;
 
     private ImageFetcher(Context context) {
@@ -80,7 +94,17 @@ public class ImageFetcher extends ImageWorker {
     }
 
     /**
-     * The main process method, which will be called by the ImageWorker in the AsyncTask background
+     * Ask the server for artwork scaled to the thumbnail size, if it can scale it.
+     *
+     * @see Thumbnails#getResizedUrl(String, int)
+     */
+    @Override
+    protected String getResizedUrl(Object data, int size) {
+        return Thumbnails.getResizedUrl(data.toString(), size);
+    }
+
+    /**
+     * The main process method, which will be called by the ImageWorker in a network background
      * thread.
      *
      * @param params The parameters for this request.
@@ -88,27 +112,33 @@ public class ImageFetcher extends ImageWorker {
      * @return Undecoded bytes for the requested bitmap, null if downloading failed.
      */
     protected byte[] processBitmap(BitmapWorkerTaskParams params) {
+        FetchResult result = fetch(params, null);
+        return (result != null ? result.bytes : null);
+    }
+
+    /**
+     * Download the image, or if validators of a cached copy are supplied, ask the server with a
+     * conditional request whether the cached copy is still current.
+     * <p>
+     * Connections are kept alive by the platform's HTTP stack and reused for later images, as
+     * long as every response body is read to the end and the connection is not disconnected.
+     * At most {@link #MAX_CONNECTIONS_PER_HOST} requests are sent to a host at a time.
+     */
+    @Override
+    FetchResult fetch(BitmapWorkerTaskParams params, @Nullable CacheValidators cached) {
         if (params == null || params.data == null) {
             Log.w(TAG, "processBitmap was called without any data " + params + " abandon");
             return null;
         }
 
-        String data = params.data.toString();
-        Log.d(TAG, "processBitmap: " + data);
-
-        HttpURLConnection urlConnection = null;
-        InputStream in = null;
-        byte[] bytes = null;
+        final String requestUrl = params.data.toString();
+        String data = requestUrl;
+        Log.d(TAG, "processBitmap: " + data + (cached != null ? " (revalidate)" : ""));
 
         try {
-            URL resourceUrl, base, next;
-            Map<String, Integer> visited;
-            String location;
+            Map<String, Integer> visited = new HashMap<>();
 
-            visited = new HashMap<>();
-
-            while (true)
-            {
+            while (true) {
                 Integer times = visited.get(data);
                 if (times == null) times = 0;
                 visited.put(data, ++times);
@@ -116,45 +146,110 @@ public class ImageFetcher extends ImageWorker {
                 if (times > 3)
                     throw new IOException("Stuck in redirect loop");
 
-                resourceUrl = new URL(data);
-                urlConnection = (HttpURLConnection) resourceUrl.openConnection();
-
-                urlConnection.setConnectTimeout(15000);
-                urlConnection.setReadTimeout(15000);
-                urlConnection.setInstanceFollowRedirects(false);   // Make the logic below easier to detect redirections
-
-                switch (urlConnection.getResponseCode())
-                {
-                    case HttpURLConnection.HTTP_MOVED_PERM:
-                    case HttpURLConnection.HTTP_MOVED_TEMP:
-                        location = urlConnection.getHeaderField("Location");
-                        location = URLDecoder.decode(location, "UTF-8");
-                        base     = new URL(data);
-                        next     = new URL(base, location);  // Deal with relative URLs
-                        data      = next.toExternalForm();
-                        continue;
+                final URL resourceUrl = new URL(data);
+                final Semaphore hostConnections = getHostConnections(resourceUrl);
+                hostConnections.acquire();
+                HttpURLConnection urlConnection = null;
+                try {
+                    urlConnection = (HttpURLConnection) resourceUrl.openConnection();
+
+                    urlConnection.setConnectTimeout(15000);
+                    urlConnection.setReadTimeout(15000);
+                    urlConnection.setInstanceFollowRedirects(false);   // Make the logic below easier to detect redirections
+                    if (cached != null) {
+                        if (cached.eTag != null) {
+                            urlConnection.setRequestProperty("If-None-Match", cached.eTag);
+                        }
+                        if (cached.lastModified != null) {
+                            urlConnection.setRequestProperty("If-Modified-Since", cached.lastModified);
+                        }
+                    }
+
+                    final int responseCode = urlConnection.getResponseCode();
+                    switch (responseCode) {
+                        case HttpURLConnection.HTTP_MOVED_PERM:
+                        case HttpURLConnection.HTTP_MOVED_TEMP:
+                        case HttpURLConnection.HTTP_SEE_OTHER:
+                        case HTTP_TEMPORARY_REDIRECT:
+                        case HTTP_PERMANENT_REDIRECT: {
+                            // The location is a URL already, it must not be decoded
+                            String location = urlConnection.getHeaderField("Location");
+                            if (location == null) {
+                                throw new IOException("Redirect without location");
+                            }
+                            discard(urlConnection.getInputStream());
+                            data = new URL(resourceUrl, location).toExternalForm();  // Deal with relative URLs
+                            continue;
+                        }
+
+                        case HttpURLConnection.HTTP_NOT_MODIFIED:
+                            if (cached == null) {
+                                throw new IOException("Not modified, but nothing to revalidate");
+                            }
+                            discard(urlConnection.getInputStream());
+                            return new FetchResult(null, cached.notModified(
+                                    urlConnection.getHeaderField("ETag"),
+                                    urlConnection.getHeaderField("Last-Modified"),
+                                    System.currentTimeMillis()));
+                    }
+
+                    final byte[] bytes;
+                    try (InputStream in = urlConnection.getInputStream()) {
+                        bytes = Util.toByteArray(in);
+                    }
+                    return new FetchResult(bytes, new CacheValidators(requestUrl,
+                            urlConnection.getHeaderField("ETag"),
+                            urlConnection.getHeaderField("Last-Modified"),
+                            System.currentTimeMillis()));
+                } catch (final IOException e) {
+                    // Read the error body, so the connection can be reused
+                    if (urlConnection != null) {
+                        discard(urlConnection.getErrorStream());
+                    }
+                    throw e;
+                } finally {
+                    hostConnections.release();
                 }
-
-                break;
             }
-
-            in = urlConnection.getInputStream();
-            bytes = Util.toByteArray(in);
         } catch (final IOException e) {
             Log.e(TAG, "Error in downloadUrlToStream - " + data + e);
-        } finally {
-            if (urlConnection != null) {
-                urlConnection.disconnect();
-            }
-            try {
-                if (in != null) {
-                    in.close();
-                }
-            } catch (final IOException e) {
-                Log.e(TAG, "Closing input stream failed");
+        } catch (final InterruptedException e) {
+            Log.w(TAG, "Interrupted waiting for a connection to " + data);
+            Thread.currentThread().interrupt();
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The permits to send requests to the host of the URL
+     */
+    private Semaphore getHostConnections(URL url) {
+        final String host = url.getHost() + ':' + url.getPort();
+        synchronized (mHostConnections) {
+            Semaphore semaphore = mHostConnections.get(host);
+            if (semaphore == null) {
+                semaphore = new Semaphore(MAX_CONNECTIONS_PER_HOST, true);
+                mHostConnections.put(host, semaphore);
             }
+            return semaphore;
         }
+    }
 
-        return bytes;
+    /**
+     * Read a response body to the end and close it, so the connection can be reused.
+     */
+    private static void discard(@Nullable InputStream in) {
+        if (in == null) {
+            return;
+        }
+        try (InputStream stream = in) {
+            final byte[] buffer = new byte[4096];
+            //noinspection StatementWithEmptyBody
+            while (stream.read(buffer) != -1) {
+            }
+        } catch (final IOException e) {
+            Log.e(TAG, "Closing input stream failed");
+        }
     }
 }
@@ -0,0 +1,113 @@
+package uk.org.ngo.squeezer.util;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The URL of an image, which remembers the cache keys computed for it.
+ * <p>
+ * Items keep the key of their artwork, and pass it to {@link ImageWorker} instead of the URL,
+ * so binding the same item again doesn't build the key of the memory cache again. The memory
+ * cache key of the size the image was last loaded at is kept, which is the size of every bind
+ * in a list.
+ * <p>
+ * Hardware bitmaps have their own memory cache keys, so views which read the pixels of the
+ * bitmap never get one.
+ * <p>
+ * Keys are equal if their URLs are equal. {@link #toString()} returns the URL, so a key may be
+ * used where the URL is expected.
+ */
+public final class ImageKey {
+    @NonNull
+    private final String url;
+
+    /** The memory cache key of the last requested size, see {@link #getMemoryKey(int, int)} */
+    private volatile MemoryKey memoryKey;
+
+    public ImageKey(@NonNull String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return Key of the image at the supplied size in the memory cache
+     */
+    @NonNull
+    String getMemoryKey(int width, int height) {
+        return getMemoryKey(width, height, false);
+    }
+
+    /**
+     * @return Key of the image at the supplied size in the memory cache, as a hardware bitmap if
+     *     hardware is true
+     */
+    @NonNull
+    String getMemoryKey(int width, int height, boolean hardware) {
+        MemoryKey key = memoryKey;
+        if (key == null || key.width != width || key.height != height || key.hardware != hardware) {
+            key = new MemoryKey(width, height, hardware, memoryKey(url, width, height, hardware));
+            memoryKey = key;
+        }
+        return key.key;
+    }
+
+    /**
+     * Generates a key for the memory cache. The key includes the target width and height,
+     * so that multiple copies of the image may exist in the cache at different sizes.
+     *
+     * @param data The identifier for the image (e.g., URL).
+     * @param width Target width for the bitmap.
+     * @param height Target height for the bitmap.
+     * @return Cache key to use.
+     */
+    @NonNull
+    static String memoryKey(@NonNull String data, int width, int height) {
+        return memoryKey(data, width, height, false);
+    }
+
+    /**
+     * @param hardware True for the key of a hardware bitmap
+     * @see #memoryKey(String, int, int)
+     */
+    @NonNull
+    static String memoryKey(@NonNull String data, int width, int height, boolean hardware) {
+        StringBuilder key = new StringBuilder(data.length() + 15)
+                .append(width).append(':')
+                .append(height).append(':');
+        if (hardware) {
+            key.append("hw:");
+        }
+        return key.append(data).toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return url.equals(((ImageKey) o).url);
+    }
+
+    @Override
+    public int hashCode() {
+        return url.hashCode();
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return url;
+    }
+
+    private static class MemoryKey {
+        final int width;
+        final int height;
+        final boolean hardware;
+        @NonNull
+        final String key;
+
+        MemoryKey(int width, int height, boolean hardware, @NonNull String key) {
+            this.width = width;
+            this.height = height;
+            this.hardware = hardware;
+            this.key = key;
+        }
+    }
+}
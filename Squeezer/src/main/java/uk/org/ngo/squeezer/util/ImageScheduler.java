@@ -0,0 +1,162 @@
+package uk.org.ngo.squeezer.util;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the background work of loading images.
+ * <p>
+ * Downloads and decodes run in separate thread pools, so slow downloads don't hold up images
+ * which are in the disk cache. Each pool runs the most recently submitted job first, as that is
+ * the job for the view the user is looking at now, and a job is dropped when it is taken from the
+ * queue if it is no longer wanted, e.g. its view was scrolled out of sight.
+ * <p>
+ * Jobs of high priority images, such as the artwork of the song now playing, run in a separate
+ * lane which is never queued behind list artwork, and which is not paused.
+ */
+class ImageScheduler {
+    private static final int NETWORK_THREADS = 4;
+    private static final int DECODE_THREADS = 2;
+    private static final int PRIORITY_THREADS = 1;
+    private static final long KEEP_ALIVE_SECONDS = 10;
+
+    private final ThreadPoolExecutor mNetworkExecutor;
+    private final ThreadPoolExecutor mDecodeExecutor;
+    private final ThreadPoolExecutor mPriorityExecutor;
+
+    private final AtomicLong mSequence = new AtomicLong();
+    private final AtomicInteger mDroppedCount = new AtomicInteger();
+
+    private final Object mPauseLock = new Object();
+    private boolean mPaused;
+
+    ImageScheduler() {
+        this(NETWORK_THREADS, DECODE_THREADS);
+    }
+
+    ImageScheduler(int networkThreads, int decodeThreads) {
+        mNetworkExecutor = newExecutor("network", networkThreads);
+        mDecodeExecutor = newExecutor("decode", decodeThreads);
+        mPriorityExecutor = newExecutor("priority", PRIORITY_THREADS);
+    }
+
+    /** Queue a job which fetches an image from the network. */
+    void download(Job job) {
+        execute(job.mHighPriority ? mPriorityExecutor : mNetworkExecutor, job);
+    }
+
+    /** Queue a job which reads an image from the disk cache, or decodes it. */
+    void decode(Job job) {
+        execute(job.mHighPriority ? mPriorityExecutor : mDecodeExecutor, job);
+    }
+
+    private void execute(ThreadPoolExecutor executor, Job job) {
+        job.mScheduler = this;
+        job.mSequence = mSequence.incrementAndGet();
+        executor.execute(job);
+    }
+
+    /**
+     * While paused, jobs which are not high priority wait before they start. Jobs which are no
+     * longer wanted when the pause ends are dropped.
+     */
+    void setPaused(boolean paused) {
+        synchronized (mPauseLock) {
+            mPaused = paused;
+            if (!mPaused) {
+                mPauseLock.notifyAll();
+            }
+        }
+    }
+
+    /** @return Number of jobs dropped because they were no longer wanted */
+    int getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    private void waitWhilePaused(Job job) {
+        synchronized (mPauseLock) {
+            while (mPaused && job.isWanted()) {
+                try {
+                    mPauseLock.wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, int threads) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new PriorityBlockingQueue<>(),
+                new ImageThreadFactory(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class ImageThreadFactory implements ThreadFactory {
+        private final AtomicInteger mCount = new AtomicInteger();
+        private final String mName;
+
+        ImageThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, "ImageScheduler " + mName + " #" + mCount.incrementAndGet());
+            // Maps to THREAD_PRIORITY_BACKGROUND on Android
+            thread.setPriority(Thread.NORM_PRIORITY - 2);
+            return thread;
+        }
+    }
+
+    /**
+     * A unit of work for the scheduler. Jobs submitted later run first.
+     */
+    abstract static class Job implements Runnable, Comparable<Job> {
+        private final boolean mHighPriority;
+        private ImageScheduler mScheduler;
+        private long mSequence;
+
+        /**
+         * @param highPriority Whether to run in the high priority lane
+         */
+        Job(boolean highPriority) {
+            mHighPriority = highPriority;
+        }
+
+        /** @return Whether the job should still run. Called from a worker thread. */
+        protected abstract boolean isWanted();
+
+        /** Does the work of the job in a worker thread. */
+        protected abstract void work();
+
+        /** Called in a worker thread instead of {@link #work()}, if the job is not wanted. */
+        protected abstract void onDropped();
+
+        @Override
+        public final void run() {
+            if (!mHighPriority) {
+                mScheduler.waitWhilePaused(this);
+            }
+            if (isWanted()) {
+                work();
+            } else {
+                mScheduler.mDroppedCount.incrementAndGet();
+                onDropped();
+            }
+        }
+
+        @Override
+        public int compareTo(Job other) {
+            return Long.compare(other.mSequence, mSequence);
+        }
+    }
+}
@@ -29,9 +29,11 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
+import android.os.Build;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
@@ -40,15 +42,24 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.content.res.ResourcesCompat;
 
-import android.text.TextUtils;
 import android.util.Log;
+import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.ImageView;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.ref.WeakReference;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import uk.org.ngo.squeezer.BuildConfig;
 import uk.org.ngo.squeezer.Util;
@@ -72,11 +83,34 @@ public abstract class ImageWorker {
 
     private boolean mExitTasksEarly = false;
 
-    protected boolean mPauseWork = false;
+    protected final Resources mResources;
 
-    private final Object mPauseWorkLock = new Object();
+    /** Runs the background work of the tasks. */
+    private final ImageScheduler mScheduler = new ImageScheduler();
 
-    protected final Resources mResources;
+    /** Delivers the results of the tasks on the main thread. */
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    /** Tasks loading a bitmap, by memory cache key. Access is synchronized on the map. */
+    private final Map<String, BitmapWorkerTask> mLoadingTasks = new HashMap<>();
+
+    /** Downloads in progress, by URL, so tasks loading the same image share one download. */
+    private final SingleFlight<String, byte[]> mDownloads = new SingleFlight<>();
+
+    /** How long an entry of the disk cache is used before checking with the server it is current. */
+    private static final long REVALIDATE_AFTER = TimeUnit.DAYS.toMillis(1);
+
+    /** Disk cache keys of the entries being revalidated. Access is synchronized on the set. */
+    private final Set<String> mRevalidations = new HashSet<>();
+
+    /** Number of sizes kept in {@link #mPriorityImageSizes}. */
+    private static final int MAX_PRIORITY_IMAGE_SIZES = 2;
+
+    /**
+     * Sizes (width, height) at which priority images were loaded recently, most recent first.
+     * Access is synchronized on the list.
+     */
+    private final List<int[]> mPriorityImageSizes = new ArrayList<>();
 
     @IntDef({MESSAGE_CLEAR, MESSAGE_INIT_DISK_CACHE, MESSAGE_FLUSH, MESSAGE_CLOSE,
             MESSAGE_CLEAR_MEMORY_CACHE})
@@ -109,14 +143,27 @@ public abstract class ImageWorker {
      * ImageWorker#processBitmap(BitmapWorkerTaskParams)} to define the processing logic). A memory and disk cache
      * will be used if an {@link ImageCache} has been set using {@link
      * ImageWorker#setImageCache(ImageCache)}. If the image is found in the memory cache, it is set
-     * immediately, otherwise an {@link AsyncTask} will be created to asynchronously load the
-     * bitmap.
+     * immediately, otherwise a task will be created to asynchronously load the bitmap.
      *
      * @param data The URL of the image to download
      * @param imageView The ImageView to bind the downloaded image to
      * @param callback Will be called once an image is set on the view.
      */
     public void loadImage(final Object data, final ImageView imageView, LoadImageCallback callback) {
+        loadImage(data, imageView, callback, false);
+    }
+
+    /**
+     * Like {@link #loadImage(Object, ImageView)}, but the image is loaded in a separate lane
+     * ahead of list artwork, and is not paused while lists scroll. Use this for artwork which must
+     * appear promptly, like the song now playing.
+     */
+    public void loadPriorityImage(final Object data, final ImageView imageView) {
+        loadImage(data, imageView, null, true);
+    }
+
+    private void loadImage(final Object data, final ImageView imageView, LoadImageCallback callback,
+                           boolean highPriority) {
         if (data == null) {
             return;
         }
@@ -141,7 +188,7 @@ public abstract class ImageWorker {
                     imageView.getViewTreeObserver().removeOnPreDrawListener(this);
                     // If the imageView is still assigned to the URL then we can load in to it.
                     if (data.equals(imageView.getTag())) {
-                        loadImage(data, imageView, callback);
+                        loadImage(data, imageView, callback, highPriority);
                     }
                     return true;
                 }
@@ -149,7 +196,7 @@ public abstract class ImageWorker {
             return;
         }
 
-        loadImage(data, imageView, width, height, callback);
+        loadImage(data, imageView, width, height, callback, highPriority);
     }
 
     /**
@@ -169,33 +216,78 @@ public abstract class ImageWorker {
      * @param callback Will be called once an image is set on the view.
      */
     public void loadImage(final Object data, final ImageView imageView, int width, int height, LoadImageCallback callback) {
+        loadImage(data, imageView, width, height, callback, false);
+    }
+
+    private void loadImage(final Object data, final ImageView imageView, int width, int height,
+                           LoadImageCallback callback, boolean highPriority) {
         Bitmap bitmap = null;
-        String memCacheKey = hashKeyForMemory(String.valueOf(data), width, height);
+        // Priority images may be decoded as hardware bitmaps, which must not be shared with
+        // views that read the pixels. A software bitmap of the same size does for them too.
+        final boolean hardware = highPriority && mImageCache != null
+                && mImageCache.getCacheParams().priorityDecodePolicy == ImageCache.DecodePolicy.HARDWARE;
+        String memCacheKey = hashKeyForMemory(data, width, height, hardware);
 
         if (mImageCache != null) {
-            bitmap = mImageCache.getBitmapFromMemCache(memCacheKey);
+            bitmap = mImageCache.getBitmapFromMemCache(memCacheKey, imageView);
+            if (bitmap == null && hardware) {
+                bitmap = mImageCache.getBitmapFromMemCache(hashKeyForMemory(data, width, height, false), imageView);
+            }
         }
 
         if (bitmap != null) {
             // Bitmap found in memory cache
             if (BuildConfig.DEBUG) {
-                addDebugSwatch(new Canvas(bitmap), mCacheDebugColorMemory);
+                imageView.setImageDrawable(new CacheDebugDrawable(mResources, bitmap, mCacheDebugColorMemory));
+            } else {
+                imageView.setImageBitmap(bitmap);
             }
-            imageView.setImageBitmap(bitmap);
             if (callback != null) {
                 callback.onDone();
             }
         } else if (cancelPotentialWork(data, imageView)) {
-            final ImageViewBitmapWorkerTask task = new ImageViewBitmapWorkerTask(imageView, callback);
+            final ImageViewBitmapWorkerTask task = new ImageViewBitmapWorkerTask(imageView, callback, highPriority);
             final AsyncDrawable asyncDrawable =
                     new AsyncDrawable(mResources, mLoadingBitmap, task);
             imageView.setImageDrawable(asyncDrawable);
+            if (mImageCache != null) {
+                // The view no longer shows the previous bitmap, so it may be reused
+                mImageCache.setBitmapUser(imageView, null);
+            }
+
+            startTask(task, new BitmapWorkerTaskParams(width, height, data, memCacheKey));
+        }
 
-            // NOTE: This uses a custom version of AsyncTask that has been pulled from the
-            // framework and slightly modified. Refer to the docs at the top of the class
-            // for more info on what was changed.
-            task.executeOnExecutor(AsyncTask.DUAL_THREAD_EXECUTOR,
-                    new BitmapWorkerTaskParams(width, height, data, memCacheKey));
+        if (highPriority) {
+            addPriorityImageSize(width, height);
+        }
+    }
+
+    private void addPriorityImageSize(int width, int height) {
+        synchronized (mPriorityImageSizes) {
+            for (int i = 0; i < mPriorityImageSizes.size(); i++) {
+                int[] size = mPriorityImageSizes.get(i);
+                if (size[0] == width && size[1] == height) {
+                    mPriorityImageSizes.remove(i);
+                    break;
+                }
+            }
+            mPriorityImageSizes.add(0, new int[]{width, height});
+            if (mPriorityImageSizes.size() > MAX_PRIORITY_IMAGE_SIZES) {
+                mPriorityImageSizes.remove(MAX_PRIORITY_IMAGE_SIZES);
+            }
+        }
+    }
+
+    /**
+     * @return The sizes (width, height) at which images were recently loaded with
+     *     {@link #loadPriorityImage(Object, ImageView)}, most recent first. Prefetching images at
+     *     these sizes puts them in the memory cache for the views which show them.
+     */
+    @NonNull
+    public List<int[]> getPriorityImageSizes() {
+        synchronized (mPriorityImageSizes) {
+            return new ArrayList<>(mPriorityImageSizes);
         }
     }
 
@@ -226,6 +318,9 @@ public abstract class ImageWorker {
     /**
      * Like {@link #loadImage(Object, ImageView, int, int, LoadImageCallback)} but calls the provided callback after
      * the image has been loaded instead of saving it in to an imageview.
+     * <p>
+     * This is used for the artwork of the media session and the notification, so the image is
+     * loaded in the high priority lane.
      *
      * @param data The URL of the image to download
      * @param width Resize the image to this width (and save it in the memory cache as such)
@@ -234,28 +329,130 @@ public abstract class ImageWorker {
      */
     public void loadImage(final Object data, int width, int height, ImageWorkerCallback callback) {
         Bitmap bitmap = null;
-        String memCacheKey = hashKeyForMemory(String.valueOf(data), width, height);
+        String memCacheKey = hashKeyForMemory(data, width, height);
         if (mImageCache != null) {
-            bitmap = mImageCache.getBitmapFromMemCache(memCacheKey);
+            bitmap = mImageCache.getBitmapFromMemCache(memCacheKey, callback);
+            if (bitmap != null) {
+                mImageCache.keepBitmap(bitmap);
+            }
         }
 
         if (bitmap != null) {
             // Bitmap found in memory cache
-            if (BuildConfig.DEBUG) {
-                addDebugSwatch(new Canvas(bitmap), mCacheDebugColorMemory);
-            }
-            callback.process(data, bitmap);
+            callback.process(data, toSoftwareBitmap(bitmap));
         } else {
             final CallbackBitmapWorkerTask task = new CallbackBitmapWorkerTask(callback);
 
-            task.executeOnExecutor(AsyncTask.DUAL_THREAD_EXECUTOR,
-                    new BitmapWorkerTaskParams(width, height, data, memCacheKey));
+            startTask(task, new BitmapWorkerTaskParams(width, height, data, memCacheKey));
+        }
+    }
+
+    /**
+     * Interface for callbacks passed to {@link #prefetchImage(Object, int, int, PrefetchCallback)}
+     */
+    public interface PrefetchCallback {
+        /**
+         * Called on the main thread when the image has been prefetched, or failed to load.
+         *
+         * @param loaded Whether the image was loaded
+         * @param downloadedBytes Number of bytes downloaded to load it, 0 if it was cached
+         */
+        void onPrefetched(boolean loaded, long downloadedBytes);
+    }
+
+    /**
+     * Load an image into the disk and memory caches ahead of time, so it shows at once when it is
+     * loaded at the same size later.
+     * <p>
+     * The image is loaded in the normal lane, so it doesn't hold up the images which are shown,
+     * and is paused while lists scroll.
+     *
+     * @param data The URL of the image to download
+     * @param width Resize the image to this width (and save it in the memory cache as such)
+     * @param height Resize the image to this height (and save it in the memory cache as such)
+     * @param callback The callback
+     */
+    public void prefetchImage(final Object data, int width, int height, PrefetchCallback callback) {
+        String memCacheKey = hashKeyForMemory(data, width, height);
+        if (mImageCache != null && mImageCache.getBitmapFromMemCache(memCacheKey) != null) {
+            callback.onPrefetched(true, 0);
+            return;
+        }
+
+        startTask(new PrefetchBitmapWorkerTask(callback), new BitmapWorkerTaskParams(width, height, data, memCacheKey));
+    }
+
+    /**
+     * Executes the task, unless another task is already loading the same bitmap. In that case
+     * the task waits for the bitmap of the other task, without using a thread, and it may be
+     * cancelled independently of the other task.
+     */
+    private void startTask(BitmapWorkerTask task, BitmapWorkerTaskParams params) {
+        task.data = params.data;
+        task.params = params;
+        synchronized (mLoadingTasks) {
+            BitmapWorkerTask loadingTask = mLoadingTasks.get(params.memCacheKey);
+            if (loadingTask != null) {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "startTask - waiting for task in progress for " + params.data);
+                }
+                loadingTask.followers.add(task);
+                return;
+            }
+            mLoadingTasks.put(params.memCacheKey, task);
+        }
+
+        task.execute();
+    }
+
+    /**
+     * Called on the main thread when an executed task has finished, to pass its bitmap on to the
+     * tasks waiting for it. If the task was cancelled before it loaded the bitmap, the first of
+     * the waiting tasks which is not cancelled is executed instead, and the others wait for it
+     * (or for another task which has started loading the same bitmap since).
+     */
+    private void onTaskFinished(BitmapWorkerTask task, Bitmap bitmap) {
+        List<BitmapWorkerTask> followers = task.followers;
+        BitmapWorkerTask nextTask = null;
+        synchronized (mLoadingTasks) {
+            String memCacheKey = task.params.memCacheKey;
+            BitmapWorkerTask loadingTask = mLoadingTasks.get(memCacheKey);
+            if (loadingTask == task) {
+                mLoadingTasks.remove(memCacheKey);
+                loadingTask = null;
+            }
+            if (bitmap == null && task.isCancelled()) {
+                for (BitmapWorkerTask follower : followers) {
+                    if (follower.isCancelled()) {
+                        continue;
+                    }
+                    if (loadingTask == null) {
+                        loadingTask = nextTask = follower;
+                        mLoadingTasks.put(memCacheKey, nextTask);
+                    } else {
+                        loadingTask.followers.add(follower);
+                    }
+                }
+                followers = new ArrayList<>();
+            }
+        }
+
+        if (nextTask != null) {
+            nextTask.execute();
+        }
+        for (BitmapWorkerTask follower : followers) {
+            if (!follower.isCancelled()) {
+                follower.debugColor = task.debugColor;
+                follower.onBitmapLoaded(bitmap);
+            }
         }
     }
 
     /**
      * Generates a hash key for the memory cache. The key includes the target width and height,
      * so that multiple copies of the image may exist in the cache at different sizes.
+     * <p>
+     * The key of an {@link ImageKey} is only built when it is requested at a different size.
      *
      * @param data The identifier for the image (e.g., URL).
      * @param width Target width for the bitmap.
@@ -263,8 +460,20 @@ public abstract class ImageWorker {
      * @return Cache key to use.
      */
     @NonNull
-    private static String hashKeyForMemory(@NonNull String data, int width, int height) {
-        return TextUtils.join(":", Arrays.asList(width, height, data));
+    private static String hashKeyForMemory(@Nullable Object data, int width, int height) {
+        return hashKeyForMemory(data, width, height, false);
+    }
+
+    /**
+     * @param hardware True for the key of a hardware bitmap, see {@link ImageKey}
+     * @see #hashKeyForMemory(Object, int, int)
+     */
+    @NonNull
+    private static String hashKeyForMemory(@Nullable Object data, int width, int height, boolean hardware) {
+        if (data instanceof ImageKey) {
+            return ((ImageKey) data).getMemoryKey(width, height, hardware);
+        }
+        return ImageKey.memoryKey(String.valueOf(data), width, height, hardware);
     }
 
     /**
@@ -286,31 +495,61 @@ public abstract class ImageWorker {
     }
 
     /**
-     * Adds a debug swatch to a canvas. The marker is a triangle pointing north-west
-     * on the top left corner, the edges are 25% of the canvas' width and height.
-     *
-     * @param canvas The canvas to draw on.
-     * @param color The colour to use for the swatch.
+     * @return The bitmap, or a software copy of it if it is a hardware bitmap. Callbacks may
+     *     draw on the bitmap, or pass it to other processes.
      */
-    public static void addDebugSwatch(Canvas canvas, int color) {
-        float width = canvas.getWidth();
-        float height = canvas.getHeight();
+    private static Bitmap toSoftwareBitmap(@Nullable Bitmap bitmap) {
+        if (bitmap != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O
+                && bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            return bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        }
+        return bitmap;
+    }
 
-        Path path = new Path();
-        path.lineTo(width / 4, 0);
-        path.lineTo(0, height / 4);
-        path.lineTo(0, 0);
+    /**
+     * Shows a bitmap with a debug swatch, which tells where the bitmap was loaded from. The
+     * swatch is a triangle pointing north-west on the top left corner, the edges are 25% of the
+     * width and height.
+     * <p>
+     * The swatch is drawn over the bitmap, not into it, so bitmaps need not be mutable and
+     * bitmaps in the cache don't show the swatch of an earlier load.
+     */
+    private static class CacheDebugDrawable extends BitmapDrawable {
+        private final int color;
+        private final Path path = new Path();
 
-        // Draw the swatch.
-        mCacheDebugPaint.setColor(color);
-        mCacheDebugPaint.setStyle(Paint.Style.FILL);
-        canvas.drawPath(path, mCacheDebugPaint);
+        CacheDebugDrawable(Resources resources, Bitmap bitmap, int color) {
+            super(resources, bitmap);
+            this.color = color;
+        }
+
+        @Override
+        protected void onBoundsChange(Rect bounds) {
+            super.onBoundsChange(bounds);
+            path.reset();
+            path.moveTo(bounds.left, bounds.top);
+            path.lineTo(bounds.left + bounds.width() / 4f, bounds.top);
+            path.lineTo(bounds.left, bounds.top + bounds.height() / 4f);
+            path.close();
+        }
 
-        // Stroke the swatch with a white hairline.
-        mCacheDebugPaint.setColor(Color.WHITE);
-        mCacheDebugPaint.setStyle(Paint.Style.STROKE);
-        mCacheDebugPaint.setStrokeWidth(0);
-        canvas.drawPath(path, mCacheDebugPaint);
+        @Override
+        public void draw(@NonNull Canvas canvas) {
+            super.draw(canvas);
+
+            // Draw the swatch.
+            mCacheDebugPaint.setColor(color);
+            mCacheDebugPaint.setAlpha(getAlpha());
+            mCacheDebugPaint.setStyle(Paint.Style.FILL);
+            canvas.drawPath(path, mCacheDebugPaint);
+
+            // Stroke the swatch with a white hairline.
+            mCacheDebugPaint.setColor(Color.WHITE);
+            mCacheDebugPaint.setAlpha(getAlpha());
+            mCacheDebugPaint.setStyle(Paint.Style.STROKE);
+            mCacheDebugPaint.setStrokeWidth(0);
+            canvas.drawPath(path, mCacheDebugPaint);
+        }
     }
 
     /**
@@ -375,6 +614,157 @@ public abstract class ImageWorker {
      */
     protected abstract byte[] processBitmap(BitmapWorkerTaskParams params);
 
+    /**
+     * Subclasses may override this if the source of the images can scale them, to fetch a
+     * thumbnail instead of the original when the image is shown at a small size.
+     *
+     * @param data The identifier of the image, as provided by {@link ImageWorker#loadImage(Object, ImageView)}
+     * @param size Size in pixels of the largest dimension of the thumbnail
+     *
+     * @return Identifier to pass to {@link #processBitmap(BitmapWorkerTaskParams)} to fetch the
+     * scaled image, or null if the image can't be scaled by the source.
+     */
+    @Nullable
+    protected String getResizedUrl(Object data, int size) {
+        return null;
+    }
+
+    /**
+     * Fetch an image, or check that a cached copy of it is still current. This will be executed
+     * in a network background thread.
+     * <p>
+     * The default implementation calls {@link #processBitmap(BitmapWorkerTaskParams)}, and
+     * can't revalidate. Subclasses which fetch from a server supporting conditional requests
+     * should override this.
+     *
+     * @param params The parameters to identify which image to fetch
+     * @param cached Validators of the cached copy to revalidate, or null to fetch the image
+     *
+     * @return The result, or null if fetching failed
+     */
+    @Nullable
+    FetchResult fetch(BitmapWorkerTaskParams params, @Nullable CacheValidators cached) {
+        if (cached != null) {
+            return null;
+        }
+        byte[] bytes = processBitmap(params);
+        return (bytes != null && bytes.length != 0 ? new FetchResult(bytes, null) : null);
+    }
+
+    /**
+     * Result of {@link #fetch(BitmapWorkerTaskParams, CacheValidators)}.
+     */
+    static class FetchResult {
+        /** Undecoded bytes of the image, or null if the cached copy is still current. */
+        @Nullable
+        final byte[] bytes;
+
+        /** Validators to store with the image, or null if it can't be revalidated. */
+        @Nullable
+        final CacheValidators validators;
+
+        FetchResult(@Nullable byte[] bytes, @Nullable CacheValidators validators) {
+            this.bytes = bytes;
+            this.validators = validators;
+        }
+    }
+
+    /**
+     * Something a bitmap can be decoded from, any number of times.
+     */
+    private interface BitmapSource {
+        /** Decode like the BitmapFactory.decode* methods do. */
+        @Nullable
+        Bitmap decode(BitmapFactory.Options options);
+    }
+
+    private static BitmapSource fromBytes(byte[] bytes) {
+        return options -> BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * Decode from an open file. Decoding doesn't move the position within the file, so the
+     * bounds and the bitmap are decoded from the same descriptor, without copying the file to
+     * the heap.
+     */
+    private static BitmapSource fromFileDescriptor(FileDescriptor fd) {
+        return options -> BitmapFactory.decodeFileDescriptor(fd, null, options);
+    }
+
+    /**
+     * Queue a check that an entry of the disk cache is still current, unless one is queued
+     * already. If the image has changed the entry is replaced. Images in the memory cache are
+     * not refreshed, so the new image shows once the old one has left the memory cache.
+     *
+     * @param dataString The identifier of the image
+     * @param diskKey Key of the entry in the disk cache, the identifier or the key of a thumbnail
+     * @param cached Validators of the entry
+     */
+    private void revalidate(final String dataString, final String diskKey, final CacheValidators cached) {
+        synchronized (mRevalidations) {
+            if (!mRevalidations.add(diskKey)) {
+                return;
+            }
+        }
+
+        mScheduler.download(new ImageScheduler.Job(false) {
+            @Override
+            protected boolean isWanted() {
+                return true;
+            }
+
+            @Override
+            protected void work() {
+                try {
+                    revalidateNow(dataString, diskKey, cached);
+                } finally {
+                    synchronized (mRevalidations) {
+                        mRevalidations.remove(diskKey);
+                    }
+                }
+            }
+
+            @Override
+            protected void onDropped() {
+            }
+        });
+    }
+
+    private void revalidateNow(String dataString, String diskKey, CacheValidators cached) {
+        FetchResult result = fetch(new BitmapWorkerTaskParams(0, 0, cached.url, diskKey), cached);
+        final ImageCache imageCache = mImageCache;
+        if (result == null || imageCache == null) {
+            return;
+        }
+
+        final boolean isOriginal = cached.url.equals(dataString);
+        if (result.bytes == null) {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "Not modified: " + cached.url);
+            }
+            if (result.validators != null) {
+                imageCache.updateValidatorsInDiskCache(diskKey, result.validators);
+                if (isOriginal && !diskKey.equals(dataString)) {
+                    imageCache.updateValidatorsInDiskCache(dataString, result.validators);
+                }
+            }
+            return;
+        }
+
+        if (BuildConfig.DEBUG) {
+            Log.d(TAG, "Modified: " + cached.url);
+        }
+        if (isOriginal) {
+            // Thumbnails created from the old original are recreated when they are next loaded
+            imageCache.addBytesToDiskCache(dataString, result.bytes, result.validators);
+            for (int size : Thumbnails.SIZES) {
+                imageCache.removeFromDiskCache(Thumbnails.getDiskKey(dataString, size));
+            }
+        } else {
+            imageCache.addBytesToDiskCache(diskKey, result.bytes, result.validators);
+        }
+    }
+
     /**
      * Cancels any pending work attached to the provided ImageView.
      *
@@ -383,7 +773,7 @@ public abstract class ImageWorker {
     public static void cancelWork(ImageView imageView) {
         final BitmapWorkerTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
         if (bitmapWorkerTask != null) {
-            bitmapWorkerTask.cancel(true);
+            bitmapWorkerTask.cancel();
             if (BuildConfig.DEBUG) {
                 final Object bitmapData = bitmapWorkerTask.data;
                 Log.d(TAG, "cancelWork - cancelled work for " + bitmapData);
@@ -399,10 +789,10 @@ public abstract class ImageWorker {
     public static boolean cancelPotentialWork(Object data, ImageView imageView) {
         final BitmapWorkerTask bitmapWorkerTask = getBitmapWorkerTask(imageView);
 
-        if (bitmapWorkerTask != null) {
+        if (bitmapWorkerTask != null && !bitmapWorkerTask.isCancelled()) {
             final Object bitmapData = bitmapWorkerTask.data;
             if (bitmapData == null || !bitmapData.equals(data)) {
-                bitmapWorkerTask.cancel(true);
+                bitmapWorkerTask.cancel();
                 if (BuildConfig.DEBUG) {
                     Log.d(TAG, "cancelPotentialWork - cancelled work for " + data);
                 }
@@ -466,95 +856,397 @@ public abstract class ImageWorker {
     }
 
     /**
-     * The actual AsyncTask that will asynchronously process the image.
+     * The task that will asynchronously process the image. The work runs in stages on the
+     * {@link ImageScheduler}: reading the disk cache, fetching from the network if the image is
+     * not in the disk cache, and decoding. The result is delivered on the main thread.
      */
-    private class BitmapWorkerTask extends AsyncTask<BitmapWorkerTaskParams, Void, Bitmap> {
+    private abstract class BitmapWorkerTask {
         protected static final String TAG = "BitmapWorkerTask";
         protected Object data;
+        protected BitmapWorkerTaskParams params;
+
+        /** Whether the work runs in the high priority lane of the scheduler. */
+        protected final boolean highPriority;
+
+        /** Number of bytes this task downloaded. */
+        protected volatile long downloadedBytes;
+
+        /** Colour of the debug swatch, which tells where the bitmap was loaded from. */
+        protected int debugColor = mCacheDebugColorDisk;
+
+        /** Size of the thumbnail to load, or 0 to load the original. See {@link Thumbnails}. */
+        private int thumbnailSize;
+
+        /** Tasks waiting for the bitmap of this task, see {@link #startTask}. */
+        final List<BitmapWorkerTask> followers = new ArrayList<>();
+
+        private volatile boolean cancelled;
+
+        /** Thread waiting for another task's download, interrupted if this task is cancelled. */
+        private Thread waitingThread;
+
+        BitmapWorkerTask(boolean highPriority) {
+            this.highPriority = highPriority;
+        }
+
+        /** Start the work in the background. */
+        void execute() {
+            if (BuildConfig.DEBUG) {
+                Log.d(TAG, "execute - starting work");
+            }
+            thumbnailSize = Thumbnails.getSize(params.width, params.height);
+            mScheduler.decode(new Stage(this::loadFromDiskCache));
+        }
 
         /**
-         * Background processing.
+         * Cancel the task. Its work stops at the next stage, and the result is not delivered to
+         * {@link #onBitmapLoaded(Bitmap)}.
          */
-        @Override
-        protected Bitmap doInBackground(BitmapWorkerTaskParams... params) {
-            if (BuildConfig.DEBUG) {
-                Log.d(TAG, "doInBackground - starting work");
+        void cancel() {
+            synchronized (this) {
+                cancelled = true;
+                if (waitingThread != null) {
+                    waitingThread.interrupt();
+                }
             }
+        }
 
-            boolean loadedFromNetwork = false;
+        boolean isCancelled() {
+            return cancelled;
+        }
 
-            data = params[0].data;
-            final String dataString = String.valueOf(data);
+        /**
+         * @return Whether the work should continue. Called from the scheduler's threads.
+         */
+        protected boolean isWanted() {
+            return !isCancelled() && !shouldCancel();
+        }
+
+        /**
+         * First stage: If the image cache is available, try and decode the bitmap from the
+         * disk cache. If the image is shown as a thumbnail which is not in the disk cache yet,
+         * but the original is, create the thumbnail from the original. If neither is there
+         * queue the download.
+         * <p>
+         * Entries are decoded straight from their file, without reading them into memory first.
+         */
+        private void loadFromDiskCache() {
+            final ImageCache imageCache = mImageCache;
+            if (imageCache != null) {
+                final String diskKey = getDiskKey();
+                if (decodeFromDiskCache(imageCache, diskKey)) {
+                    return;
+                }
+                if (thumbnailSize > 0) {
+                    final String dataString = String.valueOf(data);
+                    if (createThumbnailFromDiskCache(imageCache, dataString)) {
+                        if (decodeFromDiskCache(imageCache, diskKey)) {
+                            return;
+                        }
+                    } else if (decodeFromDiskCache(imageCache, dataString)) {
+                        return;
+                    }
+                }
+            }
+
+            mScheduler.download(new Stage(this::download));
+        }
+
+        /**
+         * Decode an entry of the disk cache, and if it hasn't been revalidated for a while,
+         * queue a revalidation.
+         *
+         * @return Whether the entry was found. If so the result has been delivered.
+         */
+        private boolean decodeFromDiskCache(ImageCache imageCache, String key) {
+            final FileInputStream in = imageCache.openFromDiskCache(key);
+            if (in == null) {
+                return false;
+            }
+            try {
+                final FileDescriptor fd;
+                try {
+                    fd = in.getFD();
+                } catch (IOException e) {
+                    Log.e(TAG, "decodeFromDiskCache - " + e);
+                    return false;
+                }
+
+                CacheValidators validators = imageCache.getValidatorsFromDiskCache(key);
+                if (validators != null && validators.needsRevalidation(System.currentTimeMillis(), REVALIDATE_AFTER)) {
+                    revalidate(String.valueOf(data), key, validators);
+                }
+
+                decode(fromFileDescriptor(fd), false);
+                return true;
+            } finally {
+                DiskLruCache.closeQuietly(in);
+            }
+        }
+
+        /**
+         * Create the thumbnail from the original in the disk cache, if it is there.
+         *
+         * @return Whether the thumbnail was added to the disk cache
+         */
+        private boolean createThumbnailFromDiskCache(ImageCache imageCache, String dataString) {
+            final FileInputStream in = imageCache.openFromDiskCache(dataString);
+            if (in == null) {
+                return false;
+            }
+            try {
+                return createThumbnail(fromFileDescriptor(in.getFD()));
+            } catch (IOException e) {
+                Log.e(TAG, "createThumbnailFromDiskCache - " + e);
+                return false;
+            } finally {
+                DiskLruCache.closeQuietly(in);
+            }
+        }
+
+        /**
+         * Second stage: Call the main process method (as implemented by a subclass), or if
+         * another task is already fetching the same data, wait for it instead. Then queue the
+         * decode.
+         */
+        private void download() {
+            final String diskKey = getDiskKey();
             byte[] bytes = null;
-            Bitmap scaledBitmap = null;
+            synchronized (this) {
+                waitingThread = Thread.currentThread();
+            }
+            try {
+                if (!isCancelled()) {
+                    bytes = mDownloads.get(diskKey, () -> {
+                        // This thread does the download for all waiting tasks, so it must not be
+                        // interrupted when this task is cancelled.
+                        synchronized (this) {
+                            waitingThread = null;
+                        }
+                        return fetchBytes(diskKey);
+                    });
+                }
+            } catch (InterruptedException e) {
+                // Cancelled while waiting for the other task
+            } finally {
+                synchronized (this) {
+                    waitingThread = null;
+                    // Clear an interrupt which arrived after the wait
+                    Thread.interrupted();
+                }
+            }
+
+            if (bytes != null && bytes.length != 0) {
+                final byte[] downloaded = bytes;
+                mScheduler.decode(new Stage(() -> decode(fromBytes(downloaded), true)));
+            } else {
+                deliver(null);
+            }
+        }
+
+        /**
+         * Fetch the bytes to decode and add them to the disk cache. The disk cache is checked
+         * first, in case another task has just fetched them.
+         * <p>
+         * For a thumbnail, the server is asked for a scaled image if it can scale it (see
+         * {@link #getResizedUrl(Object, int)}), otherwise the thumbnail is created from the
+         * original.
+         */
+        private byte[] fetchBytes(String diskKey) {
+            byte[] bytes = null;
+            if (mImageCache != null) {
+                bytes = mImageCache.getBytesFromDiskCache(diskKey);
+            }
+            if (bytes != null && bytes.length != 0) {
+                return bytes;
+            }
 
-            // Wait here if work is paused and the task is not cancelled
-            synchronized (mPauseWorkLock) {
-                while (mPauseWork && !isCancelled()) {
-                    try {
-                        mPauseWorkLock.wait();
-                    } catch (InterruptedException e) {
+            if (thumbnailSize > 0) {
+                String resizedUrl = getResizedUrl(data, thumbnailSize);
+                if (resizedUrl != null) {
+                    FetchResult result = fetch(new BitmapWorkerTaskParams(params.width, params.height,
+                            resizedUrl, params.memCacheKey), null);
+                    if (result != null && result.bytes != null && result.bytes.length != 0) {
+                        downloadedBytes += result.bytes.length;
+                        if (mImageCache != null) {
+                            mImageCache.addBytesToDiskCache(diskKey, result.bytes, result.validators);
+                        }
+                        return result.bytes;
                     }
                 }
             }
 
-            // If the image cache is available and this task has not been cancelled by another
-            // thread and there's nothing to indicate this task should cancel then try and fetch
-            // the bitmap bytes from the cache.
-            if (mImageCache != null && !isCancelled() && !shouldCancel()) {
+            final String dataString = String.valueOf(data);
+            if (thumbnailSize == 0) {
+                // The download of the original is already shared by its key, see download()
+                return fetchOriginal(dataString);
+            }
+
+            // Share the download of the original with tasks showing it at other sizes
+            try {
+                bytes = mDownloads.get(dataString, () -> fetchOriginal(dataString));
+            } catch (InterruptedException e) {
+                return null;
+            }
+            if (bytes != null && bytes.length != 0) {
+                // Cache the thumbnail for next time. The original is at hand, so decode that now.
+                createThumbnail(fromBytes(bytes));
+            }
+            return bytes;
+        }
+
+        /**
+         * Fetch the original with {@link #fetch(BitmapWorkerTaskParams, CacheValidators)} and
+         * add it to the disk cache, unless it is in the disk cache already.
+         */
+        private byte[] fetchOriginal(String dataString) {
+            byte[] bytes = null;
+            if (mImageCache != null) {
                 bytes = mImageCache.getBytesFromDiskCache(dataString);
             }
 
-            // If the bitmap was not found in the cache and this task has not been cancelled by
-            // another thread and there's nothing to indicate that this task should cancel, then
-            // call the main process method (as implemented by a subclass)
-            if ((bytes == null || bytes.length == 0) && !isCancelled() && !shouldCancel()) {
-                bytes = processBitmap(params[0]);
-                loadedFromNetwork = true;
+            if (bytes == null || bytes.length == 0) {
+                FetchResult result = fetch(params, null);
+                bytes = (result != null ? result.bytes : null);
+                if (bytes != null) {
+                    downloadedBytes += bytes.length;
+                }
 
                 // If the bitmap bytes were loaded then add them to the disk cache.
                 if (bytes != null && bytes.length != 0 && mImageCache != null) {
-                    mImageCache.addBytesToDiskCache(dataString, bytes);
+                    mImageCache.addBytesToDiskCache(dataString, bytes, result.validators);
                 }
             }
+            return bytes;
+        }
+
+        /**
+         * Scale the original down to the thumbnail size of this task, and add the thumbnail to
+         * the disk cache. The thumbnail is revalidated with the validators of the original.
+         *
+         * @return Whether the thumbnail was added. It is not if there is no disk cache, or if
+         *     the original is not larger than the thumbnail, so the original should be used.
+         */
+        private boolean createThumbnail(BitmapSource original) {
+            final ImageCache imageCache = mImageCache;
+            if (imageCache == null) {
+                return false;
+            }
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            original.decode(options);
+            if (options.outWidth <= 0 || options.outHeight <= 0
+                    || Math.max(options.outWidth, options.outHeight) <= thumbnailSize) {
+                return false;
+            }
+
+            options.inSampleSize = calculateInSampleSize(options, thumbnailSize, thumbnailSize);
+            options.inJustDecodeBounds = false;
+            final Bitmap decoded = original.decode(options);
+            if (decoded == null) {
+                return false;
+            }
+            Bitmap bitmap = decoded;
+            float scale = (float) thumbnailSize / Math.max(bitmap.getWidth(), bitmap.getHeight());
+            if (scale < 1) {
+                bitmap = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                        Math.max(1, Math.round(bitmap.getHeight() * scale)), true);
+            }
+
+            final CacheValidators validators = imageCache.getValidatorsFromDiskCache(String.valueOf(data));
+            imageCache.addBitmapToDiskCache(getDiskKey(), bitmap, validators);
+
+            // Only needed to create the thumbnail
+            bitmap.recycle();
+            if (decoded != bitmap) {
+                decoded.recycle();
+            }
+            return true;
+        }
+
+        /**
+         * @return Key in the disk cache of the bytes this task decodes: the thumbnail if the
+         *     image is shown as a thumbnail, otherwise the original
+         */
+        private String getDiskKey() {
+            final String dataString = String.valueOf(data);
+            return (thumbnailSize > 0 ? Thumbnails.getDiskKey(dataString, thumbnailSize) : dataString);
+        }
 
-            // Create a bitmap from the bytes, scaled to the appropriate size.
-            if (bytes != null && bytes.length != 0 && params[0].width > 0 && params[0].height > 0) {
+        /**
+         * Last stage: Create a bitmap from the source, scaled to the appropriate size, and
+         * deliver it.
+         */
+        private void decode(BitmapSource source, boolean loadedFromNetwork) {
+            Bitmap scaledBitmap = null;
+
+            if (params.width > 0 && params.height > 0) {
                 BitmapFactory.Options options = new BitmapFactory.Options();
                 options.inJustDecodeBounds = true;
-                BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+                source.decode(options);
 
                 options.inSampleSize = calculateInSampleSize(
-                        options, params[0].width, params[0].height);
+                        options, params.width, params.height);
 
                 options.inJustDecodeBounds = false;
-
-                // Create a mutable bitmap so it can be post processed.
-                options.inMutable = true;
-                scaledBitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+                setDecodePolicy(options);
+                scaledBitmap = (options.inMutable ? decodeReusingBitmap(source, options) : source.decode(options));
             }
 
             // If the bitmap was processed and the image cache is available, then add the processed
             // bitmap to the memory cache for future use. Note we don't check if the task was
             // cancelled here, if it was, and the thread is still running, we may as well add the
-            // processed bitmap to our cache as it might be used again in the future.
-            if (scaledBitmap != null && mImageCache != null) {
-                mImageCache.addBitmapToMemoryCache(params[0].memCacheKey, scaledBitmap);
+            // processed bitmap to our cache as it might be used again in the future. The bitmap
+            // is in use by this task until it is delivered.
+            final ImageCache imageCache = mImageCache;
+            if (scaledBitmap != null && imageCache != null) {
+                imageCache.setBitmapUser(this, scaledBitmap);
+                imageCache.addBitmapToMemoryCache(params.memCacheKey, scaledBitmap);
             }
 
             if (BuildConfig.DEBUG) {
-                Log.d(TAG, "doInBackground - finished work");
+                Log.d(TAG, "decode - finished work");
             }
 
-            if (BuildConfig.DEBUG && scaledBitmap != null) {
-                if (loadedFromNetwork) {
-                    addDebugSwatch(new Canvas(scaledBitmap), mCacheDebugColorNetwork);
-                } else {
-                    addDebugSwatch(new Canvas(scaledBitmap), mCacheDebugColorDisk);
-                }
+            debugColor = (loadedFromNetwork ? mCacheDebugColorNetwork : mCacheDebugColorDisk);
+            deliver(scaledBitmap);
+        }
 
+        /**
+         * @return How to decode the bitmap of this task
+         */
+        protected ImageCache.DecodePolicy getDecodePolicy(@NonNull ImageCache.ImageCacheParams cacheParams) {
+            return (highPriority ? cacheParams.priorityDecodePolicy : cacheParams.decodePolicy);
+        }
+
+        /**
+         * Set the config of the bitmap to decode, according to the {@link ImageCache.DecodePolicy}
+         * of this task.
+         *
+         * @param options Options with the out* fields populated by a decode with
+         *     inJustDecodeBounds==true
+         */
+        private void setDecodePolicy(BitmapFactory.Options options) {
+            final ImageCache imageCache = mImageCache;
+            final ImageCache.DecodePolicy policy = (imageCache != null
+                    ? getDecodePolicy(imageCache.getCacheParams()) : ImageCache.DecodePolicy.ARGB_8888);
+
+            if (policy == ImageCache.DecodePolicy.HARDWARE && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+                // Hardware bitmaps are immutable, so they are not decoded into or added to the
+                // bitmap pool
+                options.inPreferredConfig = Bitmap.Config.HARDWARE;
+                return;
+            }
+
+            // JPEG images have no alpha channel
+            if (policy != ImageCache.DecodePolicy.ARGB_8888 && "image/jpeg".equals(options.outMimeType)) {
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
             }
-            return scaledBitmap;
+
+            // Create a mutable bitmap so it can be reused when it is evicted from the memory cache.
+            options.inMutable = true;
         }
 
         /**
@@ -606,12 +1298,55 @@ public abstract class ImageWorker {
             return inSampleSize;
         }
 
-        @Override
-        protected void onCancelled(Bitmap bitmap) {
-            super.onCancelled(bitmap);
-            synchronized (mPauseWorkLock) {
-                mPauseWorkLock.notifyAll();
+        /**
+         * Decode into a bitmap from the bitmap pool if there is a suitable one, to avoid
+         * allocating a new pixel buffer.
+         */
+        private Bitmap decodeReusingBitmap(BitmapSource source, BitmapFactory.Options options) {
+            final ImageCache imageCache = mImageCache;
+            if (imageCache != null) {
+                options.inBitmap = imageCache.getReusableBitmap(options);
             }
+            if (options.inBitmap != null) {
+                try {
+                    return source.decode(options);
+                } catch (IllegalArgumentException e) {
+                    // The decoded image doesn't fit the pooled bitmap after all
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "decodeReusingBitmap - can't reuse bitmap: " + e);
+                    }
+                    options.inBitmap = null;
+                }
+            }
+            return source.decode(options);
+        }
+
+        /** Pass the result to the main thread. */
+        private void deliver(Bitmap bitmap) {
+            sMainHandler.post(() -> {
+                if (!isCancelled()) {
+                    onBitmapLoaded(bitmap);
+                }
+                onTaskFinished(this, bitmap);
+                final ImageCache imageCache = mImageCache;
+                if (bitmap != null && imageCache != null) {
+                    imageCache.setBitmapUser(this, null);
+                }
+            });
+        }
+
+        /**
+         * Called on the main thread with the loaded bitmap, unless the task was cancelled.
+         *
+         * @param bitmap The bitmap, null if it failed to load
+         */
+        protected abstract void onBitmapLoaded(Bitmap bitmap);
+
+        /**
+         * Called on the main thread when the scheduler dropped the work of this task, because it
+         * was no longer wanted.
+         */
+        protected void onDropped() {
         }
 
         /**
@@ -622,6 +1357,47 @@ public abstract class ImageWorker {
         protected boolean shouldCancel() {
             return mExitTasksEarly;
         }
+
+        /**
+         * A stage of the work of this task. If the task is no longer wanted when the stage is
+         * due to run, the task is cancelled and the tasks waiting for it are handed over.
+         */
+        private class Stage extends ImageScheduler.Job {
+            private final Runnable work;
+
+            Stage(Runnable work) {
+                super(highPriority);
+                this.work = work;
+            }
+
+            @Override
+            protected boolean isWanted() {
+                return BitmapWorkerTask.this.isWanted();
+            }
+
+            @Override
+            protected void work() {
+                try {
+                    work.run();
+                } catch (RuntimeException e) {
+                    // Finish the task, so tasks waiting for it are not stuck
+                    Log.e(TAG, "Error loading " + data, e);
+                    deliver(null);
+                }
+            }
+
+            @Override
+            protected void onDropped() {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "onDropped - dropped work for " + data);
+                }
+                sMainHandler.post(() -> {
+                    cancel();
+                    onTaskFinished(BitmapWorkerTask.this, null);
+                    BitmapWorkerTask.this.onDropped();
+                });
+            }
+        }
     }
 
     /**
@@ -632,8 +1408,9 @@ public abstract class ImageWorker {
         protected final WeakReference<ImageView> imageViewReference;
         private LoadImageCallback callback;
 
-        public ImageViewBitmapWorkerTask(ImageView imageView, LoadImageCallback callback) {
-            super();
+        public ImageViewBitmapWorkerTask(ImageView imageView, LoadImageCallback callback,
+                                         boolean highPriority) {
+            super(highPriority);
             imageViewReference = new WeakReference<>(imageView);
             this.callback = callback;
         }
@@ -642,7 +1419,7 @@ public abstract class ImageWorker {
          * Once the image is processed, associates it to the imageView
          */
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
+        protected void onBitmapLoaded(Bitmap bitmap) {
             // if cancel was called on this task or the "exit early" flag is set then we're done
             if (isCancelled() || mExitTasksEarly) {
                 bitmap = null;
@@ -653,7 +1430,10 @@ public abstract class ImageWorker {
                 if (BuildConfig.DEBUG) {
                     Log.d(TAG, "onPostExecute - setting bitmap");
                 }
-                setImageBitmap(imageView, bitmap, callback);
+                if (mImageCache != null) {
+                    mImageCache.setBitmapUser(imageView, bitmap);
+                }
+                setImageBitmap(imageView, bitmap, debugColor, callback);
             }
         }
 
@@ -661,6 +1441,49 @@ public abstract class ImageWorker {
             return super.shouldCancel() && getAttachedImageView() == null;
         }
 
+        /**
+         * @return Whether the ImageView is still bound to this task, and shown in a window. Views
+         *     of a list which were scrolled out of sight are detached from the window.
+         */
+        @Override
+        protected boolean isWanted() {
+            final ImageView imageView = getAttachedImageView();
+            return super.isWanted() && imageView != null && imageView.isAttachedToWindow();
+        }
+
+        /**
+         * If the ImageView is still bound to this task, load the image again when the view is
+         * shown again. A list may show a view again without binding it again.
+         */
+        @Override
+        protected void onDropped() {
+            final ImageView imageView = getAttachedImageView();
+            if (imageView == null || mExitTasksEarly) {
+                return;
+            }
+            if (imageView.isAttachedToWindow()) {
+                reload(imageView);
+                return;
+            }
+            imageView.addOnAttachStateChangeListener(new View.OnAttachStateChangeListener() {
+                @Override
+                public void onViewAttachedToWindow(View v) {
+                    imageView.removeOnAttachStateChangeListener(this);
+                    if (getAttachedImageView() == imageView) {
+                        reload(imageView);
+                    }
+                }
+
+                @Override
+                public void onViewDetachedFromWindow(View v) {
+                }
+            });
+        }
+
+        private void reload(ImageView imageView) {
+            loadImage(data, imageView, params.width, params.height, callback, highPriority);
+        }
+
         /**
          * Returns the ImageView associated with this task as long as the ImageView's task still
          * points to this task as well. Returns null otherwise.
@@ -688,18 +1511,28 @@ public abstract class ImageWorker {
         private ImageWorkerCallback mCallback;
 
         public CallbackBitmapWorkerTask(ImageWorkerCallback callback) {
+            super(true);
             mCallback = callback;
         }
 
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
-            Log.d(TAG, "callback: onPostExecute()");
+        protected void onBitmapLoaded(Bitmap bitmap) {
+            Log.d(TAG, "callback: onBitmapLoaded()");
             if (isCancelled() || shouldCancel()) {
                 bitmap = null;
             }
 
             Log.d(TAG, "onPostExecute - setting bitmap");
-            mCallback.process(data, bitmap);
+            if (bitmap != null && mImageCache != null) {
+                // The callback may keep the bitmap, so it must not be reused
+                mImageCache.keepBitmap(bitmap);
+            }
+            mCallback.process(data, toSoftwareBitmap(bitmap));
+        }
+
+        @Override
+        protected ImageCache.DecodePolicy getDecodePolicy(@NonNull ImageCache.ImageCacheParams cacheParams) {
+            return cacheParams.callbackDecodePolicy;
         }
 
         /**
@@ -711,6 +1544,33 @@ public abstract class ImageWorker {
         }
     }
 
+    /**
+     * Loads a bitmap into the caches only.
+     */
+    private class PrefetchBitmapWorkerTask extends BitmapWorkerTask {
+        private final PrefetchCallback mCallback;
+
+        PrefetchBitmapWorkerTask(PrefetchCallback callback) {
+            super(false);
+            mCallback = callback;
+        }
+
+        @Override
+        protected void onBitmapLoaded(Bitmap bitmap) {
+            mCallback.onPrefetched(bitmap != null, downloadedBytes);
+        }
+
+        @Override
+        protected boolean shouldCancel() {
+            return false;
+        }
+
+        @Override
+        protected void onDropped() {
+            mCallback.onPrefetched(false, downloadedBytes);
+        }
+    }
+
     /**
      * A custom Drawable that will be attached to the imageView while the work is in progress.
      * Contains a reference to the actual worker task, so that it can be stopped if a new binding is
@@ -737,11 +1597,15 @@ public abstract class ImageWorker {
      *
      * @param imageView
      * @param bitmap
+     * @param debugColor Colour of the debug swatch, shown in debug builds
      */
-    private void setImageBitmap(ImageView imageView, Bitmap bitmap, LoadImageCallback callback) {
+    private void setImageBitmap(ImageView imageView, Bitmap bitmap, int debugColor, LoadImageCallback callback) {
+        final BitmapDrawable bitmapDrawable = (BuildConfig.DEBUG
+                ? new CacheDebugDrawable(mResources, bitmap, debugColor)
+                : new BitmapDrawable(mResources, bitmap));
         if (mFadeInBitmap) {
             Drawable currentDrawable = imageView.getDrawable();
-            Drawable newDrawable = new BitmapDrawable(mResources, bitmap);
+            Drawable newDrawable = bitmapDrawable;
             LayerDrawable layerDrawable = new LayerDrawable(new Drawable[]{currentDrawable, newDrawable});
             imageView.setImageDrawable(layerDrawable);
 
@@ -764,20 +1628,19 @@ public abstract class ImageWorker {
             });
             newDrawableAnimator.start();
         } else {
-            imageView.setImageDrawable(new BitmapDrawable(mResources, bitmap));
+            imageView.setImageDrawable(bitmapDrawable);
             if (callback != null) {
                 callback.onDone();
             }
         }
     }
 
+    /**
+     * Pause or resume the work of loading images which are not high priority. Work which is no
+     * longer wanted when it is resumed is dropped, see {@link ImageScheduler}.
+     */
     public void setPauseWork(boolean pauseWork) {
-        synchronized (mPauseWorkLock) {
-            mPauseWork = pauseWork;
-            if (!mPauseWork) {
-                mPauseWorkLock.notifyAll();
-            }
-        }
+        mScheduler.setPaused(pauseWork);
     }
 
     protected class CacheAsyncTask extends AsyncTask<Object, Void, Void> {
@@ -19,6 +19,7 @@ package uk.org.ngo.squeezer.util;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reflection utility methods
@@ -27,6 +28,12 @@ import java.lang.reflect.TypeVariable;
  */
 public class Reflection {
 
+    /**
+     * Resolved type arguments, per base class or interface, per class. Classes are never unloaded
+     * in the app, so entries are never removed.
+     */
+    private static final ConcurrentHashMap<Class<?>, ConcurrentHashMap<Class<?>, Type[]>> resolvedTypes = new ConcurrentHashMap<>();
+
     /**
      * <p>Return the actual type parameter of the supplied class for the type variable at the
      * supplied position in the supplied base class or interface. <p>The method returns null if the
@@ -44,7 +51,7 @@ public class Reflection {
      */
     public static Class<?> getGenericClass(Class<?> currentClass,
             Class<?> base, int genericArgumentNumber) {
-        Type[] genericTypes = genericTypeResolver(currentClass, base);
+        Type[] genericTypes = resolve(currentClass, base);
         Type type = genericArgumentNumber < genericTypes.length
                 ? genericTypes[genericArgumentNumber] : null;
 
@@ -74,6 +81,32 @@ public class Reflection {
      */
     public static Type[] genericTypeResolver(Class<?> currentClass,
             Class<?> base) {
+        return resolve(currentClass, base).clone();
+    }
+
+    /**
+     * Like {@link #genericTypeResolver(Class, Class)}, but the types are only resolved the first
+     * time for each class and base, and the returned array is shared, so it must not be modified.
+     */
+    private static Type[] resolve(Class<?> currentClass, Class<?> base) {
+        ConcurrentHashMap<Class<?>, Type[]> resolvedForClass = resolvedTypes.get(currentClass);
+        if (resolvedForClass == null) {
+            resolvedForClass = new ConcurrentHashMap<>();
+            ConcurrentHashMap<Class<?>, Type[]> existing = resolvedTypes.putIfAbsent(currentClass, resolvedForClass);
+            if (existing != null) {
+                resolvedForClass = existing;
+            }
+        }
+        Type[] types = resolvedForClass.get(base);
+        if (types == null) {
+            types = resolveUncached(currentClass, base);
+            resolvedForClass.put(base, types);
+        }
+        return types;
+    }
+
+    /** Resolve the types without the cache. Package private for the benchmark in the tests. */
+    static Type[] resolveUncached(Class<?> currentClass, Class<?> base) {
         Type[] actualTypeArguments = null;
 
         while (currentClass != Object.class) {
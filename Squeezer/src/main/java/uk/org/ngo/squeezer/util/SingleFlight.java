@@ -0,0 +1,104 @@
+package uk.org.ngo.squeezer.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs a load once for all the threads which ask for the same key at the same time.
+ * <p>
+ * The first thread to ask for a key runs the load. Threads asking for the key while the load is
+ * in progress wait for it, and receive the same result. A waiting thread may be interrupted
+ * without affecting the load or the other waiting threads. Results are not kept, a key asked for
+ * after its load has finished is loaded again.
+ * <p>
+ * A load may ask for its own key again, f.e. through a shared fetch path. That nested load runs
+ * in place, as waiting for the outer load would never end.
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the results
+ */
+class SingleFlight<K, V> {
+    private final Map<K, Flight<V>> mFlights = new HashMap<>();
+
+    /**
+     * Run the supplied load, or wait for the load of the same key in progress in another thread.
+     *
+     * @param key Identifies the result
+     * @param loader Loads the result if no load of key is in progress, or if the load in progress
+     *     is run by the current thread
+     * @return The result of the load, which may be null
+     * @throws InterruptedException If the current thread was interrupted while waiting for
+     *     another thread's load
+     */
+    V get(K key, Supplier<V> loader) throws InterruptedException {
+        Flight<V> flight;
+        synchronized (mFlights) {
+            flight = mFlights.get(key);
+            if (flight == null) {
+                mFlights.put(key, new Flight<>(Thread.currentThread()));
+            }
+        }
+        if (flight != null && flight.owner == Thread.currentThread()) {
+            return loader.get();
+        }
+        return (flight != null ? flight.await() : run(key, loader));
+    }
+
+    private V run(K key, Supplier<V> loader) {
+        V result = null;
+        try {
+            result = loader.get();
+        } finally {
+            Flight<V> flight;
+            synchronized (mFlights) {
+                flight = mFlights.remove(key);
+            }
+            flight.complete(result);
+        }
+        return result;
+    }
+
+    /** @return Number of threads waiting for the load of the supplied key */
+    int getWaiterCount(K key) {
+        Flight<V> flight;
+        synchronized (mFlights) {
+            flight = mFlights.get(key);
+        }
+        return (flight != null ? flight.getWaiterCount() : 0);
+    }
+
+    private static class Flight<V> {
+        /** The thread which runs the load */
+        final Thread owner;
+        private boolean done;
+        private V result;
+        private int waiters;
+
+        Flight(Thread owner) {
+            this.owner = owner;
+        }
+
+        synchronized void complete(V result) {
+            this.result = result;
+            done = true;
+            notifyAll();
+        }
+
+        synchronized V await() throws InterruptedException {
+            waiters++;
+            try {
+                while (!done) {
+                    wait();
+                }
+                return result;
+            } finally {
+                waiters--;
+            }
+        }
+
+        synchronized int getWaiterCount() {
+            return waiters;
+        }
+    }
+}
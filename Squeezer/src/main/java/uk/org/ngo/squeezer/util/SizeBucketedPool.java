@@ -0,0 +1,162 @@
+package uk.org.ngo.squeezer.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A pool of objects for reuse, grouped in buckets by their size in bytes.
+ * <p>
+ * {@link #get(int)} returns an object from the smallest bucket which is large enough, but not
+ * wastefully large. When the pool exceeds its maximum size, the objects added first are removed.
+ * <p>
+ * Methods may be called from any thread.
+ *
+ * @param <T> Type of the pooled objects
+ */
+abstract class SizeBucketedPool<T> {
+    /** An object is only reused for a request of at least 1/MAX_WASTE_FACTOR of its size. */
+    private static final int MAX_WASTE_FACTOR = 2;
+
+    private final long maxSize;
+    private long size;
+
+    /** Pooled objects, by size. The first object of a bucket was added first. */
+    private final TreeMap<Integer, ArrayDeque<Item<T>>> buckets = new TreeMap<>();
+
+    /** Pooled objects, in the order they were added. */
+    private final ArrayDeque<Item<T>> items = new ArrayDeque<>();
+
+    private int requestCount;
+    private int hitCount;
+    private long reusedSize;
+
+    /**
+     * @param maxSize Maximum total size of the pooled objects in bytes
+     */
+    SizeBucketedPool(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /** @return Size of the object in bytes */
+    protected abstract int sizeOf(@NonNull T object);
+
+    /** @return Whether the object may be pooled, and is still fit for reuse */
+    protected boolean isReusable(@NonNull T object) {
+        return true;
+    }
+
+    /**
+     * Add an object to the pool. The caller must not use the object after this.
+     */
+    synchronized void put(@NonNull T object) {
+        if (!isReusable(object)) {
+            return;
+        }
+        Item<T> item = new Item<>(object, sizeOf(object));
+        if (item.size > maxSize) {
+            return;
+        }
+
+        ArrayDeque<Item<T>> bucket = buckets.get(item.size);
+        if (bucket == null) {
+            bucket = new ArrayDeque<>();
+            buckets.put(item.size, bucket);
+        }
+        bucket.addLast(item);
+        items.addLast(item);
+        size += item.size;
+
+        while (size > maxSize) {
+            remove(items.peekFirst());
+        }
+    }
+
+    /**
+     * Take an object of at least the supplied size from the pool.
+     *
+     * @param minSize Minimum size in bytes
+     * @return The object, or null if there is no suitable object in the pool
+     */
+    @Nullable
+    synchronized T get(int minSize) {
+        requestCount++;
+        Map.Entry<Integer, ArrayDeque<Item<T>>> entry = buckets.ceilingEntry(minSize);
+        while (entry != null && entry.getKey() / MAX_WASTE_FACTOR <= minSize) {
+            int bucketSize = entry.getKey();
+            Item<T> item;
+            while ((item = entry.getValue().peekFirst()) != null) {
+                remove(item);
+                if (isReusable(item.object)) {
+                    hitCount++;
+                    reusedSize += item.size;
+                    return item.object;
+                }
+            }
+            entry = buckets.higherEntry(bucketSize);
+        }
+        return null;
+    }
+
+    private void remove(Item<T> item) {
+        ArrayDeque<Item<T>> bucket = buckets.get(item.size);
+        bucket.removeFirstOccurrence(item);
+        if (bucket.isEmpty()) {
+            buckets.remove(item.size);
+        }
+        items.removeFirstOccurrence(item);
+        size -= item.size;
+    }
+
+    /** Remove all objects from the pool. */
+    synchronized void clear() {
+        buckets.clear();
+        items.clear();
+        size = 0;
+    }
+
+    /** @return Total size in bytes of the pooled objects */
+    synchronized long size() {
+        return size;
+    }
+
+    synchronized long maxSize() {
+        return maxSize;
+    }
+
+    /** @return Number of calls to {@link #get(int)} */
+    synchronized int requestCount() {
+        return requestCount;
+    }
+
+    /** @return Number of calls to {@link #get(int)} which returned an object */
+    synchronized int hitCount() {
+        return hitCount;
+    }
+
+    /** @return Total size in bytes of the objects returned by {@link #get(int)} */
+    synchronized long reusedSize() {
+        return reusedSize;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format("hits: %d of %d (%.1f%%), reused: %d bytes, size: %d of %d",
+                hitCount, requestCount, (requestCount > 0 ? 100f * hitCount / requestCount : 0f),
+                reusedSize, size, maxSize);
+    }
+
+    private static class Item<T> {
+        final T object;
+        final int size;
+
+        Item(T object, int size) {
+            this.object = object;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package uk.org.ngo.squeezer.util;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read/write locks for the entries of a cache, striped by the hash of the key, plus a barrier
+ * for operations on the whole cache.
+ * <p>
+ * Entries are read concurrently, and written concurrently with reads and writes of entries in
+ * other stripes. Holding the barrier excludes all readers and writers, e.g. while the cache is
+ * opened, cleared or closed.
+ * <p>
+ * All locks are reentrant. Unlock in a finally block, in the reverse order of locking.
+ */
+final class StripedLock {
+    private final ReentrantReadWriteLock barrier = new ReentrantReadWriteLock();
+    private final ReentrantReadWriteLock[] stripes;
+
+    /**
+     * @param stripeCount Number of stripes. More stripes means fewer writes to unrelated keys
+     *     block each other.
+     */
+    StripedLock(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("stripeCount <= 0");
+        }
+        stripes = new ReentrantReadWriteLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+    }
+
+    /** @return Index of the stripe which guards the key */
+    int stripeOf(String key) {
+        // Spread the bits of the hash code, as HashMap does
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % stripes.length;
+    }
+
+    /** Lock the entry of the key for reading. */
+    void lockRead(String key) {
+        barrier.readLock().lock();
+        stripes[stripeOf(key)].readLock().lock();
+    }
+
+    void unlockRead(String key) {
+        stripes[stripeOf(key)].readLock().unlock();
+        barrier.readLock().unlock();
+    }
+
+    /** Lock the entry of the key for writing. */
+    void lockWrite(String key) {
+        barrier.readLock().lock();
+        stripes[stripeOf(key)].writeLock().lock();
+    }
+
+    void unlockWrite(String key) {
+        stripes[stripeOf(key)].writeLock().unlock();
+        barrier.readLock().unlock();
+    }
+
+    /**
+     * Lock the whole cache. Waits for the readers and writers holding locks to finish.
+     */
+    void lockAll() {
+        barrier.writeLock().lock();
+    }
+
+    void unlockAll() {
+        barrier.writeLock().unlock();
+    }
+
+    /**
+     * Lock the cache against {@link #lockAll()}, without locking any entry. For operations on
+     * the whole cache which are safe alongside entry reads and writes.
+     */
+    void lockShared() {
+        barrier.readLock().lock();
+    }
+
+    void unlockShared() {
+        barrier.readLock().unlock();
+    }
+}
@@ -0,0 +1,74 @@
+package uk.org.ngo.squeezer.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sizes, disk cache keys and server URLs of the thumbnails of images.
+ * <p>
+ * Besides the original of an image, the disk cache holds thumbnails of a few sizes. An image
+ * shown at most as large as the largest thumbnail is loaded from the smallest thumbnail which is
+ * at least as large, so small images like list icons are read and decoded from small files.
+ */
+final class Thumbnails {
+    /** Sizes of the thumbnails in pixels, of their largest dimension. In ascending order. */
+    static final int[] SIZES = {128, 256, 512};
+
+    /** Cover art of the LMS library, e.g. /music/1a2b3c4d/cover or /music/123/cover.jpg */
+    private static final Pattern LMS_COVER = Pattern.compile("^(.*/music/[^/?]+/cover)(\\.(?:jpg|jpeg|png|gif))?$");
+
+    /** Remote images via the LMS image proxy, e.g. /imageproxy/https%3A%2F%2F.../image.png */
+    private static final Pattern LMS_IMAGE_PROXY = Pattern.compile("^(.*/imageproxy/[^?]+/image)(\\.(?:jpg|jpeg|png|gif))$");
+
+    private Thumbnails() {
+    }
+
+    /**
+     * @return Size of the thumbnail to load for an image shown at the supplied size, or 0 if the
+     *     original should be loaded
+     */
+    static int getSize(int width, int height) {
+        int size = Math.max(width, height);
+        for (int thumbnailSize : SIZES) {
+            if (size <= thumbnailSize) {
+                return thumbnailSize;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return Key of a thumbnail of the image in the disk cache
+     */
+    @NonNull
+    static String getDiskKey(@NonNull String url, int size) {
+        return url + "#thumbnail" + size;
+    }
+
+    /**
+     * Get the URL of the image scaled by the server, if the server can scale it.
+     * <p>
+     * LMS scales the images it serves when the image name has a suffix with the size, e.g.
+     * <code>/music/&lt;id&gt;/cover_256x256</code>.
+     *
+     * @param url URL of the image
+     * @param size Size of the scaled image
+     * @return The URL of the scaled image, or null if the server can't scale it
+     */
+    @Nullable
+    static String getResizedUrl(@NonNull String url, int size) {
+        String suffix = "_" + size + "x" + size;
+        Matcher matcher = LMS_COVER.matcher(url);
+        if (matcher.matches()) {
+            return matcher.group(1) + suffix + (matcher.group(2) != null ? matcher.group(2) : "");
+        }
+        matcher = LMS_IMAGE_PROXY.matcher(url);
+        if (matcher.matches()) {
+            return matcher.group(1) + suffix + matcher.group(2);
+        }
+        return null;
+    }
+}
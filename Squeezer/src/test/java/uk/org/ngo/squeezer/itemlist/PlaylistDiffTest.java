@@ -0,0 +1,191 @@
+package uk.org.ngo.squeezer.itemlist;
+
+import androidx.recyclerview.widget.ListUpdateCallback;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PlaylistDiffTest extends TestCase {
+
+    public void testUnchanged() {
+        Rows rows = diff(tracks(0, 100), tracks(0, 100), 40, 30);
+
+        assertEquals("[]", rows.edits.toString());
+    }
+
+    public void testInsertInWindow() {
+        List<String> newList = tracks(0, 100);
+        newList.add(50, "new");
+        Rows rows = diff(tracks(0, 100), newList, 40, 30);
+
+        assertEquals("[+50:1]", rows.edits.toString());
+    }
+
+    public void testRemoveInWindow() {
+        List<String> newList = tracks(0, 100);
+        newList.remove(50);
+        newList.remove(50);
+        Rows rows = diff(tracks(0, 100), newList, 40, 30);
+
+        assertEquals("[-50:2]", rows.edits.toString());
+    }
+
+    public void testMoveInWindow() {
+        List<String> newList = tracks(0, 100);
+        newList.add(55, newList.remove(45));
+        Rows rows = diff(tracks(0, 100), newList, 40, 30);
+
+        assertEquals("[+56:1, -45:1]", rows.edits.toString());
+    }
+
+    public void testInsertBeforeWindow() {
+        List<String> newList = tracks(0, 100);
+        newList.add(10, "new");
+        newList.add(10, "new");
+        Rows rows = diff(tracks(0, 100), newList, 40, 30);
+
+        assertEquals("Rows in the window are not changed", "[+0:2]", rows.edits.toString());
+    }
+
+    public void testRemoveAfterWindow() {
+        List<String> newList = tracks(0, 100);
+        newList.remove(90);
+        Rows rows = diff(tracks(0, 100), newList, 40, 30);
+
+        assertEquals("[-99:1]", rows.edits.toString());
+    }
+
+    public void testAppendToWindowAtEnd() {
+        List<String> newList = tracks(0, 100);
+        newList.add("new");
+        Rows rows = diff(tracks(0, 100), newList, 80, 21);
+
+        assertEquals("[+100:1]", rows.edits.toString());
+    }
+
+    public void testReplacedList() {
+        Rows rows = diff(tracks(0, 100), tracks(100, 180), 40, 30);
+
+        assertEquals("[-80:20, ~40:30]", rows.edits.toString());
+    }
+
+    public void testCleared() {
+        Rows rows = diff(tracks(0, 100), Collections.emptyList(), 0, 0);
+
+        assertEquals("[-0:100]", rows.edits.toString());
+    }
+
+    public void testNotLoaded() {
+        List<String> oldList = tracks(0, 100);
+        for (int i = 0; i < 40; i++) {
+            oldList.set(i, null);
+        }
+        List<String> newList = tracks(0, 100);
+        newList.add(60, "new");
+        Rows rows = diff(oldList, newList, 50, 20);
+
+        assertEquals("[+60:1]", rows.edits.toString());
+    }
+
+    public void testDuplicateTracks() {
+        List<String> oldList = new ArrayList<>(Collections.nCopies(20, "same"));
+        List<String> newList = new ArrayList<>(Collections.nCopies(21, "same"));
+        Rows rows = diff(oldList, newList, 0, 21);
+
+        assertEquals("[+20:1]", rows.edits.toString());
+    }
+
+    private static List<String> tracks(int from, int to) {
+        List<String> tracks = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            tracks.add("track" + i);
+        }
+        return tracks;
+    }
+
+    /**
+     * Diff the lists, and check that the edits turn the old rows into the new list: matched rows
+     * in the window are the same, other rows in the window are changed or inserted, and rows
+     * outside the window are where {@link PlaylistDiff#getOldPosition(int)} says.
+     */
+    private static Rows diff(List<String> oldList, List<String> newList, int start, int size) {
+        PlaylistDiff diff = new PlaylistDiff(oldList.size(), oldList::get, newList.size(), start,
+                newList.subList(start, start + size));
+        Rows rows = new Rows(oldList);
+        diff.dispatchUpdatesTo(rows);
+
+        assertEquals(newList.size(), rows.rows.size());
+        for (int i = 0; i < newList.size(); i++) {
+            Row row = rows.rows.get(i);
+            if (i >= start && i < start + size) {
+                if (!row.edited) {
+                    assertEquals("Row " + i, newList.get(i), row.key);
+                }
+            } else {
+                int oldPosition = diff.getOldPosition(i);
+                if (oldPosition >= 0) {
+                    assertFalse("Row " + i, row.edited);
+                    assertEquals("Row " + i, oldPosition, row.oldPosition);
+                } else {
+                    assertTrue("Row " + i, row.edited);
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static class Row {
+        final String key;
+        final int oldPosition;
+        boolean edited;
+
+        Row(String key, int oldPosition) {
+            this.key = key;
+            this.oldPosition = oldPosition;
+        }
+    }
+
+    /** Rows of a list view, edited as notified. */
+    private static class Rows implements ListUpdateCallback {
+        final List<Row> rows = new ArrayList<>();
+        final List<String> edits = new ArrayList<>();
+
+        Rows(List<String> keys) {
+            for (int i = 0; i < keys.size(); i++) {
+                rows.add(new Row(keys.get(i), i));
+            }
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            edits.add("+" + position + ":" + count);
+            for (int i = 0; i < count; i++) {
+                Row row = new Row(null, -1);
+                row.edited = true;
+                rows.add(position, row);
+            }
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            edits.add("-" + position + ":" + count);
+            rows.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            fail("Moves are not notified");
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            edits.add("~" + position + ":" + count);
+            for (Row row : rows.subList(position, position + count)) {
+                row.edited = true;
+            }
+        }
+    }
+}
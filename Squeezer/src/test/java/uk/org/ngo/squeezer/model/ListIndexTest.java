@@ -0,0 +1,42 @@
+package uk.org.ngo.squeezer.model;
+
+import junit.framework.TestCase;
+
+public class ListIndexTest extends TestCase {
+
+    public void testOffsets() {
+        ListIndex index = ListIndex.fromIndexList(new Object[]{
+                new Object[]{"A", 3L}, new Object[]{"B", 1L}, new Object[]{"C", 2L}});
+
+        assertEquals("A", index.getKey(0));
+        assertEquals("A", index.getKey(2));
+        assertEquals("B", index.getKey(3));
+        assertEquals("C", index.getKey(4));
+        assertEquals("C", index.getKey(5));
+        assertEquals("Past the end", "C", index.getKey(100));
+        assertEquals("", index.getKey(-1));
+    }
+
+    public void testEmptyKeysAreSkipped() {
+        ListIndex index = ListIndex.fromIndexList(new Object[]{
+                new Object[]{"A", 2L}, new Object[]{"B", 0L}, new Object[]{"C", "1"}});
+
+        assertEquals("A", index.getKey(1));
+        assertEquals("C", index.getKey(2));
+    }
+
+    public void testNoIndex() {
+        assertNull(ListIndex.fromIndexList(null));
+        assertNull(ListIndex.fromIndexList(new Object[0]));
+        assertNull(ListIndex.fromIndexList(new Object[]{new Object[]{"A", 0L}}));
+    }
+
+    public void testMalformed() {
+        assertNull(ListIndex.fromIndexList("A"));
+        assertNull(ListIndex.fromIndexList(new Object[]{"A", 3L}));
+        assertNull(ListIndex.fromIndexList(new Object[]{new Object[]{"A"}}));
+        assertNull(ListIndex.fromIndexList(new Object[]{new Object[]{"A", "many"}}));
+        assertNull(ListIndex.fromIndexList(new Object[]{new Object[]{"A", null}}));
+        assertNull(ListIndex.fromIndexList(new Object[]{new Object[]{"A", 3L}, new Object[]{"B", true}}));
+    }
+}
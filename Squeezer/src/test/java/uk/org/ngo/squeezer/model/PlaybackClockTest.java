@@ -0,0 +1,47 @@
+package uk.org.ngo.squeezer.model;
+
+import junit.framework.TestCase;
+
+public class PlaybackClockTest extends TestCase {
+
+    public void testPlaying() {
+        PlaybackClock clock = new PlaybackClock(10.5, 1, 100, 200);
+
+        assertTrue(clock.isRunning());
+        assertEquals(10.5, clock.getPositionAt(100), 1e-9);
+        assertEquals(13.0, clock.getPositionAt(102.5), 1e-9);
+        assertEquals("Status from the future", 10.5, clock.getPositionAt(99), 1e-9);
+        assertEquals(200, clock.getDuration());
+    }
+
+    public void testPaused() {
+        PlaybackClock clock = new PlaybackClock(10.5, 0, 100, 200);
+
+        assertFalse(clock.isRunning());
+        assertEquals(10.5, clock.getPositionAt(200), 1e-9);
+    }
+
+    public void testMillisToNextSecond() {
+        PlaybackClock clock = new PlaybackClock(10.25, 1, 100, 200);
+
+        assertEquals(750, clock.getMillisToNextSecondAt(100));
+        assertEquals(1000, clock.getMillisToNextSecondAt(100.75));
+        assertEquals(375, new PlaybackClock(10.25, 2, 100, 200).getMillisToNextSecondAt(100));
+    }
+
+    public void testInLineWhilePlaying() {
+        PlaybackClock clock = new PlaybackClock(10, 1, 100, 200);
+
+        assertTrue(new PlaybackClock(40.2, 1, 130, 200).isInLineWith(clock));
+        assertFalse("Seek", new PlaybackClock(60, 1, 130, 200).isInLineWith(clock));
+        assertFalse("Paused", new PlaybackClock(40, 0, 130, 200).isInLineWith(clock));
+        assertFalse("Other song", new PlaybackClock(40, 1, 130, 180).isInLineWith(clock));
+    }
+
+    public void testInLineWhilePaused() {
+        PlaybackClock clock = new PlaybackClock(10, 0, 100, 200);
+
+        assertTrue(new PlaybackClock(10, 0, 130, 200).isInLineWith(clock));
+        assertFalse("Seek", new PlaybackClock(20, 0, 130, 200).isInLineWith(clock));
+    }
+}
@@ -0,0 +1,153 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import uk.org.ngo.squeezer.util.DiskLruCache;
+
+public class BrowseCacheTest extends TestCase {
+    private static final String REQUEST = "browselibrary items {mode=artists} 0";
+
+    private File directory;
+    private BrowseCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        directory = Files.createTempDirectory("browse").toFile();
+        cache = new BrowseCache(directory, 1024 * 1024);
+        cache.setServerStatus("server", "1000", false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        DiskLruCache.deleteContents(directory);
+        directory.delete();
+    }
+
+    public void testIsCacheable() {
+        assertTrue(BrowseCache.isCacheable(Arrays.asList("browselibrary", "items"), params("mode", "artists")));
+        assertTrue(BrowseCache.isCacheable(Collections.singletonList("albums"), params("artist_id", "12")));
+        assertFalse("Searches change", BrowseCache.isCacheable(Arrays.asList("browselibrary", "items"), params("search", "abba")));
+        assertFalse(BrowseCache.isCacheable(Collections.singletonList("status"), params("tags", "aK")));
+        assertFalse(BrowseCache.isCacheable(Collections.emptyList(), params("mode", "artists")));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testRoundTrip() {
+        Map<String, Object> base = new HashMap<>();
+        base.put("actions", params("go", params("cmd", new Object[]{"browselibrary", "items"})));
+        Map<String, Object> data = params("count", 3L);
+        data.put("base", base);
+        data.put("offset", 0L);
+        data.put("item_loop", new Object[]{record(1, "ABBA")});
+
+        BrowseCache.Page page = cache.newPage(REQUEST, 0, 100);
+        assertTrue(page.startChunk(0, 3, data, "item_loop"));
+        page.addRecord(record(1, "ABBA"));
+        page.addRecord(record(2, "Ærø Blæsere"));
+        assertFalse(page.isComplete());
+        assertTrue(page.startChunk(2, 3, data, "item_loop"));
+        page.addRecord(record(-3, null));
+        assertTrue(page.isComplete());
+        cache.put(page, 0);
+
+        BrowseCache.Entry entry = cache.get(REQUEST, 1);
+        assertNotNull(entry);
+        assertFalse(entry.needsRevalidation());
+        assertEquals(3, entry.getCount());
+        assertEquals(0L, entry.getData().get("offset"));
+        assertEquals(3L, entry.getData().get("count"));
+        assertNull("Records are kept apart", entry.getData().get("item_loop"));
+        Map<String, Object> go = (Map<String, Object>) ((Map<String, Object>) ((Map<String, Object>) entry.getData().get("base")).get("actions")).get("go");
+        assertEquals("[browselibrary, items]", Arrays.toString((Object[]) go.get("cmd")));
+        assertEquals(3, entry.getRecords().length);
+        assertEquals(record(1, "ABBA"), entry.getRecords()[0]);
+        assertEquals(record(2, "Ærø Blæsere"), entry.getRecords()[1]);
+        assertEquals(record(-3, null), entry.getRecords()[2]);
+        assertEquals("BrowseCache{hits=1, revalidations=0, misses=0, hitRate=100%, invalidations=0, writes=1, errors=0, clears=0}", cache.toString());
+    }
+
+    public void testChunksMustFollow() {
+        BrowseCache.Page page = cache.newPage(REQUEST, 100, 100);
+        assertTrue(page.startChunk(100, 250, params("count", 250L), "item_loop"));
+        page.addRecord(record(1, "ABBA"));
+        assertFalse("Chunk skipped", page.startChunk(102, 250, params("count", 250L), "item_loop"));
+        assertFalse("List changed", page.startChunk(101, 251, params("count", 251L), "item_loop"));
+    }
+
+    public void testLastPage() {
+        BrowseCache.Page page = cache.newPage(REQUEST, 100, 100);
+        assertTrue(page.startChunk(100, 101, params("count", 101L), "item_loop"));
+        page.addRecord(record(1, "ABBA"));
+        assertTrue(page.isComplete());
+    }
+
+    public void testRescan() {
+        cache.put(page(), 0);
+
+        assertFalse("Status of another server", cache.setServerStatus("other", "1000", false));
+        assertNull(cache.get(REQUEST, 0));
+        assertFalse(cache.setServerStatus("server", "1000", false));
+        assertNotNull(cache.get(REQUEST, 0));
+
+        assertFalse(cache.setServerStatus("server", "1000", true));
+        assertFalse("Nothing is cached while scanning", cache.isEnabled());
+        assertNull(cache.newPage(REQUEST, 0, 100));
+        assertNull(cache.get(REQUEST, 0));
+
+        assertTrue(cache.setServerStatus("server", "2000", false));
+        assertNull("Page of the previous scan", cache.get(REQUEST, 0));
+        assertEquals("BrowseCache{hits=1, revalidations=0, misses=2, hitRate=33%, invalidations=1, writes=1, errors=0, clears=0}", cache.toString());
+    }
+
+    public void testPageOfPreviousScanIsNotStored() {
+        BrowseCache.Page page = page();
+        cache.setServerStatus("server", "2000", false);
+        cache.put(page, 0);
+
+        assertNull(cache.get(REQUEST, 0));
+    }
+
+    public void testRevalidate() {
+        cache.put(page(), 0);
+
+        assertFalse(cache.get(REQUEST, BrowseCache.REVALIDATE_AGE - 1).needsRevalidation());
+        assertTrue(cache.get(REQUEST, BrowseCache.REVALIDATE_AGE).needsRevalidation());
+    }
+
+    public void testClear() {
+        cache.put(page(), 0);
+        cache.clear();
+
+        assertNull(cache.get(REQUEST, 0));
+        cache.put(page(), 0);
+        assertNotNull(cache.get(REQUEST, 0));
+    }
+
+    private BrowseCache.Page page() {
+        BrowseCache.Page page = cache.newPage(REQUEST, 0, 100);
+        page.startChunk(0, 1, params("count", 1L), "item_loop");
+        page.addRecord(record(1, "ABBA"));
+        return page;
+    }
+
+    private static Map<String, Object> record(long id, String text) {
+        Map<String, Object> record = params("id", id);
+        record.put("text", text);
+        record.put("weight", 0.5);
+        record.put("favorite", id > 1);
+        return record;
+    }
+
+    private static Map<String, Object> params(String key, Object value) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(key, value);
+        return params;
+    }
+}
@@ -0,0 +1,53 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+public class BrowseChunkSizerTest extends TestCase {
+    private static final long TARGET = 250_000_000L;
+
+    public void testGrowsWhenFast() {
+        BrowseChunkSizer sizer = new BrowseChunkSizer(64, 32, 512, TARGET);
+        assertEquals(64, sizer.getFirstChunkSize());
+        assertEquals(32, sizer.getChunkSize());
+
+        sizer.onResponse(64, 64, TARGET / 4, TARGET / 4);
+        assertEquals(64, sizer.getChunkSize());
+        for (int size = 64; size < 512; size *= 2) {
+            sizer.onResponse(size, size, TARGET / 2, TARGET / 4);
+        }
+        assertEquals(512, sizer.getChunkSize());
+
+        sizer.onResponse(512, 512, TARGET / 2, TARGET / 4);
+        assertEquals(512, sizer.getChunkSize());
+    }
+
+    public void testShrinksWhenSlow() {
+        BrowseChunkSizer sizer = new BrowseChunkSizer(64, 32, 512, TARGET);
+        for (int size = 32; size < 512; size *= 2) {
+            sizer.onResponse(size, size, 0, 0);
+        }
+        assertEquals(512, sizer.getChunkSize());
+
+        sizer.onResponse(512, 512, 2 * TARGET, TARGET);
+        assertEquals(256, sizer.getChunkSize());
+
+        // Between the target and twice the target the size is kept
+        sizer.onResponse(256, 256, TARGET, TARGET / 2);
+        assertEquals(256, sizer.getChunkSize());
+
+        for (int i = 0; i < 10; i++) {
+            sizer.onResponse(256, 256, 3 * TARGET, 0);
+        }
+        assertEquals(32, sizer.getChunkSize());
+    }
+
+    public void testDoesNotGrowOnSmallResponses() {
+        BrowseChunkSizer sizer = new BrowseChunkSizer(64, 128, 512, TARGET);
+        // The end of a list
+        sizer.onResponse(128, 10, 0, 0);
+        assertEquals(128, sizer.getChunkSize());
+        // A small response
+        sizer.onResponse(1, 1, 0, 0);
+        assertEquals(128, sizer.getChunkSize());
+    }
+}
@@ -0,0 +1,175 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays captured LMS streams through {@link HttpResponseReader}.
+ * <p>
+ * Each capture <code>name.http</code> contains the raw bytes of one or more HTTP responses, and
+ * <code>name.expected</code> contains the JSON values we expect to read from it, one per line.
+ * Captures are replayed both in one piece and in small pieces, so that reads end in the middle of
+ * headers, chunk sizes and multi-byte characters.
+ */
+public class HttpResponseReaderTest extends TestCase {
+    private static final int[] READ_SIZES = {Integer.MAX_VALUE, 1, 2, 3, 7, 64};
+
+    public void testContentLength() throws IOException {
+        for (int readSize : READ_SIZES) {
+            HttpResponseReader reader = new HttpResponseReader(replay("lms-content-length.http", readSize));
+            List<String> actual = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                reader.readHead();
+                assertEquals(200, reader.getStatus());
+                assertFalse(reader.isChunked());
+                actual.add(reader.readContent());
+            }
+            assertEquals("read size " + readSize, expected("lms-content-length.expected"), actual);
+            assertEndOfStream(reader);
+        }
+    }
+
+    public void testChunked() throws IOException {
+        for (int readSize : READ_SIZES) {
+            HttpResponseReader reader = new HttpResponseReader(replay("lms-chunked.http", readSize));
+            reader.readHead();
+            assertEquals(200, reader.getStatus());
+            assertTrue(reader.isChunked());
+            List<String> actual = new ArrayList<>();
+            String frame;
+            while ((frame = reader.nextFrame()) != null) {
+                actual.add(frame);
+            }
+            assertFalse(reader.hasPartialFrame());
+            assertEquals("read size " + readSize, expected("lms-chunked.expected"), actual);
+            assertEndOfStream(reader);
+        }
+    }
+
+    public void testNonAscii() throws IOException {
+        HttpResponseReader reader = new HttpResponseReader(replay("lms-chunked.http", 5));
+        reader.readHead();
+        String frame;
+        String playerStatus = null;
+        while ((frame = reader.nextFrame()) != null) {
+            if (frame.contains("playerstatus")) {
+                playerStatus = frame;
+            }
+        }
+        assertNotNull(playerStatus);
+        assertTrue(playerStatus.contains("\"Küche\""));
+        assertTrue(playerStatus.contains("\"群青日和\""));
+        assertTrue(playerStatus.contains("\"Кино\""));
+        assertTrue(playerStatus.contains("\"🎵 Intro\""));
+    }
+
+    public void testHeaders() throws IOException {
+        String response = "HTTP/1.1 500 Internal Server Error\r\n"
+                + "content-length:  12 \r\n"
+                + "\r\n"
+                + "[\"æøåæ\"]"
+                + "HTTP/1.1 200 OK\n"
+                + "TRANSFER-ENCODING: Chunked\n"
+                + "\n"
+                + "3;name=value\r\n[1]\r\n"
+                + "0\r\n"
+                + "Trailer: ignored\r\n"
+                + "\r\n";
+        HttpResponseReader reader = new HttpResponseReader(new ReplayChannel(response.getBytes(StandardCharsets.UTF_8), 4));
+
+        reader.readHead();
+        assertEquals(500, reader.getStatus());
+        assertFalse(reader.isChunked());
+        assertEquals("[\"æøåæ\"]", reader.readContent());
+
+        reader.readHead();
+        assertEquals(200, reader.getStatus());
+        assertTrue(reader.isChunked());
+        assertEquals("[1]", reader.nextFrame());
+        assertNull(reader.nextFrame());
+        assertEndOfStream(reader);
+    }
+
+    public void testTruncatedContent() throws IOException {
+        String response = "HTTP/1.1 200 OK\r\nContent-Length: 20\r\n\r\n[{\"id\":\"1\"}]";
+        HttpResponseReader reader = new HttpResponseReader(new ReplayChannel(response.getBytes(StandardCharsets.UTF_8), 3));
+        reader.readHead();
+        try {
+            reader.readContent();
+            fail("Expected EOFException");
+        } catch (EOFException expected) {
+        }
+    }
+
+    private void assertEndOfStream(HttpResponseReader reader) throws IOException {
+        try {
+            reader.readHead();
+            fail("Expected EOFException");
+        } catch (EOFException expected) {
+        }
+    }
+
+    private ReadableByteChannel replay(String name, int readSize) throws IOException {
+        return new ReplayChannel(resource(name), readSize);
+    }
+
+    private List<String> expected(String name) throws IOException {
+        String expected = new String(resource(name), StandardCharsets.UTF_8);
+        return Arrays.asList(expected.split("\n"));
+    }
+
+    private byte[] resource(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(name)) {
+            assertNotNull("Missing resource " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    /** Channel which delivers the supplied bytes at most <code>readSize</code> bytes at a time. */
+    private static class ReplayChannel implements ReadableByteChannel {
+        private final byte[] data;
+        private final int readSize;
+        private int position;
+
+        ReplayChannel(byte[] data, int readSize) {
+            this.data = data;
+            this.readSize = readSize;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position == data.length) {
+                return -1;
+            }
+            int count = Math.min(Math.min(readSize, dst.remaining()), data.length - position);
+            dst.put(data, position, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
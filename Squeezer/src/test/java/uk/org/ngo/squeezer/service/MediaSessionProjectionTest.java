@@ -0,0 +1,118 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+public class MediaSessionProjectionTest extends TestCase {
+    private static final String COVER = "http://lms:9000/music/1/cover";
+
+    private final MediaSessionProjection projection = new MediaSessionProjection();
+
+    public void testFirstUpdatePublishesAll() {
+        MediaSessionProjection.Changes changes = projection.update(state("Song", 10_000, 1000));
+        assertTrue(changes.metadata);
+        assertTrue(changes.playbackState);
+        assertTrue(changes.notification);
+        assertTrue(changes.artwork);
+        assertTrue(changes.scrobble);
+    }
+
+    public void testStatusTickPublishesNothing() {
+        projection.update(state("Song", 10_000, 1000));
+        MediaSessionProjection.Changes changes = projection.update(state("Song", 15_000, 6000));
+        assertFalse(changes.metadata);
+        assertFalse(changes.playbackState);
+        assertFalse(changes.notification);
+        assertFalse(changes.artwork);
+        assertFalse(changes.scrobble);
+        assertTrue(projection.toString(), projection.toString().contains("notificationsSkipped=1"));
+    }
+
+    public void testPositionIsExtrapolatedFromPublishedState() {
+        projection.update(state("Song", 10_000, 1000));
+        // Each tick drifts a little, but less than the tolerance from the published position
+        for (int i = 1; i <= 10; i++) {
+            long drift = MediaSessionProjection.POSITION_TOLERANCE / 2;
+            assertFalse(projection.update(state("Song", 10_000 + i * 1000 + drift, 1000 + i * 1000)).playbackState);
+        }
+        assertEquals(10_000, projection.getPublished().position);
+        assertEquals(1000, projection.getPublished().positionTime);
+    }
+
+    public void testSeekPublishesPlaybackState() {
+        projection.update(state("Song", 10_000, 1000));
+        MediaSessionProjection.Changes changes = projection.update(state("Song", 60_000, 2000));
+        assertTrue(changes.playbackState);
+        assertFalse(changes.metadata);
+        assertFalse(changes.notification);
+        assertEquals(60_000, projection.getPublished().position);
+    }
+
+    public void testPausePublishesPlaybackStateAndNotification() {
+        projection.update(state("Song", 10_000, 1000));
+        MediaSessionProjection.State paused = state("Song", 11_000, 2000);
+        paused.playing = false;
+        paused.playStatus = "pause";
+        MediaSessionProjection.Changes changes = projection.update(paused);
+        assertTrue(changes.playbackState);
+        assertTrue(changes.notification);
+        assertTrue(changes.scrobble);
+        assertFalse(changes.metadata);
+
+        // No extrapolation while paused
+        MediaSessionProjection.State stillPaused = state("Song", 11_000, 30_000);
+        stillPaused.playing = false;
+        stillPaused.playStatus = "pause";
+        assertFalse(projection.update(stillPaused).playbackState);
+    }
+
+    public void testNextSongWithSameArtwork() {
+        projection.update(state("Song", 10_000, 1000));
+        MediaSessionProjection.Changes changes = projection.update(state("Next song", 0, 2000));
+        assertTrue(changes.metadata);
+        assertTrue(changes.notification);
+        assertTrue(changes.scrobble);
+        assertFalse("Same album, same cover", changes.artwork);
+    }
+
+    public void testResetKeepsArtwork() {
+        projection.update(state("Song", 10_000, 1000));
+        projection.reset();
+        assertNull(projection.getPublished());
+        MediaSessionProjection.Changes changes = projection.update(state("Song", 11_000, 2000));
+        assertTrue(changes.metadata);
+        assertTrue(changes.notification);
+        assertFalse(changes.artwork);
+        assertFalse(changes.scrobble);
+    }
+
+    public void testNoPlayer() {
+        assertFalse(projection.update(null).notification);
+        projection.update(state("Song", 10_000, 1000));
+        MediaSessionProjection.Changes changes = projection.update(null);
+        assertTrue(changes.metadata);
+        assertTrue(changes.notification);
+        assertTrue(changes.artwork);
+        assertFalse(projection.update(null).notification);
+    }
+
+    private static MediaSessionProjection.State state(String title, long position, long positionTime) {
+        MediaSessionProjection.State state = new MediaSessionProjection.State();
+        state.hasSong = true;
+        state.title = title;
+        state.artist = "Artist";
+        state.album = "Album";
+        state.name = title;
+        state.artistAlbum = "Artist - Album";
+        state.subtext = "Kitchen 1/10";
+        state.duration = 180_000;
+        state.trackNumber = 1;
+        state.numTracks = 10;
+        state.artworkUrl = COVER;
+        state.playStatus = "play";
+        state.playing = true;
+        state.poweredOn = true;
+        state.position = position;
+        state.positionTime = positionTime;
+        return state;
+    }
+}
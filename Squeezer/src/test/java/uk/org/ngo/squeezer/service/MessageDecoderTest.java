@@ -0,0 +1,180 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+import org.cometd.bayeux.Message;
+import org.eclipse.jetty.util.ajax.JSON;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes recorded LMS responses with {@link MessageDecoder}, and compares the result and the
+ * allocations to the JSON parser used by the cometd library.
+ */
+public class MessageDecoderTest extends TestCase {
+    private static final String[] RECORDINGS = {"lms-albums.json", "lms-titles.json"};
+
+    public void testSameAsCometd() throws IOException, ParseException {
+        for (String recording : RECORDINGS) {
+            String content = resource(recording);
+            Object[] expected = (Object[]) new JSON().fromJSON(content);
+            List<Message.Mutable> actual = MessageDecoder.decode(content);
+            assertEquals(recording, normalize(expected), normalize(actual));
+        }
+    }
+
+    public void testRecordLoop() throws IOException, ParseException {
+        String content = resource("lms-titles.json");
+        Map<String, Object> data = MessageDecoder.decode(content).get(0).getDataAsMap();
+        assertTrue(data.get("titles_loop") instanceof RecordLoop);
+        assertEquals(1873L, data.get("count"));
+
+        Object[] expected = RecordLoop.toArray(data.get("titles_loop"));
+        List<Object> reused = new ArrayList<>();
+        List<Object> fresh = new ArrayList<>();
+        Map<String, Object> reusableRecord = new HashMap<>();
+        RecordLoop.forEach(data.get("titles_loop"), reusableRecord, record -> {
+            assertSame(reusableRecord, record);
+            reused.add(normalize(record));
+        });
+        RecordLoop.forEach(data.get("titles_loop"), null, record -> fresh.add(normalize(record)));
+        assertEquals(100, reused.size());
+        assertEquals(normalize(expected), reused);
+        assertEquals(reused, fresh);
+
+        Map<String, Object> record = (Map<String, Object>) expected[0];
+        assertEquals(20000L, record.get("id"));
+        assertEquals(564.422, record.get("duration"));
+        assertEquals("Song Café", record.get("album"));
+        assertEquals("file:///music/Fleetwood%20Mac/0.flac", record.get("url"));
+        assertEquals("Kid \"Live\"", ((Map<?, ?>) expected[1]).get("title"));
+    }
+
+    public void testValues() throws ParseException {
+        Map<String, Object> data = MessageDecoder.decode(
+                "{\"channel\":\"/a\",\"data\":{\"a\":[1,-2.5e1,true,false,null,\"\\u00e6\\n\"],\"item_loop\":[1,{\"b\":{}}],\"players_loop\":{}}}")
+                .get(0).getDataAsMap();
+        assertEquals(Arrays.asList(1L, -25.0, true, false, null, "æ\n"), normalize(data.get("a")));
+        assertEquals("[1,{\"b\":{}}]", data.get("item_loop").toString());
+        assertEquals(new HashMap<>(), data.get("players_loop"));
+
+        List<Object> records = new ArrayList<>();
+        RecordLoop.forEach(data.get("item_loop"), null, records::add);
+        assertEquals(1, records.size());
+    }
+
+    public void testInvalid() {
+        for (String content : new String[]{"", "[{\"id\":1}", "{\"id\":tru}", "{\"data\":{\"item_loop\":[{\"a\":\"b]}}", "[{}] x", "{\"id\":1-}"}) {
+            try {
+                MessageDecoder.decode(content);
+                fail("Expected ParseException for " + content);
+            } catch (ParseException expected) {
+            }
+        }
+    }
+
+    /**
+     * Compare the bytes allocated to decode the recordings and visit each record, with the cometd
+     * parser and with {@link MessageDecoder}.
+     */
+    public void testAllocations() throws IOException, ParseException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+        if (!allocations.isThreadAllocatedMemorySupported() || !allocations.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        final int iterations = 200;
+
+        for (String recording : RECORDINGS) {
+            String content = resource(recording);
+            String loopName = recording.contains("titles") ? "titles_loop" : "item_loop";
+            int[] visited = new int[1];
+
+            // Warm up
+            for (int i = 0; i < iterations; i++) {
+                visitCometd(content, loopName, visited);
+                visitDecoder(content, loopName, visited);
+            }
+
+            long start = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                visitCometd(content, loopName, visited);
+            }
+            long cometd = (allocations.getThreadAllocatedBytes(threadId) - start) / iterations;
+
+            start = allocations.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                visitDecoder(content, loopName, visited);
+            }
+            long decoder = (allocations.getThreadAllocatedBytes(threadId) - start) / iterations;
+
+            System.out.println(recording + ": cometd " + cometd + " bytes, MessageDecoder " + decoder + " bytes per response");
+            assertTrue(recording + ": " + decoder + " >= " + cometd, decoder < cometd);
+        }
+    }
+
+    private static void visitCometd(String content, String loopName, int[] visited) {
+        Object[] messages = (Object[]) new JSON().fromJSON(content);
+        Map<String, Object> data = (Map<String, Object>) ((Map<String, Object>) messages[0]).get("data");
+        RecordLoop.forEach(data.get(loopName), new HashMap<>(), record -> visited[0] += record.size());
+    }
+
+    private static void visitDecoder(String content, String loopName, int[] visited) throws ParseException {
+        Map<String, Object> data = MessageDecoder.decode(content).get(0).getDataAsMap();
+        RecordLoop.forEach(data.get(loopName), new HashMap<>(), record -> visited[0] += record.size());
+    }
+
+    /** Convert arrays and record loops to lists, so decoded values can be compared with equals */
+    private static Object normalize(Object value) {
+        if (value instanceof RecordLoop) {
+            value = ((RecordLoop) value).toArray();
+        }
+        if (value instanceof Object[]) {
+            value = Arrays.asList((Object[]) value);
+        }
+        if (value instanceof List) {
+            List<Object> list = new ArrayList<>();
+            for (Object element : (List<?>) value) {
+                list.add(normalize(element));
+            }
+            return list;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> map = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                map.put(entry.getKey(), normalize(entry.getValue()));
+            }
+            return map;
+        }
+        return value;
+    }
+
+    private String resource(String name) throws IOException {
+        try (InputStream in = getClass().getResourceAsStream(name)) {
+            assertNotNull("Missing resource " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PrefetchRoundTest extends TestCase {
+    private static final List<int[]> SIZES = Arrays.asList(new int[]{800, 800}, new int[]{128, 128});
+
+    public void testOrder() {
+        PrefetchRound round = new PrefetchRound(Arrays.asList("a", "b"), null, SIZES, 1000);
+
+        assertRequest("a", 800, round.next());
+        assertRequest("a", 128, round.next());
+        assertRequest("b", 800, round.next());
+        assertRequest("b", 128, round.next());
+        assertNull(round.next());
+    }
+
+    public void testSkipsRepeatsAndCurrent() {
+        PrefetchRound round = new PrefetchRound(Arrays.asList("current", "a", "", null, "a", "b", "current"),
+                "current", Collections.singletonList(new int[]{100, 100}), 1000);
+
+        assertRequest("a", 100, round.next());
+        assertRequest("b", 100, round.next());
+        assertNull(round.next());
+    }
+
+    public void testBudget() {
+        PrefetchRound round = new PrefetchRound(Arrays.asList("a", "b", "c"), null,
+                Collections.singletonList(new int[]{100, 100}), 1000);
+
+        assertRequest("a", 100, round.next());
+        round.onPrefetched(0);
+        assertRequest("b", 100, round.next());
+        round.onPrefetched(1200);
+        assertNull("Budget spent", round.next());
+        assertEquals(1200, round.getDownloaded());
+    }
+
+    public void testNoSizes() {
+        PrefetchRound round = new PrefetchRound(Arrays.asList("a", "b"), null, Collections.emptyList(), 1000);
+
+        assertNull(round.next());
+    }
+
+    private static void assertRequest(String url, int size, PrefetchRound.Request request) {
+        assertNotNull(request);
+        assertEquals(url, request.url);
+        assertEquals(size, request.width);
+        assertEquals(size, request.height);
+    }
+}
@@ -0,0 +1,72 @@
+package uk.org.ngo.squeezer.service;
+
+import junit.framework.TestCase;
+
+public class VolumeChannelTest extends TestCase {
+    private static final long START = 10_000;
+
+    public void testSendsFirstVolumeAtOnce() {
+        VolumeChannel channel = new VolumeChannel();
+
+        assertEquals(0, channel.set(40, START));
+        assertEquals(40, channel.send(START));
+        assertEquals("Nothing more to send", -1, channel.send(START));
+    }
+
+    public void testKeepsLatestVolume() {
+        VolumeChannel channel = new VolumeChannel();
+        channel.set(40, START);
+        channel.send(START);
+
+        assertEquals(VolumeChannel.SEND_INTERVAL - 50, channel.set(41, START + 50));
+        assertEquals("Send is due", -1, channel.set(42, START + 60));
+        assertEquals(-1, channel.set(45, START + 70));
+
+        assertEquals(45, channel.send(START + VolumeChannel.SEND_INTERVAL));
+        assertEquals(-1, channel.send(START + VolumeChannel.SEND_INTERVAL));
+    }
+
+    public void testSendsAtOnceAfterInterval() {
+        VolumeChannel channel = new VolumeChannel();
+        channel.set(40, START);
+        channel.send(START);
+
+        assertEquals(0, channel.set(50, START + VolumeChannel.SEND_INTERVAL));
+    }
+
+    public void testIgnoresEarlierVolumes() {
+        VolumeChannel channel = new VolumeChannel();
+        channel.set(40, START);
+        channel.send(START);
+        channel.set(45, START + 50);
+
+        assertTrue(channel.isEcho(40, START + 100));
+        channel.send(START + VolumeChannel.SEND_INTERVAL);
+        assertTrue(channel.isEcho(40, START + 200));
+        assertTrue(channel.isEcho(30, START + 200));
+        assertFalse("Latest volume", channel.isEcho(45, START + 300));
+    }
+
+    public void testSettlesOnLatestVolume() {
+        VolumeChannel channel = new VolumeChannel();
+        channel.set(40, START);
+        channel.send(START);
+
+        assertFalse(channel.isEcho(40, START + 100));
+        assertFalse("Volume changed elsewhere", channel.isEcho(30, START + 200));
+    }
+
+    public void testSettlesAfterTimeout() {
+        VolumeChannel channel = new VolumeChannel();
+        channel.set(40, START);
+        channel.send(START);
+
+        assertTrue(channel.isEcho(30, START + VolumeChannel.SETTLE_TIME - 1));
+        assertFalse(channel.isEcho(30, START + VolumeChannel.SETTLE_TIME));
+        assertFalse(channel.isEcho(20, START + VolumeChannel.SETTLE_TIME));
+    }
+
+    public void testNothingSet() {
+        assertFalse(new VolumeChannel().isEcho(30, START));
+    }
+}
@@ -0,0 +1,59 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+public class CacheValidatorsTest extends TestCase {
+    private static final String URL = "http://host:9000/music/123/cover";
+    private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    public void testEncodeDecode() {
+        CacheValidators validators = new CacheValidators(URL, "\"abc\"", LAST_MODIFIED, 1000L);
+        CacheValidators decoded = CacheValidators.decode(validators.encode());
+
+        assertNotNull(decoded);
+        assertEquals(URL, decoded.url);
+        assertEquals("\"abc\"", decoded.eTag);
+        assertEquals(LAST_MODIFIED, decoded.lastModified);
+        assertEquals(1000L, decoded.fetchedAt);
+    }
+
+    public void testEncodeDecodeWithoutValidators() {
+        CacheValidators decoded = CacheValidators.decode(new CacheValidators(URL, null, "", 5L).encode());
+
+        assertNotNull(decoded);
+        assertNull(decoded.eTag);
+        assertNull(decoded.lastModified);
+        assertFalse(decoded.canRevalidate());
+    }
+
+    public void testDecodeInvalid() {
+        assertNull(CacheValidators.decode(null));
+        assertNull(CacheValidators.decode(""));
+        assertNull(CacheValidators.decode(URL + "\netag\n\nnot a number"));
+        assertNull(CacheValidators.decode(URL + "\netag\n"));
+    }
+
+    public void testNeedsRevalidation() {
+        CacheValidators validators = new CacheValidators(URL, "\"abc\"", null, 1000L);
+
+        assertFalse(validators.needsRevalidation(1500L, 1000L));
+        assertTrue(validators.needsRevalidation(2000L, 1000L));
+        assertTrue("Clock turned back", validators.needsRevalidation(999L, 1000L));
+        assertFalse("Nothing to revalidate with",
+                new CacheValidators(URL, null, null, 0L).needsRevalidation(2000L, 1000L));
+    }
+
+    public void testNotModified() {
+        CacheValidators validators = new CacheValidators(URL, "\"abc\"", LAST_MODIFIED, 1000L);
+
+        CacheValidators unchanged = validators.notModified(null, null, 2000L);
+        assertEquals("\"abc\"", unchanged.eTag);
+        assertEquals(LAST_MODIFIED, unchanged.lastModified);
+        assertEquals(2000L, unchanged.fetchedAt);
+
+        CacheValidators updated = validators.notModified("\"def\"", null, 3000L);
+        assertEquals(URL, updated.url);
+        assertEquals("\"def\"", updated.eTag);
+        assertEquals(LAST_MODIFIED, updated.lastModified);
+    }
+}
@@ -0,0 +1,100 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Compares the heap allocated to read a cached cover for decoding, by copying the entry into a
+ * byte[] with {@link DiskLruCache.Snapshot#getBytes(int)} as
+ * {@link ImageCache#getBytesFromDiskCache(String)} does, and by opening the entry file with
+ * {@link DiskLruCache.Snapshot#takeInputStream(int)} to decode from its descriptor as
+ * {@link ImageCache#openFromDiskCache(String)} does.
+ */
+public class DiskCacheReadBenchmarkTest extends TestCase {
+    private static final int ITERATIONS = 200;
+
+    /** Size of a typical full size cover. */
+    private static final int ENTRY_SIZE = 200 * 1024;
+
+    private static final String KEY = "cover";
+
+    private File cacheDir;
+    private DiskLruCache cache;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        cacheDir = File.createTempFile("disklrucache", "");
+        assertTrue(cacheDir.delete());
+        cache = DiskLruCache.open(cacheDir, 1, 2, 10 * 1024 * 1024);
+
+        byte[] value = new byte[ENTRY_SIZE];
+        new Random(1).nextBytes(value);
+        DiskLruCache.Editor editor = cache.edit(KEY);
+        try (OutputStream out = editor.newOutputStream(0)) {
+            out.write(value);
+        }
+        editor.set(1, "");
+        editor.commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        cache.delete();
+        super.tearDown();
+    }
+
+    public void testOpenAllocatesLessThanCopy() throws IOException {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("DiskCacheReadBenchmarkTest: allocation counting not supported");
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        // Warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertEquals(ENTRY_SIZE, readCopy().length);
+            assertNotNull(readOpen());
+        }
+
+        long start = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            readCopy();
+        }
+        long copy = (allocations.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+
+        start = allocations.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++) {
+            readOpen();
+        }
+        long open = (allocations.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+
+        System.out.println("Cached cover of " + ENTRY_SIZE + " bytes: copy allocates " + copy
+                + " bytes, open allocates " + open + " bytes per read");
+        assertTrue("copy " + copy + " bytes < entry " + ENTRY_SIZE, copy >= ENTRY_SIZE);
+        assertTrue("open " + open + " bytes >= copy / 10 " + copy / 10, open < copy / 10);
+    }
+
+    /** The read of {@link ImageCache#getBytesFromDiskCache(String)} */
+    private byte[] readCopy() throws IOException {
+        try (DiskLruCache.Snapshot snapshot = cache.get(KEY)) {
+            return snapshot.getBytes(0);
+        }
+    }
+
+    /** The read of {@link ImageCache#openFromDiskCache(String)}, then take the descriptor to decode. */
+    private FileDescriptor readOpen() throws IOException {
+        try (FileInputStream in = cache.get(KEY).takeInputStream(0)) {
+            return in.getFD();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Compares the heap allocated for the memory cache key of a list item bound again at the same
+ * size, when it is built from the URL on every bind, and when the {@link ImageKey} of the item is
+ * passed.
+ */
+public class ImageKeyBenchmarkTest extends TestCase {
+    private static final int ITERATIONS = 100_000;
+
+    /** Number of items in a screen of a list, each bound repeatedly while scrolling */
+    private static final int ITEMS = 20;
+
+    private static final int SIZE = 144;
+
+    private final String[] urls = new String[ITEMS];
+    private final ImageKey[] keys = new ImageKey[ITEMS];
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        for (int i = 0; i < ITEMS; i++) {
+            urls[i] = "http://192.168.1.10:9000/imageproxy/https%3A%2F%2Fexample.com%2Fcovers%2F" + i + "/image.jpg";
+            keys[i] = new ImageKey(urls[i]);
+        }
+    }
+
+    public void testKeptKeyIsSameInstance() {
+        for (ImageKey key : keys) {
+            String memoryKey = key.getMemoryKey(SIZE, SIZE);
+            for (int i = 0; i < 10; i++) {
+                assertSame(memoryKey, key.getMemoryKey(SIZE, SIZE));
+            }
+        }
+    }
+
+    public void testKeptKeyAllocations() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            System.out.println("ImageKeyBenchmarkTest: allocation counting not supported");
+            return;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        long thread = Thread.currentThread().getId();
+
+        // Warm up
+        run(false);
+        run(true);
+
+        long start = allocations.getThreadAllocatedBytes(thread);
+        run(false);
+        long built = (allocations.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+
+        start = allocations.getThreadAllocatedBytes(thread);
+        run(true);
+        long kept = (allocations.getThreadAllocatedBytes(thread) - start) / ITERATIONS;
+
+        assertTrue("kept " + kept + " bytes >= built " + built + " bytes", kept < built);
+    }
+
+    private void run(boolean kept) {
+        int length = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            int item = i % ITEMS;
+            String key = kept ? keys[item].getMemoryKey(SIZE, SIZE) : joinKey(urls[item], SIZE, SIZE);
+            length += key.length();
+        }
+        assertTrue(length > 0);
+    }
+
+    /** Like the key was built before, with <code>TextUtils.join(":", Arrays.asList(width, height, data))</code> */
+    private static String joinKey(String data, int width, int height) {
+        StringBuilder sb = new StringBuilder();
+        Iterator<?> it = Arrays.asList(width, height, data).iterator();
+        sb.append(it.next());
+        while (it.hasNext()) {
+            sb.append(':');
+            sb.append(it.next());
+        }
+        return sb.toString();
+    }
+}
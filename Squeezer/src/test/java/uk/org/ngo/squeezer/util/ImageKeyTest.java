@@ -0,0 +1,45 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+public class ImageKeyTest extends TestCase {
+    private static final String URL = "http://lms:9000/music/1a2b3c4d/cover";
+
+    public void testMemoryKey() {
+        assertEquals("100:200:" + URL, ImageKey.memoryKey(URL, 100, 200));
+        assertEquals("100:200:" + URL, new ImageKey(URL).getMemoryKey(100, 200));
+    }
+
+    public void testMemoryKeyIsKept() {
+        ImageKey key = new ImageKey(URL);
+        String memoryKey = key.getMemoryKey(100, 100);
+        assertSame(memoryKey, key.getMemoryKey(100, 100));
+
+        String other = key.getMemoryKey(200, 100);
+        assertEquals("200:100:" + URL, other);
+        assertSame(other, key.getMemoryKey(200, 100));
+        assertEquals(memoryKey, key.getMemoryKey(100, 100));
+    }
+
+    public void testHardwareMemoryKey() {
+        ImageKey key = new ImageKey(URL);
+        String software = key.getMemoryKey(100, 100);
+        String hardware = key.getMemoryKey(100, 100, true);
+
+        assertEquals("100:100:hw:" + URL, hardware);
+        assertEquals(hardware, ImageKey.memoryKey(URL, 100, 100, true));
+        assertFalse("Hardware bitmaps are not shared with software lookups", software.equals(hardware));
+        assertSame(hardware, key.getMemoryKey(100, 100, true));
+        assertEquals(software, key.getMemoryKey(100, 100));
+    }
+
+    public void testEquality() {
+        ImageKey key = new ImageKey(URL);
+        assertEquals(new ImageKey(URL), key);
+        assertEquals(URL.hashCode(), key.hashCode());
+        assertFalse(key.equals(new ImageKey(URL + ".jpg")));
+        assertFalse(key.equals(URL));
+        assertEquals(URL, key.toString());
+        assertEquals(URL, String.valueOf(key));
+    }
+}
@@ -0,0 +1,149 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class ImageSchedulerTest extends TestCase {
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    public void testMostRecentFirst() throws InterruptedException {
+        ImageScheduler scheduler = new ImageScheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.decode(new BlockingJob(release));
+        CountDownLatch done = new CountDownLatch(3);
+        scheduler.decode(new LoggingJob("1", done));
+        scheduler.decode(new LoggingJob("2", done));
+        scheduler.decode(new LoggingJob("3", done));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("3", "2", "1"), log);
+    }
+
+    public void testUnwantedJobsAreDropped() throws InterruptedException {
+        ImageScheduler scheduler = new ImageScheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.decode(new BlockingJob(release));
+        CountDownLatch done = new CountDownLatch(3);
+        LoggingJob offScreen = new LoggingJob("off-screen", done);
+        scheduler.decode(new LoggingJob("visible", done));
+        scheduler.decode(offScreen);
+        scheduler.decode(new LoggingJob("also visible", done));
+        offScreen.wanted = false;
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("also visible", "dropped off-screen", "visible"), log);
+        assertEquals(1, scheduler.getDroppedCount());
+    }
+
+    public void testDownloadsDontBlockDecodes() throws InterruptedException {
+        ImageScheduler scheduler = new ImageScheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.download(new BlockingJob(release));
+        CountDownLatch done = new CountDownLatch(1);
+        scheduler.decode(new LoggingJob("decode", done));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    public void testHighPriorityLane() throws InterruptedException {
+        ImageScheduler scheduler = new ImageScheduler(1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.download(new BlockingJob(release));
+        scheduler.decode(new BlockingJob(release));
+        scheduler.setPaused(true);
+
+        CountDownLatch done = new CountDownLatch(2);
+        scheduler.download(new LoggingJob("priority download", done, true));
+        scheduler.decode(new LoggingJob("priority decode", done, true));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    public void testPause() throws InterruptedException {
+        ImageScheduler scheduler = new ImageScheduler(1, 1);
+        scheduler.setPaused(true);
+        CountDownLatch done = new CountDownLatch(2);
+        LoggingJob offScreen = new LoggingJob("off-screen", done);
+        scheduler.decode(offScreen);
+        scheduler.decode(new LoggingJob("visible", done));
+
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(Collections.emptyList(), log);
+
+        offScreen.wanted = false;
+        scheduler.setPaused(false);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(log.contains("visible"));
+        assertTrue(log.contains("dropped off-screen"));
+    }
+
+    private class LoggingJob extends ImageScheduler.Job {
+        private final String name;
+        private final CountDownLatch done;
+        volatile boolean wanted = true;
+
+        LoggingJob(String name, CountDownLatch done) {
+            this(name, done, false);
+        }
+
+        LoggingJob(String name, CountDownLatch done, boolean highPriority) {
+            super(highPriority);
+            this.name = name;
+            this.done = done;
+        }
+
+        @Override
+        protected boolean isWanted() {
+            return wanted;
+        }
+
+        @Override
+        protected void work() {
+            log.add(name);
+            done.countDown();
+        }
+
+        @Override
+        protected void onDropped() {
+            log.add("dropped " + name);
+            done.countDown();
+        }
+    }
+
+    /** Occupies a thread of the scheduler until released. */
+    private static class BlockingJob extends ImageScheduler.Job {
+        private final CountDownLatch release;
+
+        BlockingJob(CountDownLatch release) {
+            super(false);
+            this.release = release;
+        }
+
+        @Override
+        protected boolean isWanted() {
+            return true;
+        }
+
+        @Override
+        protected void work() {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected void onDropped() {
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Compares the cost of resolving the generic type of a callback, as done for every browse
+ * request, with and without the cache in {@link Reflection}. The timings are only printed, as
+ * they depend on the machine.
+ */
+public class ReflectionBenchmarkTest extends TestCase {
+    private static final int ITERATIONS = 100_000;
+
+    /** Same shape as a callback resolved in {@link uk.org.ngo.squeezer.service.CometClient} */
+    private static final Class<?>[] CLASSES = {
+            ReflectionTest.BAIII.class, ReflectionTest.CIG1.class, ReflectionTest.SwitchTypeAI.class
+    };
+
+    public void testResolveCached() {
+        // Warm up, and fill the cache
+        long uncached = run(false) + run(true);
+
+        uncached = run(false);
+        long cached = run(true);
+
+        System.out.println("Reflection.getGenericClass: uncached " + uncached / ITERATIONS
+                + " ns, cached " + cached / ITERATIONS + " ns per call");
+        for (Class<?> clazz : CLASSES) {
+            assertSame(Reflection.resolveUncached(clazz, ReflectionTest.I.class)[0],
+                    Reflection.getGenericClass(clazz, ReflectionTest.I.class, 0));
+        }
+    }
+
+    public void testCachedResultIsSame() {
+        for (Class<?> clazz : CLASSES) {
+            assertSame(Reflection.getGenericClass(clazz, ReflectionTest.I.class, 0),
+                    Reflection.getGenericClass(clazz, ReflectionTest.I.class, 0));
+        }
+        Reflection.genericTypeResolver(ReflectionTest.CIG1.class, ReflectionTest.I.class)[0] = null;
+        assertEquals(ReflectionTest.GroupItem1.class,
+                Reflection.getGenericClass(ReflectionTest.CIG1.class, ReflectionTest.I.class, 0));
+    }
+
+    private long run(boolean cached) {
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Class<?> clazz = CLASSES[i % CLASSES.length];
+            Object type = cached
+                    ? Reflection.getGenericClass(clazz, ReflectionTest.I.class, 0)
+                    : Reflection.resolveUncached(clazz, ReflectionTest.I.class)[0];
+            if (type != null) {
+                found++;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(ITERATIONS, found);
+        return elapsed;
+    }
+}
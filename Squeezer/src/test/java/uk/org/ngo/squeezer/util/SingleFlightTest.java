@@ -0,0 +1,196 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class SingleFlightTest extends TestCase {
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    public void testConcurrentLoadsShareResult() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> results = Collections.synchronizedList(new ArrayList<>());
+
+        Thread leader = start(() -> results.add(load("a", loads, release)));
+        waitForLoads(loads, 1);
+
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            waiters.add(start(() -> results.add(load("a", loads, release))));
+        }
+        waitForWaiters("a", 4);
+
+        release.countDown();
+        leader.join();
+        for (Thread waiter : waiters) {
+            waiter.join();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(5, results.size());
+        for (String result : results) {
+            assertEquals("a1", result);
+        }
+        assertEquals(0, singleFlight.getWaiterCount("a"));
+    }
+
+    public void testDifferentKeysLoadSeparately() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Thread a = start(() -> load("a", loads, release));
+        Thread b = start(() -> load("b", loads, release));
+        waitForLoads(loads, 2);
+        release.countDown();
+        a.join();
+        b.join();
+
+        assertEquals(2, loads.get());
+    }
+
+    public void testLoadAgainAfterFinished() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(0);
+
+        assertEquals("a1", singleFlight.get("a", () -> "a" + loads.incrementAndGet()));
+        assertEquals("a2", singleFlight.get("a", () -> "a" + loads.incrementAndGet()));
+        assertEquals("a3", load("a", loads, release));
+    }
+
+    public void testInterruptedWaiter() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> leaderResult = new AtomicReference<>();
+        AtomicReference<String> waiterResult = new AtomicReference<>();
+        AtomicReference<Throwable> interruptedResult = new AtomicReference<>();
+
+        Thread leader = start(() -> leaderResult.set(load("a", loads, release)));
+        waitForLoads(loads, 1);
+
+        Thread interrupted = new Thread(() -> {
+            try {
+                singleFlight.get("a", () -> {
+                    fail("Unexpected load");
+                    return null;
+                });
+            } catch (Throwable e) {
+                interruptedResult.set(e);
+            }
+        });
+        interrupted.start();
+        Thread waiter = start(() -> waiterResult.set(load("a", loads, release)));
+        waitForWaiters("a", 2);
+
+        interrupted.interrupt();
+        interrupted.join();
+        assertTrue(interruptedResult.get() instanceof InterruptedException);
+        assertEquals(1, singleFlight.getWaiterCount("a"));
+
+        release.countDown();
+        leader.join();
+        waiter.join();
+        assertEquals("a1", leaderResult.get());
+        assertEquals("a1", waiterResult.get());
+        assertEquals(1, loads.get());
+    }
+
+    public void testFailedLoad() throws Exception {
+        try {
+            singleFlight.get("a", () -> {
+                throw new IllegalStateException();
+            });
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+        assertEquals("a", singleFlight.get("a", () -> "a"));
+    }
+
+    public void testNestedLoadOfSameKey() throws Exception {
+        // Like a download of an original, which fetches the original through the path shared
+        // with thumbnails
+        AtomicReference<String> result = new AtomicReference<>();
+        Thread thread = start(() -> {
+            try {
+                result.set(singleFlight.get("a", () -> {
+                    try {
+                        return singleFlight.get("a", () -> "original");
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.join(5_000);
+
+        assertFalse("Nested load waits for itself", thread.isAlive());
+        assertEquals("original", result.get());
+        assertEquals("b", singleFlight.get("a", () -> "b"));
+    }
+
+    public void testNestedLoadSharedWithOtherThreads() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicReference<String> outerResult = new AtomicReference<>();
+
+        Thread outer = start(() -> {
+            try {
+                outerResult.set(singleFlight.get("a", () -> load("a", loads, release)));
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        waitForLoads(loads, 1);
+        AtomicReference<String> waiterResult = new AtomicReference<>();
+        Thread waiter = start(() -> waiterResult.set(load("a", loads, release)));
+        waitForWaiters("a", 1);
+
+        release.countDown();
+        outer.join();
+        waiter.join();
+        assertEquals(1, loads.get());
+        assertEquals("a1", outerResult.get());
+        assertEquals("a1", waiterResult.get());
+    }
+
+    private String load(String key, AtomicInteger loads, CountDownLatch release) {
+        try {
+            return singleFlight.get(key, () -> {
+                int load = loads.incrementAndGet();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return key + load;
+            });
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Thread start(Runnable runnable) {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        return thread;
+    }
+
+    private static void waitForLoads(AtomicInteger loads, int count) throws InterruptedException {
+        while (loads.get() < count) {
+            Thread.sleep(1);
+        }
+    }
+
+    private void waitForWaiters(String key, int count) throws InterruptedException {
+        while (singleFlight.getWaiterCount(key) < count) {
+            Thread.sleep(1);
+        }
+    }
+}
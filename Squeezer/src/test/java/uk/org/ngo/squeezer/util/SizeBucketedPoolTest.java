@@ -0,0 +1,111 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+public class SizeBucketedPoolTest extends TestCase {
+
+    public void testSmallestSuitableBucket() {
+        TestPool pool = new TestPool(1000);
+        Buffer small = new Buffer(100);
+        Buffer medium = new Buffer(150);
+        Buffer large = new Buffer(400);
+        pool.put(large);
+        pool.put(medium);
+        pool.put(small);
+
+        assertSame(medium, pool.get(120));
+        assertSame(small, pool.get(100));
+        assertNull("Too wasteful", pool.get(150));
+        assertSame(large, pool.get(200));
+        assertNull(pool.get(1));
+        assertEquals(0, pool.size());
+    }
+
+    public void testSameSizeBucket() {
+        TestPool pool = new TestPool(1000);
+        Buffer first = new Buffer(100);
+        Buffer second = new Buffer(100);
+        pool.put(first);
+        pool.put(second);
+
+        assertSame(first, pool.get(100));
+        assertSame(second, pool.get(100));
+        assertNull(pool.get(100));
+    }
+
+    public void testMaxSize() {
+        TestPool pool = new TestPool(300);
+        Buffer first = new Buffer(100);
+        Buffer second = new Buffer(100);
+        Buffer third = new Buffer(150);
+        pool.put(first);
+        pool.put(second);
+        pool.put(third);
+        pool.put(new Buffer(301));
+
+        assertEquals(250, pool.size());
+        assertSame(third, pool.get(150));
+        assertSame(second, pool.get(100));
+        assertNull("Oldest removed", pool.get(100));
+    }
+
+    public void testNotReusable() {
+        TestPool pool = new TestPool(1000);
+        Buffer stale = new Buffer(100);
+        Buffer fresh = new Buffer(120);
+        pool.put(stale);
+        pool.put(fresh);
+        stale.reusable = false;
+
+        assertSame(fresh, pool.get(100));
+        assertNull(pool.get(100));
+        assertEquals(0, pool.size());
+
+        pool.put(stale);
+        assertEquals(0, pool.size());
+    }
+
+    public void testStatistics() {
+        TestPool pool = new TestPool(1000);
+        pool.put(new Buffer(100));
+        pool.put(new Buffer(200));
+        pool.get(100);
+        pool.get(200);
+        pool.get(100);
+
+        assertEquals(3, pool.requestCount());
+        assertEquals(2, pool.hitCount());
+        assertEquals(300, pool.reusedSize());
+        assertTrue(pool.toString(), pool.toString().startsWith("hits: 2 of 3 ("));
+
+        pool.put(new Buffer(100));
+        pool.clear();
+        assertEquals(0, pool.size());
+        assertNull(pool.get(100));
+    }
+
+    private static class Buffer {
+        final int size;
+        boolean reusable = true;
+
+        Buffer(int size) {
+            this.size = size;
+        }
+    }
+
+    private static class TestPool extends SizeBucketedPool<Buffer> {
+        TestPool(long maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(Buffer buffer) {
+            return buffer.size;
+        }
+
+        @Override
+        protected boolean isReusable(Buffer buffer) {
+            return buffer.reusable;
+        }
+    }
+}
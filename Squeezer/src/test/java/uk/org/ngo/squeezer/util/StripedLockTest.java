@@ -0,0 +1,258 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StripedLockTest extends TestCase {
+    private static final int STRIPES = 16;
+
+    private final StripedLock locks = new StripedLock(STRIPES);
+
+    private File cacheDir;
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (cacheDir != null) {
+            DiskLruCache.deleteContents(cacheDir);
+            cacheDir.delete();
+        }
+        super.tearDown();
+    }
+
+    public void testReadDuringWriteOfOtherStripe() throws InterruptedException {
+        String key = "a";
+        String other = keyInOtherStripe(key);
+
+        locks.lockWrite(key);
+        try {
+            assertTrue("Read of another stripe proceeds", inOtherThread(() -> {
+                locks.lockRead(other);
+                locks.unlockRead(other);
+            }).await(5, TimeUnit.SECONDS));
+            assertTrue("Write of another stripe proceeds", inOtherThread(() -> {
+                locks.lockWrite(other);
+                locks.unlockWrite(other);
+            }).await(5, TimeUnit.SECONDS));
+        } finally {
+            locks.unlockWrite(key);
+        }
+    }
+
+    public void testConcurrentReads() throws InterruptedException {
+        String key = "a";
+
+        locks.lockRead(key);
+        try {
+            assertTrue(inOtherThread(() -> {
+                locks.lockRead(key);
+                locks.unlockRead(key);
+            }).await(5, TimeUnit.SECONDS));
+        } finally {
+            locks.unlockRead(key);
+        }
+    }
+
+    public void testReadWaitsForWriteOfSameKey() throws InterruptedException {
+        String key = "a";
+        CountDownLatch read;
+
+        locks.lockWrite(key);
+        try {
+            read = inOtherThread(() -> {
+                locks.lockRead(key);
+                locks.unlockRead(key);
+            });
+            assertFalse(read.await(100, TimeUnit.MILLISECONDS));
+        } finally {
+            locks.unlockWrite(key);
+        }
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testLockAllWaitsForReaders() throws InterruptedException {
+        String key = "a";
+        CountDownLatch all;
+
+        locks.lockRead(key);
+        try {
+            all = inOtherThread(() -> {
+                locks.lockAll();
+                locks.unlockAll();
+            });
+            assertFalse(all.await(100, TimeUnit.MILLISECONDS));
+        } finally {
+            locks.unlockRead(key);
+        }
+        assertTrue(all.await(5, TimeUnit.SECONDS));
+    }
+
+    public void testLockAllExcludesReadersAndWriters() throws InterruptedException {
+        CountDownLatch read;
+        CountDownLatch write;
+        CountDownLatch shared;
+
+        locks.lockAll();
+        try {
+            read = inOtherThread(() -> {
+                locks.lockRead("a");
+                locks.unlockRead("a");
+            });
+            write = inOtherThread(() -> {
+                locks.lockWrite("b");
+                locks.unlockWrite("b");
+            });
+            shared = inOtherThread(() -> {
+                locks.lockShared();
+                locks.unlockShared();
+            });
+            assertFalse(read.await(100, TimeUnit.MILLISECONDS));
+            assertEquals(1, write.getCount());
+            assertEquals(1, shared.getCount());
+
+            // Reentrant, like clearing the cache reinitializes it
+            locks.lockAll();
+            locks.unlockAll();
+        } finally {
+            locks.unlockAll();
+        }
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertTrue(write.await(5, TimeUnit.SECONDS));
+        assertTrue(shared.await(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Many threads read and write the entries of a disk cache, guarded like {@link ImageCache}
+     * does, while the cache is cleared now and then. Every read must see a complete value, and
+     * no edit may find another edit of the same entry in progress.
+     */
+    public void testConcurrentDiskCacheAccess() throws Exception {
+        cacheDir = File.createTempFile("disklrucache", "");
+        assertTrue(cacheDir.delete());
+        final AtomicReference<DiskLruCache> cache = new AtomicReference<>(open());
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final int threadCount = 8;
+        final int operations = 400;
+        final int keyCount = 32;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            final int id = t;
+            threads.add(new Thread(() -> {
+                Random random = new Random(id);
+                try {
+                    for (int i = 0; i < operations && failure.get() == null; i++) {
+                        String key = "key" + random.nextInt(keyCount);
+                        if (id == 0 && i % 100 == 99) {
+                            clear(cache);
+                        } else if (random.nextInt(3) == 0) {
+                            write(cache, key, id * operations + i, 1 + random.nextInt(20000));
+                        } else {
+                            read(cache, key);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assertFalse("Deadlock", thread.isAlive());
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        for (int i = 0; i < keyCount; i++) {
+            read(cache, "key" + i);
+        }
+        cache.get().close();
+    }
+
+    private DiskLruCache open() throws IOException {
+        return DiskLruCache.open(cacheDir, 1, 2, 10 * 1024 * 1024);
+    }
+
+    private void clear(AtomicReference<DiskLruCache> cache) throws IOException {
+        locks.lockAll();
+        try {
+            cache.get().delete();
+            cache.set(open());
+        } finally {
+            locks.unlockAll();
+        }
+    }
+
+    private void write(AtomicReference<DiskLruCache> cache, String key, int version, int length) throws IOException {
+        byte[] value = new byte[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = (byte) version;
+        }
+
+        locks.lockWrite(key);
+        try {
+            // The cache may have been replaced while waiting for the lock
+            DiskLruCache.Editor editor = cache.get().edit(key);
+            assertNotNull("Concurrent edit of " + key, editor);
+            editor.newOutputStream(0).write(value);
+            editor.set(1, version + ":" + length);
+            editor.commit();
+        } finally {
+            locks.unlockWrite(key);
+        }
+    }
+
+    private void read(AtomicReference<DiskLruCache> cache, String key) throws IOException {
+        locks.lockRead(key);
+        try (DiskLruCache.Snapshot snapshot = cache.get().get(key)) {
+            if (snapshot != null) {
+                String[] meta = snapshot.getString(1).split(":");
+                byte version = (byte) Integer.parseInt(meta[0]);
+                int length = Integer.parseInt(meta[1]);
+
+                InputStream in = snapshot.getInputStream(0);
+                int count = 0;
+                int b;
+                while ((b = in.read()) != -1) {
+                    assertEquals("Torn value of " + key, version, (byte) b);
+                    count++;
+                }
+                assertEquals("Length of " + key, length, count);
+            }
+        } finally {
+            locks.unlockRead(key);
+        }
+    }
+
+    private String keyInOtherStripe(String key) {
+        for (int i = 0; ; i++) {
+            String other = "key" + i;
+            if (locks.stripeOf(other) != locks.stripeOf(key)) {
+                return other;
+            }
+        }
+    }
+
+    private static CountDownLatch inOtherThread(Runnable runnable) {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            runnable.run();
+            done.countDown();
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+}
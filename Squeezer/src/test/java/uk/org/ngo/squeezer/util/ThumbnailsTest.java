@@ -0,0 +1,32 @@
+package uk.org.ngo.squeezer.util;
+
+import junit.framework.TestCase;
+
+public class ThumbnailsTest extends TestCase {
+
+    public void testGetSize() {
+        assertEquals(128, Thumbnails.getSize(48, 48));
+        assertEquals(128, Thumbnails.getSize(128, 100));
+        assertEquals(256, Thumbnails.getSize(100, 129));
+        assertEquals(512, Thumbnails.getSize(512, 512));
+        assertEquals(0, Thumbnails.getSize(513, 300));
+    }
+
+    public void testGetDiskKey() {
+        assertEquals("http://host:9000/music/123/cover#thumbnail256",
+                Thumbnails.getDiskKey("http://host:9000/music/123/cover", 256));
+    }
+
+    public void testGetResizedUrl() {
+        assertEquals("http://host:9000/music/1a2b3c4d/cover_128x128",
+                Thumbnails.getResizedUrl("http://host:9000/music/1a2b3c4d/cover", 128));
+        assertEquals("http://host:9000/music/123/cover_256x256.jpg",
+                Thumbnails.getResizedUrl("http://host:9000/music/123/cover.jpg", 256));
+        assertEquals("http://host:9000/imageproxy/https%3A%2F%2Fexample.com%2Fa.png/image_512x512.png",
+                Thumbnails.getResizedUrl("http://host:9000/imageproxy/https%3A%2F%2Fexample.com%2Fa.png/image.png", 512));
+
+        assertNull("Already resized", Thumbnails.getResizedUrl("http://host:9000/music/123/cover_300x300", 128));
+        assertNull("Query", Thumbnails.getResizedUrl("http://host:9000/music/123/cover?x=1", 128));
+        assertNull("Not LMS", Thumbnails.getResizedUrl("https://example.com/cover.jpg", 128));
+    }
+}